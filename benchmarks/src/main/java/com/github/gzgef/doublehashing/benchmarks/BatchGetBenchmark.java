@@ -0,0 +1,76 @@
+package com.github.gzgef.doublehashing.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск пачки ключей: поочередный поиск каждого ключа в сравнении с пакетным поиском getAll.
+ * Время приводится к одному ключу. Выигрыш пакетного поиска заметен на таблицах,
+ * которые не помещаются в кеш процессора, поэтому по умолчанию измеряются большие размеры.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchGetBenchmark extends TableBenchmark {
+    private static final int BATCH = 1024;
+
+    @Param({"INT_DOUBLE_HASHING", "HASH_MAP"})
+    public Implementation implementation;
+
+    private int[] batch;
+    private int[] values;
+
+    @Override
+    protected Implementation implementation() {
+        return implementation;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        table = filledTable();
+        prepareLookups();
+        batch = new int[BATCH];
+        values = new int[BATCH];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int getLoop() {
+        nextBatch();
+        int count = 0;
+        for (int i = 0; i < BATCH; ++i) {
+            if (table.get(batch[i]) != null) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int getAll() {
+        nextBatch();
+        return table.getAll(batch, values);
+    }
+
+    /**
+     * Копирует очередную пачку ключей успешного поиска.
+     */
+    private void nextBatch() {
+        System.arraycopy(hits, cursor, batch, 0, BATCH);
+        cursor = (cursor + BATCH) & LOOKUP_MASK;
+    }
+}
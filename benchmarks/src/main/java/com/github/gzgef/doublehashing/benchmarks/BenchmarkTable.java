@@ -0,0 +1,65 @@
+package com.github.gzgef.doublehashing.benchmarks;
+
+/**
+ * Общий интерфейс измеряемых хеш-таблиц.
+ * Сводит интерфейсы HashTable, IHashTable и java.util.Map к одному набору операций,
+ * чтобы каждый бенчмарк был написан один раз для всех реализаций.
+ */
+public interface BenchmarkTable {
+    /**
+     * Вставляет ключ-значение в хеш-таблицу.
+     *
+     * @param key   ключ
+     * @param value значение
+     */
+    void put(int key, int value);
+
+    /**
+     * Возвращает значение, связанное с указанным ключом.
+     *
+     * @param key ключ для поиска
+     * @return значение, связанное с ключом, или null, если ключ не найден
+     */
+    Integer get(int key);
+
+    /**
+     * Удаляет запись с указанным ключом из хеш-таблицы.
+     *
+     * @param key ключ для удаления
+     */
+    void remove(int key);
+
+    /**
+     * Ищет все ключи из массива. По умолчанию ключи ищутся по одному; реализации
+     * с пакетным поиском переопределяют метод.
+     *
+     * @param keys   ключи для поиска
+     * @param values массив для найденных значений (не короче массива ключей)
+     * @return количество найденных ключей
+     */
+    default int getAll(int[] keys, int[] values) {
+        int count = 0;
+        for (int i = 0; i < keys.length; ++i) {
+            final Integer value = get(keys[i]);
+            if (value != null) {
+                values[i] = value;
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает значение, связанное с минимальным ключом.
+     *
+     * @return значение минимального ключа, или null, если хеш-таблица пуста
+     */
+    Integer min();
+
+    /**
+     * Возвращает значение, связанное с максимальным ключом.
+     *
+     * @return значение максимального ключа, или null, если хеш-таблица пуста
+     */
+    Integer max();
+}
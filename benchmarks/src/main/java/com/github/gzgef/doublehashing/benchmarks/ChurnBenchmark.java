@@ -0,0 +1,53 @@
+package com.github.gzgef.doublehashing.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Удаление в установившемся режиме: каждая операция удаляет самый старый ключ и вставляет новый,
+ * поэтому размер таблицы постоянен, а удаленные ячейки накапливаются и очищаются перехешированием.
+ * Номера ключей могут переполниться при долгих измерениях; так как {@link KeyDistribution#key(int)}
+ * взаимно однозначна на всем диапазоне int, ключи окна при этом остаются различными.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChurnBenchmark extends TableBenchmark {
+    @Param
+    public Implementation implementation;
+
+    private int oldest;
+    private int next;
+
+    @Override
+    protected Implementation implementation() {
+        return implementation;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        table = filledTable();
+        oldest = 0;
+        next = size;
+    }
+
+    @Benchmark
+    public void deleteChurn() {
+        table.remove(distribution.key(oldest));
+        ++oldest;
+        table.put(distribution.key(next), next);
+        ++next;
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.gzgef.doublehashing.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Успешный и неуспешный поиск в заполненной таблице.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetBenchmark extends TableBenchmark {
+    @Param
+    public Implementation implementation;
+
+    @Override
+    protected Implementation implementation() {
+        return implementation;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        table = filledTable();
+        prepareLookups();
+    }
+
+    @Benchmark
+    public Integer getHit() {
+        return table.get(hits[cursor++ & LOOKUP_MASK]);
+    }
+
+    @Benchmark
+    public Integer getMiss() {
+        return table.get(misses[cursor++ & LOOKUP_MASK]);
+    }
+}
@@ -0,0 +1,295 @@
+package com.github.gzgef.doublehashing.benchmarks;
+
+import com.github.gzgef.doublehashing.ChainHashTable;
+import com.github.gzgef.doublehashing.ConcurrentChainHashTable;
+import com.github.gzgef.doublehashing.ConcurrentDoubleHashMap;
+import com.github.gzgef.doublehashing.CuckooHashTable;
+import com.github.gzgef.doublehashing.EntryCursor;
+import com.github.gzgef.doublehashing.HashMap;
+import com.github.gzgef.doublehashing.HashStrategy;
+import com.github.gzgef.doublehashing.HashTable;
+import com.github.gzgef.doublehashing.HopscotchHashTable;
+import com.github.gzgef.doublehashing.IHashTable;
+import com.github.gzgef.doublehashing.IntOpenAddressHashTableDH;
+import com.github.gzgef.doublehashing.OffHeapHashTableDH;
+import com.github.gzgef.doublehashing.OpenAddressHashTableDH;
+import com.github.gzgef.doublehashing.OpenAddressHashTableLP;
+import com.github.gzgef.doublehashing.RobinHoodHashTableLP;
+import com.github.gzgef.doublehashing.SwissHashMap;
+import com.github.gzgef.doublehashing.SwissHashTable;
+
+import java.util.Map;
+
+/**
+ * Измеряемые реализации хеш-таблиц.
+ * Коэффициент загрузки передается только реализациям, которые позволяют его задать;
+ * остальные используют собственный порог перехеширования.
+ */
+public enum Implementation {
+    CHAIN {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new HashTableAdapter(new ChainHashTable());
+        }
+    },
+    LINEAR_PROBING {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new HashTableAdapter(new OpenAddressHashTableLP());
+        }
+    },
+    DOUBLE_HASHING {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new HashTableAdapter(new OpenAddressHashTableDH());
+        }
+    },
+    INT_DOUBLE_HASHING {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new HashTableAdapter(new IntOpenAddressHashTableDH());
+        }
+    },
+    OFF_HEAP_DOUBLE_HASHING {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new HashTableAdapter(new OffHeapHashTableDH());
+        }
+    },
+    ROBIN_HOOD {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new HashTableAdapter(new RobinHoodHashTableLP(HashStrategy.identity(), loadFactor));
+        }
+    },
+    CUCKOO {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new HashTableAdapter(new CuckooHashTable());
+        }
+    },
+    HOPSCOTCH {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new HashTableAdapter(new HopscotchHashTable());
+        }
+    },
+    SWISS {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new HashTableAdapter(new SwissHashTable());
+        }
+    },
+    CONCURRENT_CHAIN {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new HashTableAdapter(new ConcurrentChainHashTable());
+        }
+    },
+    HASH_MAP {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new IHashTableAdapter(new HashMap<>());
+        }
+    },
+    INCREMENTAL_HASH_MAP {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new IHashTableAdapter(new HashMap<>(HashStrategy.murmur3(), true));
+        }
+    },
+    SWISS_HASH_MAP {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new IHashTableAdapter(new SwissHashMap<>());
+        }
+    },
+    CONCURRENT_HASH_MAP {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new IHashTableAdapter(new ConcurrentDoubleHashMap<>());
+        }
+    },
+    JDK_HASH_MAP {
+        @Override
+        public BenchmarkTable create(double loadFactor) {
+            return new JdkAdapter(new java.util.HashMap<>(16, (float) loadFactor));
+        }
+    };
+
+    /**
+     * Создает пустую хеш-таблицу этой реализации.
+     *
+     * @param loadFactor коэффициент загрузки для реализаций, которые его поддерживают
+     * @return пустая хеш-таблица
+     */
+    public abstract BenchmarkTable create(double loadFactor);
+
+    /**
+     * Адаптер тестовых реализаций интерфейса HashTable.
+     */
+    private static final class HashTableAdapter implements BenchmarkTable {
+        private final HashTable table;
+        private boolean[] found = new boolean[0];
+
+        HashTableAdapter(HashTable table) {
+            this.table = table;
+        }
+
+        @Override
+        public void put(int key, int value) {
+            table.add(key, value);
+        }
+
+        @Override
+        public Integer get(int key) {
+            return table.search(key);
+        }
+
+        @Override
+        public void remove(int key) {
+            table.delete(key);
+        }
+
+        @Override
+        public int getAll(int[] keys, int[] values) {
+            if (found.length < keys.length) {
+                found = new boolean[keys.length];
+            }
+            return table.searchAll(keys, values, found);
+        }
+
+        @Override
+        public Integer min() {
+            return table.min();
+        }
+
+        @Override
+        public Integer max() {
+            return table.max();
+        }
+    }
+
+    /**
+     * Адаптер реализаций интерфейса IHashTable. Минимум и максимум ищутся полным обходом курсором.
+     */
+    private static final class IHashTableAdapter implements BenchmarkTable {
+        private final IHashTable<Integer, Integer> table;
+        private Integer[] boxedKeys = new Integer[0];
+        private Integer[] boxedValues = new Integer[0];
+
+        IHashTableAdapter(IHashTable<Integer, Integer> table) {
+            this.table = table;
+        }
+
+        @Override
+        public void put(int key, int value) {
+            table.put(key, value);
+        }
+
+        @Override
+        public Integer get(int key) {
+            return table.get(key);
+        }
+
+        @Override
+        public void remove(int key) {
+            table.remove(key);
+        }
+
+        @Override
+        public int getAll(int[] keys, int[] values) {
+            if (boxedKeys.length != keys.length) {
+                boxedKeys = new Integer[keys.length];
+                boxedValues = new Integer[keys.length];
+            }
+            for (int i = 0; i < keys.length; ++i) {
+                boxedKeys[i] = keys[i];
+            }
+            final int count = table.getAll(boxedKeys, boxedValues);
+            for (int i = 0; i < keys.length; ++i) {
+                if (boxedValues[i] != null) {
+                    values[i] = boxedValues[i];
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public Integer min() {
+            final EntryCursor<Integer, Integer> cursor = table.cursor();
+            Integer bestKey = null;
+            Integer best = null;
+            while (cursor.advance()) {
+                if (bestKey == null || cursor.key() < bestKey) {
+                    bestKey = cursor.key();
+                    best = cursor.value();
+                }
+            }
+            return best;
+        }
+
+        @Override
+        public Integer max() {
+            final EntryCursor<Integer, Integer> cursor = table.cursor();
+            Integer bestKey = null;
+            Integer best = null;
+            while (cursor.advance()) {
+                if (bestKey == null || cursor.key() > bestKey) {
+                    bestKey = cursor.key();
+                    best = cursor.value();
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Адаптер java.util.HashMap. Минимум и максимум ищутся полным перебором записей,
+     * как и в адаптере IHashTable.
+     */
+    private static final class JdkAdapter implements BenchmarkTable {
+        private final java.util.HashMap<Integer, Integer> table;
+
+        JdkAdapter(java.util.HashMap<Integer, Integer> table) {
+            this.table = table;
+        }
+
+        @Override
+        public void put(int key, int value) {
+            table.put(key, value);
+        }
+
+        @Override
+        public Integer get(int key) {
+            return table.get(key);
+        }
+
+        @Override
+        public void remove(int key) {
+            table.remove(key);
+        }
+
+        @Override
+        public Integer min() {
+            Map.Entry<Integer, Integer> best = null;
+            for (Map.Entry<Integer, Integer> entry : table.entrySet()) {
+                if (best == null || entry.getKey() < best.getKey()) {
+                    best = entry;
+                }
+            }
+            return best == null ? null : best.getValue();
+        }
+
+        @Override
+        public Integer max() {
+            Map.Entry<Integer, Integer> best = null;
+            for (Map.Entry<Integer, Integer> entry : table.entrySet()) {
+                if (best == null || entry.getKey() > best.getKey()) {
+                    best = entry;
+                }
+            }
+            return best == null ? null : best.getValue();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.gzgef.doublehashing.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Распределения ключей для бенчмарков.
+ * Ключи задаются взаимно однозначной функцией номера {@link #key(int)}: таблица заполняется
+ * ключами с номерами 0 .. size - 1, а ключи с номерами начиная с size гарантированно отсутствуют
+ * в таблице и используются для неуспешного поиска. Распределение также определяет порядок,
+ * в котором ключи запрашиваются при поиске.
+ */
+public enum KeyDistribution {
+    /**
+     * Ключи 0, 1, 2, ... запрашиваются по порядку.
+     */
+    SEQUENTIAL {
+        @Override
+        public int key(int index) {
+            return index;
+        }
+
+        @Override
+        public int[] lookups(int size, int count, Random random) {
+            final int[] lookups = new int[count];
+            for (int i = 0; i < count; ++i) {
+                lookups[i] = i % size;
+            }
+            return lookups;
+        }
+    },
+    /**
+     * Равномерно распределенные по всему диапазону int ключи запрашиваются равновероятно.
+     */
+    UNIFORM {
+        @Override
+        public int key(int index) {
+            return scramble(index);
+        }
+    },
+    /**
+     * Ключи распределены как в UNIFORM, но запросы подчиняются закону Ципфа с параметром
+     * {@value #ZIPF_THETA}: небольшая доля ключей получает большую часть запросов.
+     */
+    ZIPFIAN {
+        @Override
+        public int key(int index) {
+            return scramble(index);
+        }
+
+        @Override
+        public int[] lookups(int size, int count, Random random) {
+            double zetaN = 0;
+            for (int i = 1; i <= size; ++i) {
+                zetaN += 1 / Math.pow(i, ZIPF_THETA);
+            }
+            final double zeta2 = 1 + 1 / Math.pow(2, ZIPF_THETA);
+            final double alpha = 1 / (1 - ZIPF_THETA);
+            final double eta = (1 - Math.pow(2.0 / size, 1 - ZIPF_THETA)) / (1 - zeta2 / zetaN);
+            final int[] lookups = new int[count];
+            for (int i = 0; i < count; ++i) {
+                final double u = random.nextDouble();
+                final double uz = u * zetaN;
+                if (uz < 1) {
+                    lookups[i] = 0;
+                } else if (uz < zeta2) {
+                    lookups[i] = Math.min(1, size - 1);
+                } else {
+                    lookups[i] = Math.min(size - 1, (int) (size * Math.pow(eta * u - eta + 1, alpha)));
+                }
+            }
+            return lookups;
+        }
+    },
+    /**
+     * Ключи кратны {@value #ADVERSARIAL_STRIDE}: при тождественной стратегии хеширования
+     * и маске емкости они занимают лишь каждую {@value #ADVERSARIAL_STRIDE}-ю начальную ячейку
+     * при любой емкости таблицы.
+     */
+    ADVERSARIAL {
+        @Override
+        public int key(int index) {
+            return Integer.rotateLeft(index, Integer.numberOfTrailingZeros(ADVERSARIAL_STRIDE));
+        }
+    };
+
+    private static final double ZIPF_THETA = 0.99;
+    private static final int ADVERSARIAL_STRIDE = 1024;
+    private static final int SCRAMBLE_MULTIPLIER = 0x9E3779B9;
+    private static final int SCRAMBLE_SALT = 0x5BD1E995;
+
+    /**
+     * Возвращает ключ с указанным номером. Разным номерам соответствуют разные ключи.
+     *
+     * @param index номер ключа
+     * @return ключ
+     */
+    public abstract int key(int index);
+
+    /**
+     * Возвращает номера ключей, запрашиваемых при поиске, в порядке запросов.
+     *
+     * @param size   число ключей в таблице
+     * @param count  число запросов
+     * @param random источник случайных чисел
+     * @return массив номеров ключей из диапазона 0 .. size - 1
+     */
+    public int[] lookups(int size, int count, Random random) {
+        final int[] lookups = new int[count];
+        for (int i = 0; i < count; ++i) {
+            lookups[i] = random.nextInt(size);
+        }
+        return lookups;
+    }
+
+    /**
+     * Перемешивает номер умножением на нечетную константу, что является взаимно однозначным
+     * отображением int на int.
+     *
+     * @param index номер ключа
+     * @return перемешанный номер
+     */
+    private static int scramble(int index) {
+        return (index * SCRAMBLE_MULTIPLIER) ^ SCRAMBLE_SALT;
+    }
+}
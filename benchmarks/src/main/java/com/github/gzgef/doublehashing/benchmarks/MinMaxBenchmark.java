@@ -0,0 +1,52 @@
+package com.github.gzgef.doublehashing.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск минимального и максимального ключа в заполненной таблице.
+ * Тестовые таблицы HashTable запоминают минимальный и максимальный ключи при вставке. Реализации
+ * IHashTable и java.util.HashMap порядка ключей не хранят, и их адаптеры находят минимум
+ * и максимум полным обходом курсором; они включены для сравнения.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MinMaxBenchmark extends TableBenchmark {
+    @Param({"CHAIN", "LINEAR_PROBING", "DOUBLE_HASHING", "INT_DOUBLE_HASHING", "OFF_HEAP_DOUBLE_HASHING",
+            "ROBIN_HOOD", "CUCKOO", "HOPSCOTCH", "SWISS", "CONCURRENT_CHAIN", "HASH_MAP", "INCREMENTAL_HASH_MAP", "SWISS_HASH_MAP",
+            "CONCURRENT_HASH_MAP", "JDK_HASH_MAP"})
+    public Implementation implementation;
+
+    @Override
+    protected Implementation implementation() {
+        return implementation;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        table = filledTable();
+    }
+
+    @Benchmark
+    public Integer min() {
+        return table.min();
+    }
+
+    @Benchmark
+    public Integer max() {
+        return table.max();
+    }
+}
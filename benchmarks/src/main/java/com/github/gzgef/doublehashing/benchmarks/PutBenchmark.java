@@ -0,0 +1,51 @@
+package com.github.gzgef.doublehashing.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Вставка новых ключей. Таблица заполняется с нуля до size записей и затем создается заново,
+ * поэтому результат включает амортизированную стоимость перехеширования.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PutBenchmark extends TableBenchmark {
+    @Param
+    public Implementation implementation;
+
+    private int next;
+
+    @Override
+    protected Implementation implementation() {
+        return implementation;
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        table = newTable();
+        next = 0;
+    }
+
+    @Benchmark
+    public void put() {
+        if (next == size) {
+            table = newTable();
+            next = 0;
+        }
+        table.put(distribution.key(next), next);
+        ++next;
+    }
+}
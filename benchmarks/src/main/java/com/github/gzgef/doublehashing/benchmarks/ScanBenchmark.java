@@ -0,0 +1,71 @@
+package com.github.gzgef.doublehashing.benchmarks;
+
+import com.github.gzgef.doublehashing.HashStrategy;
+import com.github.gzgef.doublehashing.IntOpenAddressHashTableDH;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полный просмотр таблицы: сумма ключей последовательным потоком и параллельным потоком
+ * в пуле fork-join из threads потоков. При 75000000 ключах емкость таблицы равна 2^27 (около 134 млн ячеек);
+ * этот размер требует кучи около 2 ГБ (например, -jvmArgs -Xmx4g).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScanBenchmark {
+    @Param({"1000000", "75000000"})
+    public int size;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private IntOpenAddressHashTableDH table;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final int[] keys = new int[size];
+        final int[] values = new int[size];
+        for (int i = 0; i < size; ++i) {
+            keys[i] = KeyDistribution.UNIFORM.key(i);
+            values[i] = i;
+        }
+        table = new IntOpenAddressHashTableDH(HashStrategy.murmur3());
+        table.addAll(keys, values);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long sequentialSum() {
+        return table.keyStream().asLongStream().sum();
+    }
+
+    @Benchmark
+    public long parallelSum() throws InterruptedException, ExecutionException {
+        return pool.submit(() -> table.keyStream().parallel().asLongStream().sum()).get();
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.gzgef.doublehashing.benchmarks;
+
+import com.github.gzgef.doublehashing.HashMap;
+import com.github.gzgef.doublehashing.HashStrategy;
+import com.github.gzgef.doublehashing.IntOpenAddressHashTableDH;
+import com.github.gzgef.doublehashing.OffHeapHashTableDH;
+import com.github.gzgef.doublehashing.SnapshotCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время построения таблицы при запуске: повторная вставка всех ключей (replay) в сравнении
+ * с загрузкой снимка (load). Снимки сохраняются во временные файлы один раз перед измерением.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+    @Param({"100000", "1000000", "10000000"})
+    public int size;
+
+    private int[] keys;
+    private Path intSnapshot;
+    private Path offHeapSnapshot;
+    private Path hashMapSnapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        keys = new int[size];
+        for (int i = 0; i < size; ++i) {
+            keys[i] = KeyDistribution.UNIFORM.key(i);
+        }
+        intSnapshot = Files.createTempFile("int-table", ".snapshot");
+        offHeapSnapshot = Files.createTempFile("off-heap-table", ".snapshot");
+        hashMapSnapshot = Files.createTempFile("hash-map", ".snapshot");
+        intTableReplay().save(intSnapshot);
+        try (OffHeapHashTableDH table = newOffHeapTable()) {
+            table.save(offHeapSnapshot);
+        }
+        hashMapReplay().save(hashMapSnapshot, SnapshotCodec.integers(), SnapshotCodec.integers());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(intSnapshot);
+        Files.deleteIfExists(offHeapSnapshot);
+        Files.deleteIfExists(hashMapSnapshot);
+    }
+
+    @Benchmark
+    public IntOpenAddressHashTableDH intTableReplay() {
+        final IntOpenAddressHashTableDH table = new IntOpenAddressHashTableDH(HashStrategy.murmur3());
+        for (int i = 0; i < size; ++i) {
+            table.add(keys[i], i);
+        }
+        return table;
+    }
+
+    @Benchmark
+    public IntOpenAddressHashTableDH intTableLoad() throws IOException {
+        return IntOpenAddressHashTableDH.load(intSnapshot);
+    }
+
+    @Benchmark
+    public int offHeapReplay() throws IOException {
+        try (OffHeapHashTableDH table = newOffHeapTable()) {
+            return table.getOrDefault(keys[0], -1);
+        }
+    }
+
+    @Benchmark
+    public int offHeapLoad() throws IOException {
+        try (OffHeapHashTableDH table = OffHeapHashTableDH.load(offHeapSnapshot)) {
+            return table.getOrDefault(keys[0], -1);
+        }
+    }
+
+    @Benchmark
+    public HashMap<Integer, Integer> hashMapReplay() {
+        final HashMap<Integer, Integer> map = new HashMap<>();
+        for (int i = 0; i < size; ++i) {
+            map.put(keys[i], i);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public HashMap<Integer, Integer> hashMapLoad() throws IOException {
+        return HashMap.load(hashMapSnapshot, SnapshotCodec.integers(), SnapshotCodec.integers());
+    }
+
+    private OffHeapHashTableDH newOffHeapTable() {
+        final OffHeapHashTableDH table = new OffHeapHashTableDH(HashStrategy.murmur3());
+        for (int i = 0; i < size; ++i) {
+            table.add(keys[i], i);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.gzgef.doublehashing.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Общее состояние бенчмарков: параметры таблицы и подготовленные ключи для поиска.
+ * Реализация задается параметром implementation в каждом бенчмарке отдельно, так как
+ * не все реализации поддерживают все операции.
+ */
+@State(Scope.Thread)
+public abstract class TableBenchmark {
+    /**
+     * Число заранее подготовленных запросов (степень двойки); запросы повторяются по кругу.
+     */
+    protected static final int LOOKUPS = 1 << 16;
+    protected static final int LOOKUP_MASK = LOOKUPS - 1;
+    private static final long SEED = 42;
+
+    /**
+     * Число записей в таблице. Размер 100000000 требует увеличенной кучи (например, -jvmArgs -Xmx32g).
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    /**
+     * Коэффициент загрузки для реализаций, которые позволяют его задать.
+     */
+    @Param({"0.75"})
+    public double loadFactor;
+
+    @Param
+    public KeyDistribution distribution;
+
+    protected BenchmarkTable table;
+    protected int[] hits;
+    protected int[] misses;
+    protected int cursor;
+
+    /**
+     * Возвращает измеряемую реализацию.
+     *
+     * @return реализация хеш-таблицы
+     */
+    protected abstract Implementation implementation();
+
+    /**
+     * Создает пустую таблицу измеряемой реализации.
+     *
+     * @return пустая таблица
+     */
+    protected BenchmarkTable newTable() {
+        return implementation().create(loadFactor);
+    }
+
+    /**
+     * Создает таблицу и заполняет ее ключами с номерами 0 .. size - 1.
+     * Значением каждого ключа служит его номер.
+     *
+     * @return заполненная таблица
+     */
+    protected BenchmarkTable filledTable() {
+        final BenchmarkTable filled = newTable();
+        for (int i = 0; i < size; ++i) {
+            filled.put(distribution.key(i), i);
+        }
+        return filled;
+    }
+
+    /**
+     * Готовит запросы успешного поиска в порядке, заданном распределением,
+     * и запросы неуспешного поиска по отсутствующим ключам.
+     */
+    protected void prepareLookups() {
+        final Random random = new Random(SEED);
+        final int[] order = distribution.lookups(size, LOOKUPS, random);
+        hits = new int[LOOKUPS];
+        misses = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; ++i) {
+            hits[i] = distribution.key(order[i]);
+            misses[i] = distribution.key(size + random.nextInt(size));
+        }
+        cursor = 0;
+    }
+}
@@ -0,0 +1,510 @@
+package com.github.gzgef.doublehashing;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасная реализация хеш-таблицы с двойным хешированием.
+ * Ячейки таблицы хранятся в атомарном массиве и занимаются операцией CAS: ключ, однажды записанный
+ * в ячейку, больше не меняется, а удаление заменяет значение узла пометкой удаления.
+ * Чтение выполняется без блокировок и не ждет других потоков, в том числе во время переноса.
+ * При изменении размера все пишущие потоки совместно переносят ячейки старой таблицы в новую порциями
+ * по {@value #TRANSFER_STRIDE} ячеек; перенесенное значение замораживается, поэтому последующие изменения
+ * выполняются только в новой таблице. Запись в новую таблицу допускается только после переноса всех
+ * ячеек, поэтому запись во время переноса не свободна от блокировок: поток, которому не осталось
+ * порций, ждет, пока остальные потоки завершат захваченные порции, и остановка такого потока
+ * задерживает всех пишущих до завершения переноса.
+ *
+ * @param <K> тип ключей, поддерживаемых этой хеш-таблицей
+ * @param <V> тип отображаемых значений
+ */
+public class ConcurrentDoubleHashMap<K, V> implements IHashTable<K, V> {
+
+    private static final int HASH_PARAM = 47;
+    private static final double REHASH_THRESHOLD = 0.75;
+    private static final int START_CAPACITY = 16;
+    private static final int TRANSFER_STRIDE = 64;
+
+    /**
+     * Значение узла, ключ которого удален.
+     */
+    private static final Object TOMBSTONE = new Object();
+
+    /**
+     * Результат поиска ключа, отсутствующего в таблице.
+     */
+    private static final Object NOT_FOUND = new Object();
+
+    /**
+     * Пометка пустой ячейки старой таблицы, закрытой для вставки во время переноса.
+     */
+    private static final Node MOVED = new Node(null, 0, null);
+
+    private static final AtomicReferenceFieldUpdater<Table, Table> NEXT =
+            AtomicReferenceFieldUpdater.newUpdater(Table.class, Table.class, "next");
+
+    private final HashStrategy strategy;
+    private final LongAdder size = new LongAdder();
+    private volatile Table table;
+
+    /**
+     * Создает пустую таблицу с начальной емкостью по умолчанию (16) и стратегией хеширования murmur3.
+     */
+    public ConcurrentDoubleHashMap() {
+        this(HashStrategy.murmur3());
+    }
+
+    /**
+     * Создает пустую таблицу с начальной емкостью по умолчанию (16) и указанной стратегией хеширования.
+     *
+     * @param strategy стратегия перемешивания хеш-кодов ключей
+     */
+    public ConcurrentDoubleHashMap(HashStrategy strategy) {
+        this.strategy = strategy;
+        this.table = new Table(START_CAPACITY);
+    }
+
+    /**
+     * Вычисляет перемешанный хеш-код ключа.
+     *
+     * @param key ключ для хеширования
+     * @return хеш-значение
+     */
+    private int hash(Object key) {
+        return strategy.hashObject(key);
+    }
+
+    /**
+     * Вычисляет размер шага для пробирования.
+     * Шаг нечетный, поэтому взаимно прост с емкостью (степенью двойки).
+     *
+     * @param hash перемешанный хеш-код ключа
+     * @param mask маска емкости таблицы
+     * @return размер шага
+     */
+    private static int step(int hash, int mask) {
+        return (((hash >>> 16) ^ hash) * HASH_PARAM) & mask | 1;
+    }
+
+    /**
+     * Проверяет, пуста ли хеш-таблица.
+     *
+     * @return true, если хеш-таблица не содержит записей, иначе false
+     */
+    @Override
+    public boolean isEmpty() {
+        return size.sum() == 0;
+    }
+
+    /**
+     * Возвращает количество записей в хеш-таблице.
+     * При одновременных изменениях значение является оценкой.
+     *
+     * @return размер хеш-таблицы
+     */
+    @Override
+    public int getSize() {
+        return (int) size.sum();
+    }
+
+    /**
+     * Возвращает значение, связанное с указанным ключом. Не захватывает блокировок.
+     *
+     * @param key ключ, для которого нужно вернуть связанное значение
+     * @return значение, связанное с ключом, или null, если ключ не найден
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        final Object value = find(table, key, hash(key));
+        return value == NOT_FOUND || value == TOMBSTONE ? null : (V) value;
+    }
+
+    /**
+     * Ищет значение ключа в таблице и, если ячейка уже перенесена, в следующих таблицах.
+     *
+     * @param current таблица для поиска
+     * @param key     ключ для поиска
+     * @param hash    перемешанный хеш-код ключа
+     * @return значение, TOMBSTONE для удаленного ключа или NOT_FOUND
+     */
+    private Object find(Table current, Object key, int hash) {
+        final int mask = current.mask;
+        final int stepSize = step(hash, mask);
+        int index = hash & mask;
+        for (int probes = 0; probes <= mask; ++probes) {
+            final Node node = current.slots.get(index);
+            if (node == null) {
+                return NOT_FOUND;
+            }
+            if (node == MOVED) {
+                return find(current.next, key, hash);
+            }
+            if (node.hash == hash && key.equals(node.key)) {
+                final Object value = node.value;
+                if (value instanceof Frozen) {
+                    // Пока перенос не завершен, новая таблица не изменяется, и замороженное значение актуально;
+                    // после переноса актуальна только новая таблица.
+                    final Object moved = find(current.next, key, hash);
+                    return moved == NOT_FOUND ? ((Frozen) value).value : moved;
+                }
+                return value;
+            }
+            index = (index + stepSize) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Вставляет ключ-значение в хеш-таблицу.
+     * Если ключ уже существует, значение обновляется.
+     *
+     * @param key   ключ для вставки
+     * @param value значение для ассоциации с ключом
+     */
+    @Override
+    public void put(K key, V value) {
+        update(key, value);
+    }
+
+    /**
+     * Удаляет запись с указанным ключом из хеш-таблицы.
+     *
+     * @param key ключ для удаления
+     */
+    @Override
+    public void remove(K key) {
+        update(key, TOMBSTONE);
+    }
+
+    /**
+     * Записывает новое значение ключа или пометку удаления.
+     * Если таблица переносится, поток сначала помогает завершить перенос.
+     *
+     * @param key   ключ
+     * @param value новое значение или TOMBSTONE
+     */
+    private void update(Object key, Object value) {
+        final int hash = hash(key);
+        while (!tryUpdate(table, key, hash, value)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Пытается записать значение ключа в указанную таблицу.
+     *
+     * @param current таблица для записи
+     * @param key     ключ
+     * @param hash    перемешанный хеш-код ключа
+     * @param value   новое значение или TOMBSTONE
+     * @return true, если операция выполнена, false, если ее нужно повторить в актуальной таблице
+     */
+    private boolean tryUpdate(Table current, Object key, int hash, Object value) {
+        if (current.next != null) {
+            helpTransfer(current);
+            return false;
+        }
+        final int mask = current.mask;
+        final int stepSize = step(hash, mask);
+        int index = hash & mask;
+        int probes = 0;
+        while (probes <= mask) {
+            Node node = current.slots.get(index);
+            if (node == null) {
+                if (value == TOMBSTONE) {
+                    return true;
+                }
+                if (current.claimed.get() >= current.threshold) {
+                    resize(current);
+                    return false;
+                }
+                if (!current.slots.compareAndSet(index, null, new Node(key, hash, value))) {
+                    // Ячейку занял другой поток: проверяем ее повторно, не сдвигаясь.
+                    continue;
+                }
+                current.claimed.incrementAndGet();
+                size.increment();
+                return true;
+            }
+            if (node == MOVED) {
+                return false;
+            }
+            if (node.hash == hash && key.equals(node.key)) {
+                final Object previous = node.value;
+                if (previous instanceof Frozen) {
+                    return false;
+                }
+                if (previous == TOMBSTONE && value == TOMBSTONE) {
+                    return true;
+                }
+                if (!node.casValue(previous, value)) {
+                    continue;
+                }
+                if (previous == TOMBSTONE) {
+                    size.increment();
+                } else if (value == TOMBSTONE) {
+                    size.decrement();
+                }
+                return true;
+            }
+            index = (index + stepSize) & mask;
+            ++probes;
+        }
+        if (value == TOMBSTONE) {
+            return true;
+        }
+        resize(current);
+        return false;
+    }
+
+    /**
+     * Начинает перенос таблицы, если он еще не начат, и помогает его выполнить.
+     * Емкость удваивается, если живые записи занимают больше половины порога, иначе таблица
+     * переносится в таблицу той же емкости, что очищает ее от удаленных узлов.
+     *
+     * @param current переполненная таблица
+     */
+    private void resize(Table current) {
+        if (current.next == null) {
+            final int capacity = current.mask + 1;
+            final long live = size.sum();
+            final int newCapacity = REHASH_THRESHOLD <= (live * 2.0 / capacity) ? capacity * 2 : capacity;
+            NEXT.compareAndSet(current, null, new Table(newCapacity));
+        }
+        helpTransfer(current);
+    }
+
+    /**
+     * Переносит порции ячеек старой таблицы, пока они не закончатся, и ожидает,
+     * пока другие потоки завершат захваченные ими порции. Ожидание нужно потому, что новая таблица
+     * не должна изменяться до конца переноса: иначе ключ, ячейка которого еще не перенесена,
+     * оказался бы в ней дважды.
+     *
+     * @param current переносимая таблица
+     */
+    private void helpTransfer(Table current) {
+        final Table next = current.next;
+        final int capacity = current.mask + 1;
+        int start;
+        while ((start = current.transferIndex.getAndAdd(TRANSFER_STRIDE)) < capacity) {
+            final int end = Math.min(capacity, start + TRANSFER_STRIDE);
+            for (int i = start; i < end; ++i) {
+                transferSlot(current, next, i);
+            }
+            if (current.transferred.addAndGet(end - start) == capacity) {
+                table = next;
+            }
+        }
+        while (table == current) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Замораживает ячейку старой таблицы и копирует ее живую запись в новую таблицу.
+     *
+     * @param current старая таблица
+     * @param next    новая таблица
+     * @param index   индекс ячейки
+     */
+    private void transferSlot(Table current, Table next, int index) {
+        for (;;) {
+            final Node node = current.slots.get(index);
+            if (node == null) {
+                if (current.slots.compareAndSet(index, null, MOVED)) {
+                    return;
+                }
+                continue;
+            }
+            final Object value = node.value;
+            if (node.casValue(value, new Frozen(value))) {
+                if (value != TOMBSTONE) {
+                    copy(next, node.key, node.hash, value);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Вставляет в новую таблицу ключ, заведомо отсутствующий в ней.
+     *
+     * @param target новая таблица
+     * @param key    ключ
+     * @param hash   перемешанный хеш-код ключа
+     * @param value  значение
+     */
+    private static void copy(Table target, Object key, int hash, Object value) {
+        final int mask = target.mask;
+        final int stepSize = step(hash, mask);
+        final Node node = new Node(key, hash, value);
+        int index = hash & mask;
+        while (!target.slots.compareAndSet(index, null, node)) {
+            index = (index + stepSize) & mask;
+        }
+        target.claimed.incrementAndGet();
+    }
+
+    /**
+     * Возвращает слабо согласованный курсор по записям хеш-таблицы. Курсор не бросает
+     * {@link java.util.ConcurrentModificationException}: он проходит ячейки таблицы, актуальной
+     * на момент его создания, и возвращает каждый ключ не более одного раза. Значение ключа, чья
+     * ячейка уже перенесена при изменении размера, ищется в новой таблице. Записи, добавленные
+     * после создания курсора, могут быть не видны.
+     *
+     * @return курсор
+     */
+    @Override
+    public EntryCursor<K, V> cursor() {
+        return new Cursor(table);
+    }
+
+    /**
+     * Курсор по ячейкам одного поколения таблицы.
+     */
+    private final class Cursor implements EntryCursor<K, V> {
+        private final Table source;
+        private int index = -1;
+        private Object key;
+        private Object value;
+        private boolean positioned;
+
+        Cursor(Table source) {
+            this.source = source;
+        }
+
+        @Override
+        public boolean advance() {
+            while (++index <= source.mask) {
+                final Node node = source.slots.get(index);
+
+                if (node == null || node == MOVED) {
+                    continue;
+                }
+                Object current = node.value;
+
+                if (current instanceof Frozen) {
+                    final Object moved = find(source.next, node.key, node.hash);
+                    current = moved == NOT_FOUND ? ((Frozen) current).value : moved;
+                }
+                if (current != TOMBSTONE) {
+                    key = node.key;
+                    value = current;
+                    positioned = true;
+                    return true;
+                }
+            }
+            index = source.mask + 1;
+            key = null;
+            value = null;
+            positioned = false;
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public K key() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+            return (K) key;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V value() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+            return (V) value;
+        }
+    }
+
+    /**
+     * Возвращает строковое представление хеш-таблицы.
+     * При одновременных изменениях представление может не соответствовать ни одному моменту времени.
+     *
+     * @return строковое представление хеш-таблицы
+     */
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder("Hash table: [ ");
+        Table current = table;
+        while (current.next != null) {
+            current = current.next;
+        }
+        for (int i = 0; i <= current.mask; i++) {
+            Node node = current.slots.get(i);
+
+            if (node != null && node != MOVED) {
+                Object value = node.value;
+
+                if (value instanceof Frozen) {
+                    value = ((Frozen) value).value;
+                }
+                if (value != TOMBSTONE) {
+                    description.append(value)
+                               .append(" ");
+                }
+            }
+        }
+
+        return description.append(']').toString();
+    }
+
+    /**
+     * Массив ячеек одного поколения таблицы вместе с состоянием его переноса.
+     */
+    private static final class Table {
+        final AtomicReferenceArray<Node> slots;
+        final int mask;
+        final int threshold;
+        final AtomicInteger claimed = new AtomicInteger();
+        final AtomicInteger transferIndex = new AtomicInteger();
+        final AtomicInteger transferred = new AtomicInteger();
+        volatile Table next;
+
+        Table(int capacity) {
+            slots = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+            threshold = (int) (capacity * REHASH_THRESHOLD);
+        }
+    }
+
+    /**
+     * Узел таблицы. Ключ узла неизменен, значение меняется операцией CAS.
+     */
+    private static final class Node {
+        private static final AtomicReferenceFieldUpdater<Node, Object> VALUE =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "value");
+
+        final Object key;
+        final int hash;
+        volatile Object value;
+
+        Node(Object key, int hash, Object value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+
+        boolean casValue(Object expected, Object newValue) {
+            return VALUE.compareAndSet(this, expected, newValue);
+        }
+    }
+
+    /**
+     * Замороженное значение перенесенного узла.
+     */
+    private static final class Frozen {
+        final Object value;
+
+        Frozen(Object value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Хеш-таблица {@link HashMap}, изменения которой переживают сбой процесса.
+ * <p>
+ * Состояние хранится в каталоге: снимок таблицы ({@value #SNAPSHOT_FILE}, см. {@link HashMap#save})
+ * и журнал упреждающей записи ({@value #LOG_FILE}, см. {@link WriteAheadLog}). Каждый put и remove
+ * сначала дописывается в журнал, затем применяется к таблице; журнал сбрасывается на диск группами,
+ * поэтому не каждая операция оплачивает fsync. При открытии загружается снимок, и поверх него
+ * применяются записи журнала. Когда журнал вырастает больше заданного размера, таблица сохраняется
+ * в новый снимок, а журнал очищается. Если сбой произошел между этими шагами, журнал применяется
+ * к снимку, который уже содержит его записи, что дает то же состояние.
+ * <p>
+ * Класс, как и HashMap, не является потокобезопасным. Операции бросают {@link UncheckedIOException},
+ * если запись в журнал не удалась.
+ *
+ * @param <K> тип ключей, поддерживаемых этой хеш-таблицей
+ * @param <V> тип отображаемых значений
+ */
+public class DurableHashMap<K, V> extends Map<K, V> implements Closeable {
+    private static final String SNAPSHOT_FILE = "table.snapshot";
+    private static final String LOG_FILE = "table.wal";
+    private static final int DEFAULT_GROUP_SIZE = 256;
+    private static final long DEFAULT_GROUP_WINDOW_MILLIS = 10;
+    private static final long DEFAULT_COMPACTION_BYTES = 64L << 20;
+
+    private final Path snapshot;
+    private final SnapshotCodec<K> keyCodec;
+    private final SnapshotCodec<V> valueCodec;
+    private final WriteAheadLog<K, V> log;
+    private final long compactionBytes;
+    private HashMap<K, V> map;
+
+    private DurableHashMap(Path directory, SnapshotCodec<K> keyCodec, SnapshotCodec<V> valueCodec,
+                           int groupSize, long groupWindowMillis, long compactionBytes) throws IOException {
+        this.snapshot = directory.resolve(SNAPSHOT_FILE);
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.compactionBytes = compactionBytes;
+        this.map = Files.exists(snapshot) ? HashMap.load(snapshot, keyCodec, valueCodec) : new HashMap<>();
+        this.log = new WriteAheadLog<>(directory.resolve(LOG_FILE), keyCodec, valueCodec, groupSize, groupWindowMillis);
+        try {
+            log.replay(map);
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        size = map.getSize();
+    }
+
+    /**
+     * Открывает или создает хеш-таблицу в каталоге с параметрами по умолчанию: журнал сбрасывается
+     * на диск каждые {@value #DEFAULT_GROUP_SIZE} операций или {@value #DEFAULT_GROUP_WINDOW_MILLIS} мс,
+     * снимок сохраняется, когда журнал превышает 64 МБ.
+     *
+     * @param directory  каталог с файлами таблицы
+     * @param keyCodec   кодек ключей
+     * @param valueCodec кодек значений
+     * @param <K>        тип ключей
+     * @param <V>        тип значений
+     * @return хеш-таблица с восстановленным состоянием
+     * @throws IOException при ошибке чтения снимка или журнала
+     */
+    public static <K, V> DurableHashMap<K, V> open(Path directory, SnapshotCodec<K> keyCodec,
+                                                   SnapshotCodec<V> valueCodec) throws IOException {
+        return open(directory, keyCodec, valueCodec, DEFAULT_GROUP_SIZE, DEFAULT_GROUP_WINDOW_MILLIS,
+                DEFAULT_COMPACTION_BYTES);
+    }
+
+    /**
+     * Открывает или создает хеш-таблицу в каталоге.
+     *
+     * @param directory         каталог с файлами таблицы (создается при необходимости)
+     * @param keyCodec          кодек ключей
+     * @param valueCodec        кодек значений
+     * @param groupSize         число операций, после которого журнал сбрасывается на диск
+     * @param groupWindowMillis наибольшее время ожидания сброса журнала в миллисекундах,
+     *                          или 0 для сброса только по числу операций и вызовам {@link #sync()}
+     * @param compactionBytes   размер журнала в байтах, после которого сохраняется снимок
+     * @param <K>               тип ключей
+     * @param <V>               тип значений
+     * @return хеш-таблица с восстановленным состоянием
+     * @throws IOException              при ошибке чтения снимка или журнала
+     * @throws IllegalArgumentException если параметры неверны
+     */
+    public static <K, V> DurableHashMap<K, V> open(Path directory, SnapshotCodec<K> keyCodec,
+                                                   SnapshotCodec<V> valueCodec, int groupSize,
+                                                   long groupWindowMillis, long compactionBytes) throws IOException {
+        if (compactionBytes <= 0) {
+            throw new IllegalArgumentException("Размер журнала для сжатия должен быть положительным");
+        }
+        Files.createDirectories(directory);
+        return new DurableHashMap<>(directory, keyCodec, valueCodec, groupSize, groupWindowMillis, compactionBytes);
+    }
+
+    /**
+     * Вставляет пару ключ-значение, предварительно записав операцию в журнал.
+     *
+     * @param key   ключ
+     * @param value значение
+     * @throws UncheckedIOException если запись в журнал не удалась
+     */
+    @Override
+    public void put(K key, V value) {
+        try {
+            log.appendPut(key, value);
+            map.put(key, value);
+            size = map.getSize();
+            compactIfNeeded();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Удаляет запись с указанным ключом, предварительно записав операцию в журнал.
+     *
+     * @param key ключ для удаления
+     * @throws UncheckedIOException если запись в журнал не удалась
+     */
+    @Override
+    public void remove(K key) {
+        try {
+            log.appendRemove(key);
+            map.remove(key);
+            size = map.getSize();
+            compactIfNeeded();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Возвращает значение, связанное с ключом.
+     *
+     * @param key ключ для поиска
+     * @return значение, или null, если ключ не найден
+     */
+    @Override
+    public V get(K key) {
+        return map.get(key);
+    }
+
+    /**
+     * Возвращает курсор по записям таблицы. Изменение таблицы во время обхода приводит
+     * к {@link java.util.ConcurrentModificationException}.
+     *
+     * @return курсор
+     */
+    @Override
+    public EntryCursor<K, V> cursor() {
+        return map.cursor();
+    }
+
+    /**
+     * Сбрасывает на диск все операции, выполненные до вызова.
+     *
+     * @throws IOException при ошибке записи
+     */
+    public void sync() throws IOException {
+        log.sync();
+    }
+
+    /**
+     * Сохраняет таблицу в снимок и очищает журнал.
+     *
+     * @throws IOException при ошибке записи
+     */
+    public void compact() throws IOException {
+        log.sync();
+        map.save(snapshot, keyCodec, valueCodec);
+        log.reset();
+    }
+
+    /**
+     * Возвращает размер журнала в байтах.
+     *
+     * @return размер журнала
+     */
+    public long logSize() {
+        return log.size();
+    }
+
+    /**
+     * Сохраняет на диск все операции и закрывает журнал. Снимок при этом не сохраняется:
+     * при следующем открытии журнал будет применен к последнему снимку.
+     *
+     * @throws IOException при ошибке записи
+     */
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (log.size() > compactionBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Возвращает строковое представление хеш-таблицы.
+     *
+     * @return строковое представление хеш-таблицы
+     */
+    @Override
+    public String toString() {
+        return map.toString();
+    }
+}
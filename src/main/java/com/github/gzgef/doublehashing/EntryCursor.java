@@ -0,0 +1,33 @@
+package com.github.gzgef.doublehashing;
+
+/**
+ * Курсор по записям хеш-таблицы.
+ * Курсор изначально стоит перед первой записью; {@link #advance()} переходит к следующей записи,
+ * после чего ее ключ и значение доступны через {@link #key()} и {@link #value()}.
+ * Один курсор проходит все записи, поэтому обход не создает объектов на каждую запись.
+ *
+ * @param <K> тип ключей
+ * @param <V> тип значений
+ */
+public interface EntryCursor<K, V> {
+    /**
+     * Переходит к следующей записи.
+     *
+     * @return true, если запись есть, или false, если записи закончились
+     */
+    boolean advance();
+
+    /**
+     * Возвращает ключ текущей записи.
+     *
+     * @return ключ
+     */
+    K key();
+
+    /**
+     * Возвращает значение текущей записи.
+     *
+     * @return значение
+     */
+    V value();
+}
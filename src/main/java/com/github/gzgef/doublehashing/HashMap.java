@@ -1,9 +1,22 @@
 package com.github.gzgef.doublehashing;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * Реализация хеш-таблицы с использованием двойного хеширования для разрешения коллизий.
  * Этот класс расширяет абстрактный класс Map и предоставляет обобщенную реализацию
  * хеш-таблицы с автоматическим изменением размера.
+ * Емкость таблицы всегда является степенью двойки, поэтому индексы вычисляются по маске,
+ * а хеш-код ключа перед этим перемешивается выбранной стратегией {@link HashStrategy}.
  *
  * @param <K> тип ключей, поддерживаемых этой хеш-таблицей
  * @param <V> тип отображаемых значений
@@ -12,145 +25,808 @@ public class HashMap<K, V> extends Map<K, V> {
 
     private static final int HASH_PARAM = 47;
     private static final double REHASH_THRESHOLD = 0.75;
-    private static int capacity;
+    private static final int START_CAPACITY = 16;
+    private static final int MIGRATION_STEP = 8;
+    private static final int BATCH_GROUP = 64;
+    private static final Node<?, ?> DELETED = new Node<>(null, null);
+    private static final int SLOT_EMPTY = 0;
+    private static final int SLOT_DELETED = 1;
+    private static final int SLOT_FULL = 2;
+
+    /**
+     * Длина пробы вставки, считающаяся аномальной. При заполнении не больше 0.75 и случайных хешах
+     * вероятность такой пробы - порядка 0.75^64, то есть около 10^-8.
+     */
+    private static final int LONG_PROBE = 64;
+
+    private HashStrategy strategy;
+    private final boolean incremental;
+    private int capacity;
+    private int mask;
+    private int deleted;
+    private TableStatistics statistics;
+
+    /**
+     * Включена ли смена зерна при обнаружении подбора коллизий, и размер, начиная с которого
+     * зерно можно сменить снова.
+     */
+    private boolean floodProtection;
+    private int reseedSize;
+
+    /**
+     * Счетчик структурных изменений (вставок, удалений и перехеширований) для курсоров.
+     */
+    private int modCount;
 
-    private Node[] table;
+    private Node<K, V>[] table;
 
     /**
-     * Создает пустой HashMap с начальной емкостью по умолчанию (10).
+     * Старая таблица, записи которой еще не перенесены в новую при инкрементальном перехешировании,
+     * или null, если перенос не выполняется.
+     */
+    private Node<K, V>[] oldTable;
+    private int oldMask;
+    private int migrated;
+
+    /**
+     * Создает пустой HashMap с начальной емкостью по умолчанию (16)
+     * и стратегией хеширования murmur3.
      */
     public HashMap() {
-        capacity = 10;
-        table = new Node[capacity];
+        this(HashStrategy.murmur3());
+    }
+
+    /**
+     * Создает пустой HashMap с начальной емкостью по умолчанию (16)
+     * и указанной стратегией хеширования.
+     *
+     * @param strategy стратегия перемешивания хеш-кодов ключей
+     */
+    public HashMap(HashStrategy strategy) {
+        this(strategy, false);
+    }
+
+    /**
+     * Создает пустой HashMap с начальной емкостью по умолчанию (16), указанной стратегией хеширования
+     * и режимом перехеширования.
+     * В инкрементальном режиме старая и новая таблицы существуют одновременно, а каждая операция
+     * put, get и remove переносит не более {@value #MIGRATION_STEP} ячеек старой таблицы,
+     * поэтому ни одна операция не копирует всю таблицу целиком.
+     *
+     * @param strategy    стратегия перемешивания хеш-кодов ключей
+     * @param incremental true для инкрементального перехеширования, false для полного
+     */
+    public HashMap(HashStrategy strategy, boolean incremental) {
+        this.strategy = strategy;
+        this.incremental = incremental;
+        capacity = START_CAPACITY;
+        mask = capacity - 1;
+        table = newNodes(capacity);
         size = 0;
     }
 
     /**
-     * Перехеширует хеш-таблицу, удваивая ее емкость и повторно вставляя все записи.
+     * Удаляет из хеш-таблицы все пометки удаленных записей, перехешируя записи без изменения емкости.
+     * Может вызываться явно, например, в период низкой нагрузки. Незавершенный инкрементальный
+     * перенос при этом завершается.
      */
-    private void rehash() {
-        int newCapacity = capacity * 2;
-        Node[] newTable = new Node[newCapacity];
+    public void compact() {
+        finishMigration();
+        rehash(capacity);
+    }
 
-        for (int i = 0; i < capacity; ++i) {
-            if (table[i] != null) {
-                int hash1 = hashFunc1((K) table[i].getKey(), newCapacity);
-                int hash2 = hashFunc2((K) table[i].getKey(), newCapacity);
+    /**
+     * Проверяет, выполняется ли сейчас инкрементальный перенос записей в новую таблицу.
+     *
+     * @return true, если старая таблица еще не перенесена полностью
+     */
+    public boolean isMigrating() {
+        return oldTable != null;
+    }
+
+    /**
+     * Включает сбор статистики с частотой выборки {@value TableStatistics#DEFAULT_SAMPLE_RATE}.
+     *
+     * @return статистика хеш-таблицы
+     */
+    public TableStatistics enableStatistics() {
+        return enableStatistics(TableStatistics.DEFAULT_SAMPLE_RATE);
+    }
 
-                if (newTable[hash1] != null) {
-                    hash1 = hash2;
+    /**
+     * Включает сбор статистики с указанной частотой выборки. Повторный вызов заменяет статистику новой.
+     * В инкрементальном режиме перехешированием считается начало переноса, а к его времени
+     * добавляется время всех последующих шагов переноса.
+     *
+     * @param sampleRate частота выборки поисков (степень двойки)
+     * @return статистика хеш-таблицы
+     */
+    public TableStatistics enableStatistics(int sampleRate) {
+        statistics = new TableStatistics(sampleRate, this::maxProbeLength, () -> deleted * 1.0 / capacity);
+        return statistics;
+    }
+
+    /**
+     * Возвращает статистику хеш-таблицы.
+     *
+     * @return статистика, или null, если сбор статистики не включен
+     */
+    public TableStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Учитывает в статистике длину пробы поиска указанного ключа.
+     * Во время инкрементального переноса длина пробы складывается из проб в новой и старой таблицах.
+     *
+     * @param key ключ для поиска
+     */
+    private void recordLookup(K key) {
+        int probes = 0;
+        Node<K, V>[] source = table;
+        int sourceMask = mask;
+
+        final int hash = strategy.hashObject(key);
+
+        while (source != null) {
+            int hash1 = hashFunc1(hash, sourceMask);
+            final int hash2 = hashFunc2(hash, sourceMask);
+
+            while (source[hash1] != null) {
+                ++probes;
+
+                if (source[hash1] != DELETED && key.equals(source[hash1].getKey())) {
+                    statistics.recordLookup(probes, true);
+                    return;
                 }
 
-                newTable[hash1] = new Node<>(table[i].getKey(), table[i].getValue());
+                hash1 = (hash1 + hash2) & sourceMask;
+            }
+
+            source = source == table ? oldTable : null;
+            sourceMask = oldMask;
+        }
+
+        statistics.recordLookup(probes, false);
+    }
+
+    /**
+     * Вычисляет максимальную длину пробы среди записей текущей и, во время переноса, старой таблицы.
+     *
+     * @return максимальная длина пробы, или 0, если хеш-таблица пуста
+     */
+    private int maxProbeLength() {
+        final Node<K, V>[] old = oldTable;
+        return Math.max(maxProbeLength(table), old == null ? 0 : maxProbeLength(old));
+    }
+
+    /**
+     * Вычисляет максимальную длину пробы среди записей таблицы: число ячеек,
+     * которые просматривает поиск ключа до ячейки, где хранится запись.
+     *
+     * @param source таблица для просмотра
+     * @return максимальная длина пробы
+     */
+    private int maxProbeLength(Node<K, V>[] source) {
+        final int sourceMask = source.length - 1;
+        int max = 0;
+
+        for (int i = 0; i < source.length; ++i) {
+            final Node<K, V> node = source[i];
+
+            if (node != null && node != DELETED) {
+                final int hash = strategy.hashObject(node.getKey());
+                int hash1 = hashFunc1(hash, sourceMask);
+                final int hash2 = hashFunc2(hash, sourceMask);
+                int probes = 1;
+
+                while (hash1 != i) {
+                    hash1 = (hash1 + hash2) & sourceMask;
+                    ++probes;
+                }
+
+                max = Math.max(max, probes);
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Перехеширует хеш-таблицу в таблицу указанной емкости, повторно вставляя все записи
+     * и отбрасывая удаленные ячейки.
+     *
+     * @param newCapacity новая емкость (степень двойки)
+     */
+    private void rehash(int newCapacity) {
+        final long start = System.nanoTime();
+        final int newMask = newCapacity - 1;
+        final Node<K, V>[] newTable = newNodes(newCapacity);
+
+        for (int i = 0; i < capacity; ++i) {
+            if (table[i] != null && table[i] != DELETED) {
+                insertNew(newTable, newMask, table[i]);
             }
         }
 
         capacity = newCapacity;
+        mask = newMask;
+        deleted = 0;
         table = newTable;
+        ++modCount;
+
+        if (statistics != null) {
+            statistics.recordRehash(System.nanoTime() - start);
+        }
     }
 
     /**
-     * Первая хеш-функция для двойного хеширования.
+     * Начинает инкрементальный перенос записей в таблицу указанной емкости.
+     * Текущая таблица становится старой и переносится по частям последующими операциями.
      *
-     * @param key             ключ для хеширования
-     * @param currentCapacity текущая емкость хеш-таблицы
-     * @return хеш-значение
+     * @param newCapacity новая емкость (степень двойки)
      */
-    private int hashFunc1(K key, int currentCapacity) {
-        return (key.hashCode() & 0x7fffffff) % currentCapacity;
+    private void startMigration(int newCapacity) {
+        finishMigration();
+        final long start = System.nanoTime();
+        oldTable = table;
+        oldMask = mask;
+        migrated = 0;
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        deleted = 0;
+        table = newNodes(newCapacity);
+        ++modCount;
+
+        if (statistics != null) {
+            statistics.recordRehash(System.nanoTime() - start);
+        }
     }
 
     /**
-     * Вторая хеш-функция для двойного хеширования.
-     * Обеспечивает нечетный размер шага для лучшего распределения.
+     * Переносит в новую таблицу не более указанного количества ячеек старой таблицы.
+     * Перенесенные ячейки помечаются как удаленные, чтобы не разрывать последовательности проб
+     * еще не перенесенных ключей.
      *
-     * @param key             ключ для хеширования
-     * @param currentCapacity текущая емкость хеш-таблицы
-     * @return размер шага для пробирования
+     * @param slots количество ячеек для переноса
+     */
+    private void migrate(int slots) {
+        if (oldTable == null) {
+            return;
+        }
+
+        final long start = statistics == null ? 0 : System.nanoTime();
+        final int end = Math.min(oldTable.length, migrated + slots);
+
+        for (; migrated < end; ++migrated) {
+            final Node<K, V> node = oldTable[migrated];
+
+            if (node != null && node != DELETED) {
+                insertNew(table, mask, node);
+                oldTable[migrated] = deleted();
+            }
+        }
+
+        if (migrated == oldTable.length) {
+            oldTable = null;
+        }
+
+        if (statistics != null) {
+            statistics.recordRehashTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Завершает незавершенный инкрементальный перенос.
+     */
+    private void finishMigration() {
+        if (oldTable != null) {
+            migrate(oldTable.length);
+        }
+    }
+
+    /**
+     * Вставляет узел, ключ которого заведомо отсутствует в таблице, в первую свободную ячейку.
+     *
+     * @param target     таблица для вставки
+     * @param targetMask маска емкости таблицы
+     * @param node       узел для вставки
      */
-    private int hashFunc2(K key, int currentCapacity) {
-        int hash = (key.hashCode() * HASH_PARAM) % (currentCapacity - 1);
+    private void insertNew(Node<K, V>[] target, int targetMask, Node<K, V> node) {
+        final int hash = strategy.hashObject(node.getKey());
+        int hash1 = hashFunc1(hash, targetMask);
+        final int hash2 = hashFunc2(hash, targetMask);
 
-        if (hash % 2 == 0) {
-            ++hash;
+        while (target[hash1] != null) {
+            hash1 = (hash1 + hash2) & targetMask;
         }
 
-        return hash;
+        target[hash1] = node;
+    }
+
+    /**
+     * Ищет ячейку с указанным ключом в таблице.
+     *
+     * @param source     таблица для поиска
+     * @param sourceMask маска емкости таблицы
+     * @param key        ключ для поиска
+     * @return индекс ячейки, или -1, если ключ не найден
+     */
+    private int indexOf(Node<K, V>[] source, int sourceMask, K key) {
+        final int hash = strategy.hashObject(key);
+        int hash1 = hashFunc1(hash, sourceMask);
+        final int hash2 = hashFunc2(hash, sourceMask);
+
+        while (source[hash1] != null) {
+            if (source[hash1] != DELETED && key.equals(source[hash1].getKey())) {
+                return hash1;
+            }
+
+            hash1 = (hash1 + hash2) & sourceMask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Создает массив ячеек. Массив обобщенного типа нельзя создать напрямую, поэтому создается
+     * массив {@code Node<?, ?>[]} и приводится к {@code Node<K, V>[]}; наружу таблицы он не передается.
+     *
+     * @param length длина массива
+     * @param <K>    тип ключей
+     * @param <V>    тип значений
+     * @return пустой массив ячеек
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] newNodes(int length) {
+        return (Node<K, V>[]) new Node<?, ?>[length];
+    }
+
+    /**
+     * Возвращает пометку удаленной ячейки с типом ячеек таблицы. Ключ и значение пометки
+     * никогда не читаются, поэтому приведение безопасно.
+     *
+     * @param <K> тип ключей
+     * @param <V> тип значений
+     * @return пометка удаленной ячейки
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V> deleted() {
+        return (Node<K, V>) DELETED;
+    }
+
+    /**
+     * Первая хеш-функция для двойного хеширования.
+     *
+     * @param hash        хеш-значение ключа, вычисленное стратегией
+     * @param currentMask маска текущей емкости хеш-таблицы (capacity - 1)
+     * @return индекс первой ячейки пробы
+     */
+    private static int hashFunc1(int hash, int currentMask) {
+        return hash & currentMask;
+    }
+
+    /**
+     * Вторая хеш-функция для двойного хеширования.
+     * Обеспечивает нечетный размер шага, взаимно простой с емкостью (степенью двойки).
+     *
+     * @param hash        хеш-значение ключа, вычисленное стратегией
+     * @param currentMask маска текущей емкости хеш-таблицы (capacity - 1)
+     * @return размер шага для пробирования
+     */
+    private static int hashFunc2(int hash, int currentMask) {
+        return (((hash >>> 16) ^ hash) * HASH_PARAM) & currentMask | 1;
     }
 
     /**
      * Вставляет ключ-значение в хеш-таблицу.
      * Если ключ уже существует, значение обновляется.
-     * Автоматически перехеширует, если коэффициент загрузки превышает порог.
+     * Автоматически перехеширует, если коэффициент загрузки превышает порог. Порог учитывает
+     * и удаленные ячейки: если среди занятых ячеек преобладают удаленные, таблица очищается
+     * без изменения емкости, иначе емкость удваивается.
      *
      * @param key   ключ для вставки
      * @param value значение для ассоциации с ключом
      */
     @Override
     public void put(K key, V value) {
-        if (REHASH_THRESHOLD <= (size * 1.0 / capacity)) {
-            rehash();
+        migrate(MIGRATION_STEP);
+
+        if (REHASH_THRESHOLD <= ((size + deleted) * 1.0 / capacity)) {
+            final int newCapacity = REHASH_THRESHOLD <= (size * 2.0 / capacity) ? capacity * 2 : capacity;
+
+            if (incremental) {
+                startMigration(newCapacity);
+                migrate(MIGRATION_STEP);
+            } else {
+                rehash(newCapacity);
+            }
         }
 
-        int hash1 = hashFunc1(key, capacity);
-        int hash2 = hashFunc2(key, capacity);
+        if (oldTable != null) {
+            final int index = indexOf(oldTable, oldMask, key);
+
+            if (index >= 0) {
+                oldTable[index].setValue(value);
+                return;
+            }
+        }
+
+        final int hash = strategy.hashObject(key);
+        int hash1 = hashFunc1(hash, mask);
+        final int hash2 = hashFunc2(hash, mask);
+        int free = -1;
+        int probes = 0;
 
         while (table[hash1] != null) {
-            if (key.equals(table[hash1].getKey())) {
+            ++probes;
+
+            if (table[hash1] == DELETED) {
+                if (free < 0) {
+                    free = hash1;
+                }
+            } else if (key.equals(table[hash1].getKey())) {
                 table[hash1].setValue(value);
                 return;
             }
 
-            hash1 = hash2;
+            hash1 = (hash1 + hash2) & mask;
+        }
+
+        if (free >= 0) {
+            hash1 = free;
+            --deleted;
         }
 
         table[hash1] = new Node<>(key, value);
         ++size;
+        ++modCount;
+
+        if (probes > LONG_PROBE) {
+            onLongProbe(hash);
+        }
+    }
+
+    /**
+     * Включает защиту от подбора коллизий: если проба вставки длиннее {@value #LONG_PROBE} ячеек,
+     * таблица меняет зерно стратегии хеширования и перехешируется без изменения емкости.
+     * Если у ключей на длинной пробе совпадают полные хеш-значения, смена зерна хеш-кода
+     * не поможет, и таблица переходит на стратегию {@link HashStrategy#keyed()}, хеширующую
+     * содержимое строк. После смены зерна следующая возможна, только когда число записей удвоится,
+     * поэтому коллизии, которые не устраняются никакой стратегией, не вызывают перехеширования
+     * на каждой вставке. Длинные пробы учитываются статистикой и без защиты.
+     */
+    public void enableFloodProtection() {
+        floodProtection = true;
+    }
+
+    /**
+     * Возвращает текущую стратегию хеширования: она меняется, если защита от подбора коллизий
+     * сменила зерно.
+     *
+     * @return стратегия хеширования
+     */
+    public HashStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Обрабатывает вставку с аномально длинной пробой.
+     *
+     * @param hash хеш-значение вставленного ключа
+     */
+    private void onLongProbe(int hash) {
+        if (statistics != null) {
+            statistics.recordLongProbe();
+        }
+
+        if (!floodProtection || size < reseedSize) {
+            return;
+        }
+
+        final HashStrategy next = !(strategy instanceof SipHashStrategy) && countEqualHashes(hash) > LONG_PROBE / 2
+                ? HashStrategy.keyed()
+                : strategy.reseeded();
+        finishMigration();
+        strategy = next;
+        rehash(capacity);
+        reseedSize = size * 2;
+
+        if (statistics != null) {
+            statistics.recordReseed();
+        }
+    }
+
+    /**
+     * Считает записи на последовательности проб указанного хеш-значения, хеш-значение ключа
+     * которых совпадает с ним полностью.
+     *
+     * @param hash хеш-значение
+     * @return число записей с тем же хеш-значением
+     */
+    private int countEqualHashes(int hash) {
+        int hash1 = hashFunc1(hash, mask);
+        final int hash2 = hashFunc2(hash, mask);
+        int count = 0;
+
+        while (table[hash1] != null) {
+            if (table[hash1] != DELETED && strategy.hashObject(table[hash1].getKey()) == hash) {
+                ++count;
+            }
+
+            hash1 = (hash1 + hash2) & mask;
+        }
+
+        return count;
     }
 
     /**
      * Удаляет запись с указанным ключом из хеш-таблицы.
+     * Ячейка помечается как удаленная, чтобы не разрывать последовательности проб других ключей.
      *
      * @param key ключ для удаления
      */
     @Override
     public void remove(K key) {
-        int hash1 = hashFunc1(key, capacity);
-        int hash2 = hashFunc2(key, capacity);
+        migrate(MIGRATION_STEP);
 
-        while (table[hash1] != null) {
-            if (key.equals(table[hash1].getKey())) {
-                table[hash1] = null;
+        final int index = indexOf(table, mask, key);
+
+        if (index >= 0) {
+            table[index] = deleted();
+            --size;
+            ++deleted;
+            ++modCount;
+        } else if (oldTable != null) {
+            final int oldIndex = indexOf(oldTable, oldMask, key);
+
+            if (oldIndex >= 0) {
+                oldTable[oldIndex] = deleted();
                 --size;
-                return;
+                ++modCount;
             }
-
-            hash1 = hash2;
         }
     }
 
     /**
      * Возвращает значение, связанное с указанным ключом.
+     * Во время инкрементального переноса ключ ищется сначала в новой, затем в старой таблице.
      *
      * @param key ключ, для которого нужно вернуть связанное значение
      * @return значение, связанное с ключом, или null, если ключ не найден
      */
     @Override
     public V get(K key) {
-        int hash1 = hashFunc1(key, capacity);
-        int hash2 = hashFunc2(key, capacity);
+        migrate(MIGRATION_STEP);
 
-        while (table[hash1] != null) {
-            if (key.equals(table[hash1].getKey())) {
-                return (V) table[hash1].getValue();
-            }
+        if (statistics != null && statistics.sample()) {
+            recordLookup(key);
+        }
 
-            hash1 = hash2;
+        final int index = indexOf(table, mask, key);
+
+        if (index >= 0) {
+            return table[index].getValue();
+        }
+
+        if (oldTable != null) {
+            final int oldIndex = indexOf(oldTable, oldMask, key);
+
+            if (oldIndex >= 0) {
+                return oldTable[oldIndex].getValue();
+            }
         }
 
         return null;
     }
 
+    /**
+     * Вставляет пары ключ-значение из массивов. При полном перехешировании емкость заранее
+     * увеличивается под все ключи, поэтому таблица перехешируется не более одного раза.
+     *
+     * @param keys   ключи для вставки
+     * @param values значения (не короче массива ключей)
+     * @throws IllegalArgumentException если массив значений короче массива ключей
+     */
+    @Override
+    public void putAll(K[] keys, V[] values) {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("Массив значений короче массива ключей");
+        }
+
+        if (!incremental) {
+            int newCapacity = capacity;
+
+            while (REHASH_THRESHOLD <= ((size + keys.length) * 1.0 / newCapacity)) {
+                newCapacity *= 2;
+            }
+
+            if (newCapacity != capacity) {
+                rehash(newCapacity);
+            }
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            put(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * Записывает в values[i] значение, связанное с ключом keys[i], или null, если ключ не найден.
+     * Ключи обрабатываются группами по {@value #BATCH_GROUP}: сначала вычисляются хеши всех ключей
+     * группы, затем пробы выполняются кругами, и на каждом круге сначала читаются очередные ячейки
+     * всех незавершенных ключей, а уже потом сравниваются ключи. Промахи кеша разных ключей
+     * при этом перекрываются. Во время инкрементального переноса ключи ищутся по одному.
+     *
+     * @param keys   ключи для поиска
+     * @param values массив для найденных значений (не короче массива ключей)
+     * @return количество ключей, для которых найдено значение, отличное от null
+     * @throws IllegalArgumentException если массив значений короче массива ключей
+     */
+    @Override
+    public int getAll(K[] keys, V[] values) {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("Массив значений короче массива ключей");
+        }
+
+        int count = 0;
+
+        if (oldTable != null) {
+            for (int i = 0; i < keys.length; i++) {
+                values[i] = get(keys[i]);
+
+                if (values[i] != null) {
+                    ++count;
+                }
+            }
+
+            return count;
+        }
+
+        final int[] slots = new int[BATCH_GROUP];
+        final int[] steps = new int[BATCH_GROUP];
+        final int[] active = new int[BATCH_GROUP];
+        final Node<K, V>[] nodes = newNodes(BATCH_GROUP);
+
+        for (int base = 0; base < keys.length; base += BATCH_GROUP) {
+            int lanes = Math.min(BATCH_GROUP, keys.length - base);
+
+            for (int j = 0; j < lanes; ++j) {
+                final int hash = strategy.hashObject(keys[base + j]);
+                slots[j] = hash & mask;
+                steps[j] = (((hash >>> 16) ^ hash) * HASH_PARAM) & mask | 1;
+                active[j] = j;
+            }
+
+            while (lanes > 0) {
+                for (int t = 0; t < lanes; ++t) {
+                    nodes[active[t]] = table[slots[active[t]]];
+                }
+
+                int remaining = 0;
+
+                for (int t = 0; t < lanes; ++t) {
+                    final int j = active[t];
+                    final Node<K, V> node = nodes[j];
+
+                    if (node == null) {
+                        values[base + j] = null;
+                    } else if (node != DELETED && keys[base + j].equals(node.getKey())) {
+                        values[base + j] = node.getValue();
+
+                        if (values[base + j] != null) {
+                            ++count;
+                        }
+                    } else {
+                        slots[j] = (slots[j] + steps[j]) & mask;
+                        active[remaining++] = j;
+                    }
+                }
+
+                lanes = remaining;
+            }
+        }
+
+        if (statistics != null) {
+            for (K key : keys) {
+                if (statistics.sample()) {
+                    recordLookup(key);
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Сохраняет снимок хеш-таблицы в двоичном формате: заголовок с емкостью и параметрами
+     * хеширования, затем ячейки в порядке таблицы (байт состояния, а у занятых ячеек - ключ
+     * и значение, записанные кодеками), затем CRC32. Незавершенный инкрементальный перенос
+     * предварительно завершается. Снимок пишется во временный файл, который затем заменяет
+     * целевой.
+     *
+     * @param path       файл снимка
+     * @param keyCodec   кодек ключей
+     * @param valueCodec кодек значений
+     * @throws IOException              при ошибке записи
+     * @throws IllegalArgumentException если стратегию хеширования нельзя сохранить в снимке
+     */
+    public void save(Path path, SnapshotCodec<? super K> keyCodec, SnapshotCodec<? super V> valueCodec)
+            throws IOException {
+        finishMigration();
+
+        try (SnapshotWriter writer = new SnapshotWriter(path, Snapshot.TYPE_HASH_MAP,
+                incremental ? Snapshot.FLAG_INCREMENTAL : 0, strategy, HASH_PARAM, capacity, size, deleted)) {
+            final DataOutputStream out = new DataOutputStream(writer);
+
+            for (Node<K, V> node : table) {
+                if (node == null) {
+                    out.writeByte(SLOT_EMPTY);
+                } else if (node == DELETED) {
+                    out.writeByte(SLOT_DELETED);
+                } else {
+                    out.writeByte(SLOT_FULL);
+                    keyCodec.write(out, node.getKey());
+                    valueCodec.write(out, node.getValue());
+                }
+            }
+
+            out.flush();
+            writer.finish();
+        }
+    }
+
+    /**
+     * Загружает хеш-таблицу из снимка, сохраненного методом {@link #save}. Ячейки размещаются
+     * на прежних местах, поэтому ключи не перехешируются; для этого хеш-коды ключей должны
+     * совпадать с хеш-кодами при сохранении. Стратегия хеширования и режим перехеширования
+     * восстанавливаются из снимка.
+     *
+     * @param path       файл снимка
+     * @param keyCodec   кодек ключей
+     * @param valueCodec кодек значений
+     * @param <K>        тип ключей
+     * @param <V>        тип значений
+     * @return загруженная хеш-таблица
+     * @throws IOException при ошибке чтения, неверной контрольной сумме или неподходящем снимке
+     */
+    public static <K, V> HashMap<K, V> load(Path path, SnapshotCodec<? extends K> keyCodec,
+                                            SnapshotCodec<? extends V> valueCodec) throws IOException {
+        try (SnapshotReader reader = new SnapshotReader(path, Snapshot.TYPE_HASH_MAP, HASH_PARAM)) {
+            final DataInputStream in = new DataInputStream(reader);
+            final Node<K, V>[] slots = newNodes(reader.capacity);
+            int full = 0;
+            int removed = 0;
+
+            for (int i = 0; i < slots.length; ++i) {
+                final int state = in.readByte();
+
+                if (state == SLOT_DELETED) {
+                    slots[i] = deleted();
+                    ++removed;
+                } else if (state == SLOT_FULL) {
+                    slots[i] = new Node<>(keyCodec.read(in), valueCodec.read(in));
+                    ++full;
+                } else if (state != SLOT_EMPTY) {
+                    throw new IOException("Неверное состояние ячейки в снимке: " + state);
+                }
+            }
+
+            if (full != reader.size || removed != reader.deleted) {
+                throw new IOException("Заголовок снимка не соответствует ячейкам");
+            }
+            reader.finish();
+
+            final HashMap<K, V> map = new HashMap<>(reader.strategy, (reader.flags & Snapshot.FLAG_INCREMENTAL) != 0);
+            map.table = slots;
+            map.capacity = reader.capacity;
+            map.mask = reader.capacity - 1;
+            map.size = full;
+            map.deleted = removed;
+            return map;
+        }
+    }
+
     /**
      * Возвращает строковое представление хеш-таблицы.
      *
@@ -160,23 +836,207 @@ public class HashMap<K, V> extends Map<K, V> {
     public String toString() {
         StringBuilder description = new StringBuilder("Hash table: [ ");
 
-        for (int i = 1; i < capacity; i++) {
+        for (int i = 0; i < capacity; i++) {
             Node<K, V> node = table[i];
 
-            if (node != null) {
+            if (node != null && node != DELETED) {
                 description.append(node.getValue())
                            .append(" ");
             }
         }
 
+        if (oldTable != null) {
+            for (int i = migrated; i < oldTable.length; i++) {
+                Node<K, V> node = oldTable[i];
+
+                if (node != null && node != DELETED) {
+                    description.append(node.getValue())
+                               .append(" ");
+                }
+            }
+        }
+
         return description.append(']').toString();
     }
 
+    /**
+     * Возвращает курсор по записям хеш-таблицы. Незавершенный инкрементальный перенос
+     * перед этим завершается, чтобы курсор проходил одну таблицу.
+     * Вставка нового ключа, удаление или перехеширование во время обхода приводят
+     * к {@link ConcurrentModificationException}; обновление значения существующего ключа допускается.
+     *
+     * @return курсор
+     */
+    @Override
+    public EntryCursor<K, V> cursor() {
+        finishMigration();
+        return new Cursor();
+    }
+
+    /**
+     * Курсор по ячейкам текущей таблицы.
+     */
+    private final class Cursor implements EntryCursor<K, V> {
+        private final Node<K, V>[] slots = table;
+        private final int expectedModCount = modCount;
+        private int index = -1;
+        private Node<K, V> current;
+
+        @Override
+        public boolean advance() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            while (++index < slots.length) {
+                final Node<K, V> node = slots[index];
+
+                if (node != null && node != DELETED) {
+                    current = node;
+                    return true;
+                }
+            }
+            index = slots.length;
+            current = null;
+            return false;
+        }
+
+        @Override
+        public K key() {
+            if (current == null) {
+                throw new NoSuchElementException();
+            }
+            return current.getKey();
+        }
+
+        @Override
+        public V value() {
+            if (current == null) {
+                throw new NoSuchElementException();
+            }
+            return current.getValue();
+        }
+    }
+
+    /**
+     * Возвращает делимый итератор по записям хеш-таблицы. Незавершенный инкрементальный перенос
+     * перед этим завершается. Итератор делит диапазон ячеек пополам, поэтому параллельный поток
+     * распределяет таблицу между потоками пула fork-join равными долями ячеек. Записи не копируются:
+     * итератор возвращает узлы таблицы. Точный размер (SIZED) известен только для всего итератора;
+     * части сообщают оценку. Вставка нового ключа, удаление или перехеширование во время обхода
+     * приводят к {@link ConcurrentModificationException}.
+     *
+     * @return итератор по записям
+     */
+    public Spliterator<Entry<K, V>> spliterator() {
+        finishMigration();
+        return new EntrySpliterator(table, 0, table.length, size, modCount,
+                Spliterator.SIZED | Spliterator.DISTINCT | Spliterator.NONNULL);
+    }
+
+    /**
+     * Возвращает поток записей хеш-таблицы; {@code entryStream().parallel()} делит таблицу между ядрами.
+     *
+     * @return поток записей
+     * @see #spliterator()
+     */
+    public Stream<Entry<K, V>> entryStream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Возвращает поток ключей хеш-таблицы.
+     *
+     * @return поток ключей
+     * @see #spliterator()
+     */
+    public Stream<K> keyStream() {
+        return entryStream().map(Entry::getKey);
+    }
+
+    /**
+     * Делимый итератор по диапазону ячеек [origin, fence) таблицы, актуальной на момент
+     * создания корневого итератора. Части наследуют ожидаемое значение счетчика изменений корня.
+     */
+    private final class EntrySpliterator implements Spliterator<Entry<K, V>> {
+        private final Node<K, V>[] slots;
+        private final int fence;
+        private final int expectedModCount;
+        private int origin;
+        private long estimate;
+        private int characteristics;
+
+        EntrySpliterator(Node<K, V>[] slots, int origin, int fence, long estimate, int expectedModCount,
+                         int characteristics) {
+            this.slots = slots;
+            this.origin = origin;
+            this.fence = fence;
+            this.estimate = estimate;
+            this.expectedModCount = expectedModCount;
+            this.characteristics = characteristics;
+        }
+
+        @Override
+        public Spliterator<Entry<K, V>> trySplit() {
+            final int mid = (origin + fence) >>> 1;
+            if (mid <= origin) {
+                return null;
+            }
+            estimate >>>= 1;
+            characteristics &= ~Spliterator.SIZED;
+            final EntrySpliterator prefix =
+                    new EntrySpliterator(slots, origin, mid, estimate, expectedModCount, characteristics);
+            origin = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Entry<K, V>> action) {
+            while (origin < fence) {
+                final Node<K, V> node = slots[origin++];
+
+                if (node != null && node != DELETED) {
+                    action.accept(node);
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Entry<K, V>> action) {
+            final int end = fence;
+            for (int i = origin; i < end; ++i) {
+                final Node<K, V> node = slots[i];
+
+                if (node != null && node != DELETED) {
+                    action.accept(node);
+                }
+            }
+            origin = end;
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return characteristics;
+        }
+    }
+
     /**
      * Внутренний класс, представляющий узел в хеш-таблице.
      * Реализует интерфейс Entry для хранения пар ключ-значение.
      */
-    private class Node<K, V> implements Entry<K, V> {
+    private static class Node<K, V> implements Entry<K, V> {
         private K key;
         private V value;
 
@@ -0,0 +1,98 @@
+package com.github.gzgef.doublehashing;
+
+/**
+ * Стратегия перемешивания битов хеш-кода перед вычислением индекса ячейки.
+ * Хеш-таблицы используют емкость, равную степени двойки, и берут индекс по маске младших битов,
+ * поэтому качество таблицы определяется тем, насколько хорошо стратегия распределяет
+ * младшие биты для последовательных и кратных ключей.
+ */
+public interface HashStrategy {
+    /**
+     * Перемешивает биты хеш-кода.
+     *
+     * @param key ключ или хеш-код объекта
+     * @return перемешанное хеш-значение
+     */
+    int hash(int key);
+
+    /**
+     * Вычисляет хеш-значение ключа-объекта. По умолчанию перемешивает его {@code hashCode()};
+     * стратегии с ключом могут хешировать содержимое ключа, чтобы объекты с совпадающими
+     * хеш-кодами не попадали в одну ячейку.
+     *
+     * @param key ключ (не null)
+     * @return хеш-значение
+     */
+    default int hashObject(Object key) {
+        return hash(key.hashCode());
+    }
+
+    /**
+     * Возвращает стратегию с новым случайным зерном. Используется таблицами, обнаружившими
+     * подбор коллизий: после смены зерна старые последовательности проб распадаются.
+     * Стратегии без зерна заменяются стратегией {@link #random()}.
+     *
+     * @return стратегия с новым зерном
+     */
+    default HashStrategy reseeded() {
+        return random();
+    }
+
+    /**
+     * Возвращает стратегию, оставляющую ключ без изменений.
+     * С маской по емкости эквивалентна {@code key % capacity} для неотрицательных ключей.
+     *
+     * @return тождественная стратегия
+     */
+    static HashStrategy identity() {
+        return StandardHashStrategy.IDENTITY;
+    }
+
+    /**
+     * Возвращает мультипликативную (фибоначчиеву) стратегию.
+     *
+     * @return мультипликативная стратегия
+     */
+    static HashStrategy fibonacci() {
+        return StandardHashStrategy.FIBONACCI;
+    }
+
+    /**
+     * Возвращает стратегию на основе финализатора MurmurHash3.
+     *
+     * @return стратегия murmur3
+     */
+    static HashStrategy murmur3() {
+        return StandardHashStrategy.MURMUR3;
+    }
+
+    /**
+     * Возвращает стратегию, зависящую от указанного зерна.
+     *
+     * @param seed зерно хеширования
+     * @return стратегия с зерном
+     */
+    static HashStrategy seeded(int seed) {
+        return new SeededHashStrategy(seed);
+    }
+
+    /**
+     * Возвращает стратегию с зерном, выбранным случайно из {@link java.security.SecureRandom}.
+     * Такую стратегию можно сохранить в снимке.
+     *
+     * @return стратегия со случайным зерном
+     */
+    static HashStrategy random() {
+        return SeededHashStrategy.random();
+    }
+
+    /**
+     * Возвращает стратегию SipHash-1-3 со случайным 128-битным ключом. В отличие от {@link #random()},
+     * строки хешируются по содержимому, поэтому строки с одинаковым {@code hashCode()} не сталкиваются.
+     *
+     * @return стратегия с ключом
+     */
+    static HashStrategy keyed() {
+        return SipHashStrategy.random();
+    }
+}
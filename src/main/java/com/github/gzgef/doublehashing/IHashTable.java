@@ -1,5 +1,7 @@
 package com.github.gzgef.doublehashing;
 
+import java.util.function.BiConsumer;
+
 /**
  * Интерфейс, определяющий основные операции для структуры данных хеш-таблицы.
  *
@@ -44,4 +46,76 @@ public interface IHashTable<K, V> {
      * @return размер хеш-таблицы
      */
     int getSize();
+
+    /**
+     * Вставляет пары ключ-значение из массивов: ключ keys[i] связывается со значением values[i].
+     * Реализация по умолчанию вызывает {@link #put(Object, Object)} для каждого ключа.
+     *
+     * @param keys   ключи для вставки
+     * @param values значения (не короче массива ключей)
+     * @throws IllegalArgumentException если массив значений короче массива ключей
+     */
+    default void putAll(K[] keys, V[] values) {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("Массив значений короче массива ключей");
+        }
+        for (int i = 0; i < keys.length; i++) {
+            put(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * Записывает в values[i] значение, связанное с ключом keys[i], или null, если ключ не найден.
+     * Реализация по умолчанию вызывает {@link #get(Object)} для каждого ключа.
+     *
+     * @param keys   ключи для поиска
+     * @param values массив для найденных значений (не короче массива ключей)
+     * @return количество ключей, для которых найдено значение, отличное от null
+     * @throws IllegalArgumentException если массив значений короче массива ключей
+     */
+    default int getAll(K[] keys, V[] values) {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("Массив значений короче массива ключей");
+        }
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = get(keys[i]);
+            if (values[i] != null) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Удаляет записи с ключами из массива.
+     * Реализация по умолчанию вызывает {@link #remove(Object)} для каждого ключа.
+     *
+     * @param keys ключи для удаления
+     */
+    default void removeAll(K[] keys) {
+        for (K key : keys) {
+            remove(key);
+        }
+    }
+
+    /**
+     * Возвращает курсор по записям хеш-таблицы в порядке их расположения в памяти.
+     *
+     * @return курсор
+     */
+    EntryCursor<K, V> cursor();
+
+    /**
+     * Выполняет действие для каждой записи хеш-таблицы.
+     * Реализация по умолчанию обходит записи курсором {@link #cursor()}.
+     *
+     * @param action действие, получающее ключ и значение записи
+     */
+    default void forEach(BiConsumer<? super K, ? super V> action) {
+        final EntryCursor<K, V> cursor = cursor();
+        while (cursor.advance()) {
+            action.accept(cursor.key(), cursor.value());
+        }
+    }
 }
@@ -0,0 +1,402 @@
+package com.github.gzgef.doublehashing;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+
+/**
+ * Кеш с ограниченным числом записей и вытеснением давно не использованных (LRU).
+ * <p>
+ * Записи лежат в плоских массивах ключей, значений и хешей, рассчитанных на максимальное число
+ * записей, и связаны в двусвязный список по порядку обращений массивами индексов prev и next.
+ * Индекс записи по ключу ищется в отдельном массиве ячеек int линейным пробированием; ячейка
+ * хранит номер записи плюс один, а 0 означает пустую ячейку. Массивы создаются один раз
+ * в конструкторе и не перехешируются: ячеек не меньше удвоенного максимального числа записей,
+ * а удаление сдвигает следующие записи кластера назад, поэтому пометки удаленных ячеек
+ * не накапливаются. Поиск, обновление порядка и вытеснение не создают объектов.
+ * <p>
+ * Когда кеш заполнен, вставка нового ключа вытесняет запись в хвосте списка и занимает
+ * ее номер. Вытесненная запись передается слушателю, заданному методом
+ * {@link #setEvictionListener(BiConsumer)}. Кеш считает попадания и промахи {@link #get}
+ * и вытеснения. Этот класс не потокобезопасен.
+ *
+ * @param <K> тип ключей, поддерживаемых этим кешем
+ * @param <V> тип кешируемых значений
+ */
+public class LruCache<K, V> extends Map<K, V> {
+
+    private static final int NIL = -1;
+
+    private final HashStrategy strategy;
+    private final int maxEntries;
+    private final int mask;
+
+    /**
+     * Ячейки индекса: номер записи плюс один, или 0 для пустой ячейки.
+     */
+    private final int[] slots;
+    private final Object[] keys;
+    private final Object[] values;
+    private final int[] hashes;
+
+    /**
+     * Соседи записи в списке обращений: prev - к недавно использованным, next - к давно
+     * использованным. У освобожденных записей next связывает список свободных номеров.
+     */
+    private final int[] prev;
+    private final int[] next;
+    private int head = NIL;
+    private int tail = NIL;
+    private int free = NIL;
+    private int allocated;
+
+    private BiConsumer<? super K, ? super V> evictionListener;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Счетчик структурных изменений (вставок, удалений, вытеснений и перемещений в списке
+     * обращений) для курсоров.
+     */
+    private int modCount;
+
+    /**
+     * Создает пустой кеш с указанным максимальным числом записей и стратегией хеширования murmur3.
+     *
+     * @param maxEntries максимальное число записей
+     * @throws IllegalArgumentException если maxEntries меньше 1 или слишком велико
+     */
+    public LruCache(int maxEntries) {
+        this(maxEntries, HashStrategy.murmur3());
+    }
+
+    /**
+     * Создает пустой кеш с указанным максимальным числом записей и стратегией хеширования.
+     *
+     * @param maxEntries максимальное число записей
+     * @param strategy   стратегия хеширования ключей
+     * @throws IllegalArgumentException если maxEntries меньше 1 или слишком велико
+     */
+    public LruCache(int maxEntries, HashStrategy strategy) {
+        if (maxEntries < 1 || maxEntries > 1 << 29) {
+            throw new IllegalArgumentException("Недопустимое максимальное число записей: " + maxEntries);
+        }
+        this.strategy = strategy;
+        this.maxEntries = maxEntries;
+        final int slotCount = Integer.highestOneBit((maxEntries << 1) - 1) << 1;
+        mask = slotCount - 1;
+        slots = new int[slotCount];
+        keys = new Object[maxEntries];
+        values = new Object[maxEntries];
+        hashes = new int[maxEntries];
+        prev = new int[maxEntries];
+        next = new int[maxEntries];
+        size = 0;
+    }
+
+    /**
+     * Задает слушатель, которому передаются записи, вытесненные при вставке в заполненный кеш.
+     * Явное удаление методом {@link #remove} слушателю не передается. Слушатель вызывается
+     * после того, как новая запись вставлена.
+     *
+     * @param listener слушатель, или null, чтобы его убрать
+     */
+    public void setEvictionListener(BiConsumer<? super K, ? super V> listener) {
+        evictionListener = listener;
+    }
+
+    /**
+     * Ищет номер записи с указанным ключом.
+     *
+     * @param key  ключ для поиска
+     * @param hash хеш-значение ключа
+     * @return номер записи, или NIL, если ключ не найден
+     */
+    private int entryOf(K key, int hash) {
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            final int entry = slots[slot] - 1;
+
+            if (hashes[entry] == hash && key.equals(keys[entry])) {
+                return entry;
+            }
+        }
+
+        return NIL;
+    }
+
+    /**
+     * Возвращает значение, связанное с указанным ключом, и делает запись самой недавно
+     * использованной.
+     *
+     * @param key ключ, для которого нужно вернуть связанное значение
+     * @return значение, связанное с ключом, или null, если ключ не найден
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        final int entry = entryOf(key, strategy.hashObject(key));
+
+        if (entry == NIL) {
+            ++misses;
+            return null;
+        }
+
+        ++hits;
+        moveToHead(entry);
+        return (V) values[entry];
+    }
+
+    /**
+     * Вставляет ключ-значение в кеш и делает запись самой недавно использованной.
+     * Если ключ уже есть, значение обновляется. Если кеш заполнен, новый ключ занимает место
+     * давно не использованной записи, которая передается слушателю вытеснения.
+     *
+     * @param key   ключ для вставки
+     * @param value значение для ассоциации с ключом
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void put(K key, V value) {
+        final int hash = strategy.hashObject(key);
+        final int found = entryOf(key, hash);
+
+        if (found != NIL) {
+            values[found] = value;
+            moveToHead(found);
+            return;
+        }
+
+        K evictedKey = null;
+        V evictedValue = null;
+        final int entry;
+
+        if (size == maxEntries) {
+            entry = tail;
+            evictedKey = (K) keys[entry];
+            evictedValue = (V) values[entry];
+            unlink(entry);
+            removeSlot(entry);
+            --size;
+            ++evictions;
+        } else if (free != NIL) {
+            entry = free;
+            free = next[entry];
+        } else {
+            entry = allocated++;
+        }
+
+        keys[entry] = key;
+        values[entry] = value;
+        hashes[entry] = hash;
+
+        int slot = hash & mask;
+
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        slots[slot] = entry + 1;
+        linkHead(entry);
+        ++size;
+        ++modCount;
+
+        if (evictedKey != null && evictionListener != null) {
+            evictionListener.accept(evictedKey, evictedValue);
+        }
+    }
+
+    /**
+     * Удаляет запись с указанным ключом из кеша. Номер записи переходит в список свободных.
+     *
+     * @param key ключ для удаления
+     */
+    @Override
+    public void remove(K key) {
+        final int entry = entryOf(key, strategy.hashObject(key));
+
+        if (entry == NIL) {
+            return;
+        }
+
+        unlink(entry);
+        removeSlot(entry);
+        keys[entry] = null;
+        values[entry] = null;
+        next[entry] = free;
+        free = entry;
+        --size;
+        ++modCount;
+    }
+
+    /**
+     * Освобождает ячейку индекса, указывающую на запись, и сдвигает назад следующие записи
+     * кластера, которые могут занять освободившуюся ячейку, не оказавшись перед своей начальной.
+     *
+     * @param entry номер записи
+     */
+    private void removeSlot(int entry) {
+        int hole = hashes[entry] & mask;
+
+        while (slots[hole] != entry + 1) {
+            hole = (hole + 1) & mask;
+        }
+
+        for (int slot = (hole + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            final int home = hashes[slots[slot] - 1] & mask;
+
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                slots[hole] = slots[slot];
+                hole = slot;
+            }
+        }
+
+        slots[hole] = 0;
+    }
+
+    private void linkHead(int entry) {
+        prev[entry] = NIL;
+        next[entry] = head;
+
+        if (head != NIL) {
+            prev[head] = entry;
+        } else {
+            tail = entry;
+        }
+
+        head = entry;
+    }
+
+    private void unlink(int entry) {
+        final int before = prev[entry];
+        final int after = next[entry];
+
+        if (before != NIL) {
+            next[before] = after;
+        } else {
+            head = after;
+        }
+
+        if (after != NIL) {
+            prev[after] = before;
+        } else {
+            tail = before;
+        }
+    }
+
+    private void moveToHead(int entry) {
+        if (entry != head) {
+            unlink(entry);
+            linkHead(entry);
+            ++modCount;
+        }
+    }
+
+    /**
+     * Возвращает максимальное число записей.
+     *
+     * @return максимальное число записей
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Возвращает число вызовов {@link #get}, нашедших ключ.
+     *
+     * @return число попаданий
+     */
+    public long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Возвращает число вызовов {@link #get}, не нашедших ключ.
+     *
+     * @return число промахов
+     */
+    public long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Возвращает число записей, вытесненных при вставке в заполненный кеш.
+     *
+     * @return число вытеснений
+     */
+    public long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Возвращает строковое представление кеша: значения от самого недавно
+     * до самого давно использованного.
+     *
+     * @return строковое представление кеша
+     */
+    @Override
+    public String toString() {
+        final StringBuilder description = new StringBuilder("Hash table: [ ");
+
+        for (int entry = head; entry != NIL; entry = next[entry]) {
+            description.append(values[entry])
+                       .append(" ");
+        }
+
+        return description.append(']').toString();
+    }
+
+    /**
+     * Возвращает курсор по записям кеша от самой недавно до самой давно использованной.
+     * Курсор не меняет порядок обращений. Вставка нового ключа, удаление, а также {@link #get}
+     * и {@link #put}, перемещающие запись в начало списка, во время обхода приводят
+     * к {@link ConcurrentModificationException}.
+     *
+     * @return курсор
+     */
+    @Override
+    public EntryCursor<K, V> cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Курсор по списку обращений.
+     */
+    private final class Cursor implements EntryCursor<K, V> {
+        private final int expectedModCount = modCount;
+        private int entry = NIL;
+        private boolean started;
+
+        @Override
+        public boolean advance() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!started) {
+                started = true;
+                entry = head;
+            } else if (entry != NIL) {
+                entry = next[entry];
+            }
+            return entry != NIL;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public K key() {
+            if (entry == NIL) {
+                throw new NoSuchElementException();
+            }
+            return (K) keys[entry];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V value() {
+            if (entry == NIL) {
+                throw new NoSuchElementException();
+            }
+            return (V) values[entry];
+        }
+    }
+}
@@ -8,7 +8,7 @@ package com.github.gzgef.doublehashing;
  * @param <V> тип отображаемых значений
  */
 public abstract class Map<K, V> implements IHashTable<K, V> {
-    protected static int size;
+    protected int size;
 
     /**
      * Проверяет, пуста ли хеш-таблица.
@@ -0,0 +1,63 @@
+package com.github.gzgef.doublehashing;
+
+import java.security.SecureRandom;
+
+/**
+ * Стратегия перемешивания хеш-кодов, зависящая от зерна.
+ * Ключ смешивается с зерном, после чего биты перемешиваются умножениями и сдвигами,
+ * один из множителей также выводится из зерна.
+ */
+public final class SeededHashStrategy implements HashStrategy {
+    private static final SecureRandom SEEDS = new SecureRandom();
+
+    private final int seed;
+    private final int multiplier;
+
+    /**
+     * Создает стратегию с указанным зерном.
+     *
+     * @param seed зерно хеширования
+     */
+    public SeededHashStrategy(int seed) {
+        this.seed = seed;
+        this.multiplier = (seed * 0x85EBCA6B) | 1;
+    }
+
+    /**
+     * Создает стратегию со случайным зерном.
+     *
+     * @return стратегия со случайным зерном
+     */
+    static SeededHashStrategy random() {
+        return new SeededHashStrategy(SEEDS.nextInt());
+    }
+
+    /**
+     * Возвращает зерно этой стратегии.
+     *
+     * @return зерно хеширования
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    @Override
+    public int hash(int key) {
+        int hash = key ^ seed;
+        hash *= 0x9E3779B9;
+        hash ^= hash >>> 16;
+        hash *= multiplier;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    @Override
+    public HashStrategy reseeded() {
+        return random();
+    }
+
+    @Override
+    public String toString() {
+        return "SEEDED(" + seed + ")";
+    }
+}
@@ -0,0 +1,190 @@
+package com.github.gzgef.doublehashing;
+
+import java.security.SecureRandom;
+
+/**
+ * Стратегия хеширования с секретным 128-битным ключом на основе SipHash-1-3.
+ * <p>
+ * Без знания ключа нельзя заранее подобрать ключи, попадающие в одну ячейку, поэтому стратегия
+ * защищает таблицы от входных данных, специально построенных для коллизий. Для строк и чисел Long
+ * хешируется само содержимое ключа, а не {@code hashCode()}: у разных строк хеш-коды легко
+ * совпадают ("Aa" и "BB"), и никакое перемешивание хеш-кода такие коллизии не устраняет.
+ * Для остальных объектов хешируется их {@code hashCode()}.
+ * <p>
+ * Слова состояния SipHash хранятся в локальных переменных, поэтому хеширование не создает объектов.
+ * <p>
+ * Ключ стратегии нельзя сохранить в снимке, поэтому таблицы с этой стратегией не сохраняются
+ * методом {@code save}.
+ */
+public final class SipHashStrategy implements HashStrategy {
+    private static final SecureRandom KEYS = new SecureRandom();
+
+    /**
+     * Константы инициализации SipHash ("somepseudorandomlygeneratedbytes").
+     */
+    private static final long C0 = 0x736F6D6570736575L;
+    private static final long C1 = 0x646F72616E646F6DL;
+    private static final long C2 = 0x6C7967656E657261L;
+    private static final long C3 = 0x7465646279746573L;
+
+    private final long k0;
+    private final long k1;
+
+    /**
+     * Создает стратегию с указанным ключом.
+     *
+     * @param k0 младшие 64 бита ключа
+     * @param k1 старшие 64 бита ключа
+     */
+    public SipHashStrategy(long k0, long k1) {
+        this.k0 = k0;
+        this.k1 = k1;
+    }
+
+    /**
+     * Создает стратегию со случайным ключом из {@link SecureRandom}.
+     *
+     * @return стратегия со случайным ключом
+     */
+    static SipHashStrategy random() {
+        return new SipHashStrategy(KEYS.nextLong(), KEYS.nextLong());
+    }
+
+    @Override
+    public int hash(int key) {
+        return finish(k0 ^ C0, k1 ^ C1, k0 ^ C2, k1 ^ C3, (key & 0xFFFFFFFFL) | 4L << 56);
+    }
+
+    /**
+     * Хеширует строки по символам, а числа Long и Integer - по значению.
+     *
+     * @param key ключ
+     * @return хеш-значение
+     */
+    @Override
+    public int hashObject(Object key) {
+        if (key instanceof String) {
+            return hashChars((String) key);
+        }
+        if (key instanceof Long) {
+            return hashLong(((Long) key).longValue());
+        }
+        if (key instanceof Integer) {
+            return hash(((Integer) key).intValue());
+        }
+        return hash(key.hashCode());
+    }
+
+    /**
+     * Хеширует 8 байт числа одним словом сообщения.
+     *
+     * @param word число
+     * @return хеш-значение
+     */
+    private int hashLong(long word) {
+        long v0 = k0 ^ C0;
+        long v1 = k1 ^ C1;
+        long v2 = k0 ^ C2;
+        long v3 = k1 ^ C3;
+        v3 ^= word;
+        v0 += v1;
+        v1 = Long.rotateLeft(v1, 13) ^ v0;
+        v0 = Long.rotateLeft(v0, 32);
+        v2 += v3;
+        v3 = Long.rotateLeft(v3, 16) ^ v2;
+        v0 += v3;
+        v3 = Long.rotateLeft(v3, 21) ^ v0;
+        v2 += v1;
+        v1 = Long.rotateLeft(v1, 17) ^ v2;
+        v2 = Long.rotateLeft(v2, 32);
+        v0 ^= word;
+        return finish(v0, v1, v2, v3, 8L << 56);
+    }
+
+    /**
+     * Хеширует символы строки как байты UTF-16LE: по четыре символа в слове сообщения.
+     *
+     * @param text строка
+     * @return хеш-значение
+     */
+    private int hashChars(String text) {
+        long v0 = k0 ^ C0;
+        long v1 = k1 ^ C1;
+        long v2 = k0 ^ C2;
+        long v3 = k1 ^ C3;
+        final int length = text.length();
+        final int whole = length & ~3;
+        for (int i = 0; i < whole; i += 4) {
+            final long word = text.charAt(i)
+                    | (long) text.charAt(i + 1) << 16
+                    | (long) text.charAt(i + 2) << 32
+                    | (long) text.charAt(i + 3) << 48;
+            v3 ^= word;
+            v0 += v1;
+            v1 = Long.rotateLeft(v1, 13) ^ v0;
+            v0 = Long.rotateLeft(v0, 32);
+            v2 += v3;
+            v3 = Long.rotateLeft(v3, 16) ^ v2;
+            v0 += v3;
+            v3 = Long.rotateLeft(v3, 21) ^ v0;
+            v2 += v1;
+            v1 = Long.rotateLeft(v1, 17) ^ v2;
+            v2 = Long.rotateLeft(v2, 32);
+            v0 ^= word;
+        }
+        long tail = 0;
+        for (int i = whole; i < length; ++i) {
+            tail |= (long) text.charAt(i) << ((i - whole) << 4);
+        }
+        return finish(v0, v1, v2, v3, tail | (long) length << 57);
+    }
+
+    /**
+     * Сжимает последнее слово сообщения и выполняет финализацию: после сжатия - еще три раунда.
+     * Слова состояния передаются значениями, поэтому хеширование не создает объектов.
+     *
+     * @param v0   слово состояния v0 после полных слов сообщения
+     * @param v1   слово состояния v1
+     * @param v2   слово состояния v2
+     * @param v3   слово состояния v3
+     * @param last последнее слово: байты после последнего полного слова и длина сообщения
+     *             в старшем байте
+     * @return 64-битный результат, свернутый в 32 бита
+     */
+    private static int finish(long v0, long v1, long v2, long v3, long last) {
+        v3 ^= last;
+        for (int round = 0; round < 4; ++round) {
+            v0 += v1;
+            v1 = Long.rotateLeft(v1, 13) ^ v0;
+            v0 = Long.rotateLeft(v0, 32);
+            v2 += v3;
+            v3 = Long.rotateLeft(v3, 16) ^ v2;
+            v0 += v3;
+            v3 = Long.rotateLeft(v3, 21) ^ v0;
+            v2 += v1;
+            v1 = Long.rotateLeft(v1, 17) ^ v2;
+            v2 = Long.rotateLeft(v2, 32);
+            if (round == 0) {
+                v0 ^= last;
+                v2 ^= 0xFF;
+            }
+        }
+        final long hash = v0 ^ v1 ^ v2 ^ v3;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Возвращает стратегию того же вида с новым случайным ключом.
+     *
+     * @return стратегия с новым ключом
+     */
+    @Override
+    public HashStrategy reseeded() {
+        return random();
+    }
+
+    @Override
+    public String toString() {
+        return "SIPHASH";
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.IOException;
+
+/**
+ * Общее описание формата снимков хеш-таблиц.
+ * <p>
+ * Снимок состоит из заголовка ({@value #HEADER_BYTES} байт), тела и контрольной суммы.
+ * Все числа записаны в порядке little-endian. Заголовок: сигнатура "DHSN", версия формата,
+ * тип таблицы, флаги, идентификатор и зерно стратегии хеширования, параметр второй хеш-функции,
+ * емкость, число записей и число удаленных ячеек. Тело содержит ячейки таблицы в том порядке,
+ * в котором они лежат в памяти, поэтому загрузка не перехеширует записи; его раскладка
+ * определяется типом таблицы. Последние 8 байт файла - CRC32 заголовка и тела.
+ */
+final class Snapshot {
+    static final int MAGIC = 0x4E534844;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 40;
+    static final int TRAILER_BYTES = 8;
+
+    static final int TYPE_HASH_MAP = 1;
+    static final int TYPE_INT_DOUBLE_HASHING = 2;
+    static final int TYPE_OFF_HEAP_DOUBLE_HASHING = 3;
+    static final int TYPE_ROBIN_HOOD = 4;
+    static final int TYPE_CUCKOO = 5;
+    static final int TYPE_HOPSCOTCH = 6;
+    static final int TYPE_SWISS = 7;
+
+    static final int FLAG_INCREMENTAL = 1;
+
+    private static final int STRATEGY_SEEDED = 3;
+
+    private Snapshot() {
+    }
+
+    /**
+     * Возвращает идентификатор стратегии хеширования для заголовка.
+     *
+     * @param strategy стратегия
+     * @return идентификатор
+     * @throws IllegalArgumentException если стратегию нельзя восстановить при загрузке
+     */
+    static int strategyId(HashStrategy strategy) {
+        if (strategy instanceof StandardHashStrategy) {
+            return ((StandardHashStrategy) strategy).ordinal();
+        }
+        if (strategy instanceof SeededHashStrategy) {
+            return STRATEGY_SEEDED;
+        }
+        throw new IllegalArgumentException("Стратегию хеширования " + strategy + " нельзя сохранить в снимке");
+    }
+
+    /**
+     * Возвращает зерно стратегии хеширования для заголовка.
+     *
+     * @param strategy стратегия
+     * @return зерно, или 0 для стратегий без зерна
+     */
+    static int strategySeed(HashStrategy strategy) {
+        return strategy instanceof SeededHashStrategy ? ((SeededHashStrategy) strategy).getSeed() : 0;
+    }
+
+    /**
+     * Восстанавливает стратегию хеширования по идентификатору и зерну из заголовка.
+     *
+     * @param id   идентификатор стратегии
+     * @param seed зерно стратегии
+     * @return стратегия
+     * @throws IOException если идентификатор неизвестен
+     */
+    static HashStrategy strategy(int id, int seed) throws IOException {
+        if (id == STRATEGY_SEEDED) {
+            return HashStrategy.seeded(seed);
+        }
+        final StandardHashStrategy[] standard = StandardHashStrategy.values();
+        if (id < 0 || id >= standard.length) {
+            throw new IOException("Неизвестная стратегия хеширования в снимке: " + id);
+        }
+        return standard[id];
+    }
+}
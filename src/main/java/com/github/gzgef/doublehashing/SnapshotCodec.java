@@ -0,0 +1,99 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Кодек ключей или значений для снимков {@link HashMap}.
+ * Снимок хранит ячейки таблицы в исходном порядке, поэтому хеш-коды ключей после загрузки
+ * должны совпадать с хеш-кодами при сохранении (как у String, Integer и Long).
+ *
+ * @param <T> тип кодируемых объектов
+ */
+public interface SnapshotCodec<T> {
+    /**
+     * Записывает объект.
+     *
+     * @param out   приемник
+     * @param value объект (может быть null)
+     * @throws IOException при ошибке записи
+     */
+    void write(DataOutput out, T value) throws IOException;
+
+    /**
+     * Читает объект, записанный методом {@link #write}.
+     *
+     * @param in источник
+     * @return объект
+     * @throws IOException при ошибке чтения
+     */
+    T read(DataInput in) throws IOException;
+
+    /**
+     * Возвращает кодек Integer, допускающий null.
+     *
+     * @return кодек
+     */
+    static SnapshotCodec<Integer> integers() {
+        return new SnapshotCodec<Integer>() {
+            @Override
+            public void write(DataOutput out, Integer value) throws IOException {
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    out.writeInt(value);
+                }
+            }
+
+            @Override
+            public Integer read(DataInput in) throws IOException {
+                return in.readBoolean() ? in.readInt() : null;
+            }
+        };
+    }
+
+    /**
+     * Возвращает кодек Long, допускающий null.
+     *
+     * @return кодек
+     */
+    static SnapshotCodec<Long> longs() {
+        return new SnapshotCodec<Long>() {
+            @Override
+            public void write(DataOutput out, Long value) throws IOException {
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    out.writeLong(value);
+                }
+            }
+
+            @Override
+            public Long read(DataInput in) throws IOException {
+                return in.readBoolean() ? in.readLong() : null;
+            }
+        };
+    }
+
+    /**
+     * Возвращает кодек String в модифицированной кодировке UTF-8, допускающий null.
+     * Длина строки в кодировке не должна превышать 65535 байт.
+     *
+     * @return кодек
+     */
+    static SnapshotCodec<String> strings() {
+        return new SnapshotCodec<String>() {
+            @Override
+            public void write(DataOutput out, String value) throws IOException {
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    out.writeUTF(value);
+                }
+            }
+
+            @Override
+            public String read(DataInput in) throws IOException {
+                return in.readBoolean() ? in.readUTF() : null;
+            }
+        };
+    }
+}
@@ -0,0 +1,220 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Чтение снимка в формате {@link Snapshot}. Файл отображается в память участками
+ * до {@value #SECTION_BYTES} байт. При открытии проверяются контрольная сумма, сигнатура,
+ * версия, тип таблицы и параметр хеш-функции; затем тело читается массивами без перехеширования.
+ * Как InputStream класс используется для чтения ключей и значений через {@link SnapshotCodec}.
+ */
+final class SnapshotReader extends InputStream {
+    private static final long SECTION_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final long end;
+    private long sectionStart;
+    private MappedByteBuffer section;
+
+    final int flags;
+    final HashStrategy strategy;
+    final int capacity;
+    final int size;
+    final int deleted;
+
+    /**
+     * Открывает снимок и проверяет его.
+     *
+     * @param path      файл снимка
+     * @param type      ожидаемый тип таблицы
+     * @param hashParam ожидаемый параметр второй хеш-функции
+     * @throws IOException если файл не удалось прочитать или он не является подходящим снимком
+     */
+    SnapshotReader(Path path, int type, int hashParam) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final long length = channel.size();
+            if (length < Snapshot.HEADER_BYTES + Snapshot.TRAILER_BYTES) {
+                throw new IOException("Файл слишком короткий для снимка: " + path);
+            }
+            end = length - Snapshot.TRAILER_BYTES;
+            verifyChecksum();
+
+            map(0);
+            if (readInt() != Snapshot.MAGIC) {
+                throw new IOException("Файл не является снимком хеш-таблицы: " + path);
+            }
+            final int version = readInt();
+            if (version != Snapshot.VERSION) {
+                throw new IOException("Неподдерживаемая версия снимка: " + version);
+            }
+            final int actualType = readInt();
+            if (actualType != type) {
+                throw new IOException("Снимок сохранен таблицей другого типа: " + actualType);
+            }
+            flags = readInt();
+            final int strategyId = readInt();
+            strategy = Snapshot.strategy(strategyId, readInt());
+            final int actualParam = readInt();
+            if (actualParam != hashParam) {
+                throw new IOException("Снимок сохранен с другим параметром хеш-функции: " + actualParam);
+            }
+            capacity = readInt();
+            size = readInt();
+            deleted = readInt();
+            if (capacity <= 0 || Integer.bitCount(capacity) != 1 || size < 0 || deleted < 0
+                    || (long) size + deleted > capacity) {
+                throw new IOException("Неверный заголовок снимка");
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Сравнивает CRC32 заголовка и тела с контрольной суммой в конце файла.
+     */
+    private void verifyChecksum() throws IOException {
+        final CRC32 crc = new CRC32();
+        for (long position = 0; position < end; position += SECTION_BYTES) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SECTION_BYTES, end - position)));
+        }
+        final ByteBuffer trailer = ByteBuffer.allocate(Snapshot.TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (trailer.hasRemaining()) {
+            if (channel.read(trailer, end + trailer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        if (trailer.getLong(0) != crc.getValue()) {
+            throw new IOException("Контрольная сумма снимка не совпадает");
+        }
+    }
+
+    private void map(long position) throws IOException {
+        sectionStart = position;
+        section = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SECTION_BYTES, end - position));
+        section.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Гарантирует, что в текущем участке есть хотя бы указанное число байт.
+     */
+    private void ensure(int bytes) throws IOException {
+        if (section.remaining() < bytes) {
+            final long position = sectionStart + section.position();
+            if (end - position < bytes) {
+                throw new EOFException("Снимок обрезан");
+            }
+            map(position);
+        }
+    }
+
+    int readInt() throws IOException {
+        ensure(Integer.BYTES);
+        return section.getInt();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!section.hasRemaining()) {
+            if (sectionStart + section.position() == end) {
+                return -1;
+            }
+            map(sectionStart + section.position());
+        }
+        return section.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!section.hasRemaining()) {
+            if (sectionStart + section.position() == end) {
+                return -1;
+            }
+            map(sectionStart + section.position());
+        }
+        final int n = Math.min(length, section.remaining());
+        section.get(bytes, offset, n);
+        return n;
+    }
+
+    /**
+     * Читает массив int целиком.
+     *
+     * @param values массив для чтения
+     * @throws IOException если снимок обрезан
+     */
+    void readInts(int[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            ensure(Integer.BYTES);
+            final int n = Math.min(values.length - offset, section.remaining() / Integer.BYTES);
+            section.asIntBuffer().get(values, offset, n);
+            section.position(section.position() + n * Integer.BYTES);
+            offset += n;
+        }
+    }
+
+    /**
+     * Читает массив long целиком.
+     *
+     * @param values массив для чтения
+     * @throws IOException если снимок обрезан
+     */
+    void readLongs(long[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            ensure(Long.BYTES);
+            final int n = Math.min(values.length - offset, section.remaining() / Long.BYTES);
+            section.asLongBuffer().get(values, offset, n);
+            section.position(section.position() + n * Long.BYTES);
+            offset += n;
+        }
+    }
+
+    /**
+     * Заполняет оставшуюся часть буфера байтами снимка.
+     *
+     * @param bytes буфер для чтения
+     * @throws IOException если снимок обрезан
+     */
+    void readBytes(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            ensure(1);
+            final ByteBuffer source = section.slice();
+            source.limit(Math.min(source.remaining(), bytes.remaining()));
+            section.position(section.position() + source.remaining());
+            bytes.put(source);
+        }
+    }
+
+    /**
+     * Проверяет, что тело прочитано полностью, и закрывает файл.
+     *
+     * @throws IOException если после тела остались лишние байты
+     */
+    void finish() throws IOException {
+        if (sectionStart + section.position() != end) {
+            throw new IOException("Лишние данные в конце снимка");
+        }
+        close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Запись снимка в формате {@link Snapshot}. Данные пишутся через прямой буфер во временный файл
+ * рядом с целевым, с подсчетом CRC32; {@link #finish()} дописывает контрольную сумму и атомарно
+ * заменяет целевой файл, так что прерванная запись не портит прежний снимок.
+ * Как OutputStream класс используется для записи ключей и значений через {@link SnapshotCodec}.
+ */
+final class SnapshotWriter extends OutputStream {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path target;
+    private final Path temporary;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+    private boolean finished;
+
+    /**
+     * Начинает запись снимка с заголовком.
+     *
+     * @param target    файл снимка
+     * @param type      тип таблицы
+     * @param flags     флаги таблицы
+     * @param strategy  стратегия хеширования
+     * @param hashParam параметр второй хеш-функции
+     * @param capacity  емкость
+     * @param size      число записей
+     * @param deleted   число удаленных ячеек
+     * @throws IOException при ошибке записи
+     */
+    SnapshotWriter(Path target, int type, int flags, HashStrategy strategy, int hashParam,
+                   int capacity, int size, int deleted) throws IOException {
+        final int strategyId = Snapshot.strategyId(strategy);
+        this.target = target;
+        this.temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        buffer.putInt(Snapshot.MAGIC)
+                .putInt(Snapshot.VERSION)
+                .putInt(type)
+                .putInt(flags)
+                .putInt(strategyId)
+                .putInt(Snapshot.strategySeed(strategy))
+                .putInt(hashParam)
+                .putInt(capacity)
+                .putInt(size)
+                .putInt(deleted);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            final int n = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Записывает массив int целиком.
+     *
+     * @param values массив
+     * @throws IOException при ошибке записи
+     */
+    void writeInts(int[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            if (buffer.remaining() < Integer.BYTES) {
+                drain();
+            }
+            final int n = Math.min(values.length - offset, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().put(values, offset, n);
+            buffer.position(buffer.position() + n * Integer.BYTES);
+            offset += n;
+        }
+    }
+
+    /**
+     * Записывает массив long целиком.
+     *
+     * @param values массив
+     * @throws IOException при ошибке записи
+     */
+    void writeLongs(long[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            if (buffer.remaining() < Long.BYTES) {
+                drain();
+            }
+            final int n = Math.min(values.length - offset, buffer.remaining() / Long.BYTES);
+            buffer.asLongBuffer().put(values, offset, n);
+            buffer.position(buffer.position() + n * Long.BYTES);
+            offset += n;
+        }
+    }
+
+    /**
+     * Записывает оставшиеся байты буфера, не меняя его позицию.
+     *
+     * @param bytes буфер
+     * @throws IOException при ошибке записи
+     */
+    void writeBytes(ByteBuffer bytes) throws IOException {
+        drain();
+        final ByteBuffer source = bytes.duplicate();
+        crc.update(source.duplicate());
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    /**
+     * Дописывает контрольную сумму, сбрасывает файл на диск и заменяет им целевой файл.
+     *
+     * @throws IOException при ошибке записи
+     */
+    void finish() throws IOException {
+        drain();
+        final ByteBuffer trailer = ByteBuffer.allocate(Snapshot.TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putLong(crc.getValue()).flip();
+        while (trailer.hasRemaining()) {
+            channel.write(trailer);
+        }
+        channel.force(true);
+        channel.close();
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+    }
+
+    /**
+     * Закрывает файл. Если снимок не был завершен, временный файл удаляется.
+     *
+     * @throws IOException при ошибке закрытия
+     */
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            channel.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        crc.update(buffer);
+        buffer.rewind();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
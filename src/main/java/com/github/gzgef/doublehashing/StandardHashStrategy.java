@@ -0,0 +1,44 @@
+package com.github.gzgef.doublehashing;
+
+/**
+ * Встроенные стратегии перемешивания хеш-кодов без параметров.
+ */
+public enum StandardHashStrategy implements HashStrategy {
+    /**
+     * Ключ используется без изменений.
+     */
+    IDENTITY {
+        @Override
+        public int hash(int key) {
+            return key;
+        }
+    },
+
+    /**
+     * Умножение на 2^32 / φ с последующим сворачиванием старших битов в младшие,
+     * так как индекс ячейки берется по маске младших битов.
+     */
+    FIBONACCI {
+        @Override
+        public int hash(int key) {
+            final int hash = key * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    },
+
+    /**
+     * Финализатор MurmurHash3 (fmix32): каждый бит ключа влияет на все биты результата.
+     */
+    MURMUR3 {
+        @Override
+        public int hash(int key) {
+            int hash = key;
+            hash ^= hash >>> 16;
+            hash *= 0x85EBCA6B;
+            hash ^= hash >>> 13;
+            hash *= 0xC2B2AE35;
+            hash ^= hash >>> 16;
+            return hash;
+        }
+    }
+}
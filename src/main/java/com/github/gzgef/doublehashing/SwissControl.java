@@ -0,0 +1,207 @@
+package com.github.gzgef.doublehashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Управляющие байты хеш-таблиц в стиле SwissTable и операции над группами из {@value #GROUP} байт.
+ * <p>
+ * Каждой ячейке соответствует один байт: {@link #EMPTY} (0x80), {@link #DELETED} (0xFE) или, для занятой
+ * ячейки, 7 младших бит хеша ключа (h2) при нулевом старшем бите. Номер первой ячейки пробы (h1) берется
+ * из остальных 25 бит хеша. Группа читается одним словом long, и все {@value #GROUP} байт сравниваются
+ * с h2 несколькими арифметическими операциями (SWAR); ключи читаются только в ячейках, байт которых
+ * совпал с h2, поэтому большинство промахов и попаданий не обращаются к лишним ключам.
+ * <p>
+ * Группа может начинаться с любой ячейки, поэтому за байтами ячеек хранятся копии первых
+ * {@value #GROUP} байт, и чтение группы у конца таблицы не переходит через границу массива.
+ * Пробы идут группами с шагом, растущим на {@value #GROUP} ячеек (треугольные числа), что при емкости,
+ * равной степени двойки, обходит всю таблицу.
+ */
+final class SwissControl {
+    static final int GROUP = 8;
+    static final byte EMPTY = (byte) 0x80;
+    static final byte DELETED = (byte) 0xFE;
+
+    private static final long LSBS = 0x0101010101010101L;
+    private static final long MSBS = 0x8080808080808080L;
+    private static final VarHandle WORDS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private SwissControl() {
+    }
+
+    /**
+     * Создает управляющие байты для указанной емкости: все ячейки пусты.
+     *
+     * @param capacity емкость (степень двойки, не меньше {@value #GROUP})
+     * @return управляющие байты вместе с копией первой группы
+     */
+    static byte[] allocate(int capacity) {
+        final byte[] control = new byte[capacity + GROUP];
+        Arrays.fill(control, EMPTY);
+        return control;
+    }
+
+    /**
+     * Перемешивает хеш стратегии финализатором MurmurHash3: h1 и h2 берутся из разных битов хеша,
+     * и оба должны зависеть от всех битов ключа.
+     *
+     * @param hash хеш ключа
+     * @return перемешанный хеш
+     */
+    static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Возвращает номер первой ячейки пробы.
+     *
+     * @param hash перемешанный хеш
+     * @param mask маска емкости
+     * @return индекс ячейки
+     */
+    static int h1(int hash, int mask) {
+        return (hash >>> 7) & mask;
+    }
+
+    /**
+     * Возвращает управляющий байт занятой ячейки.
+     *
+     * @param hash перемешанный хеш
+     * @return 7 младших бит хеша
+     */
+    static byte h2(int hash) {
+        return (byte) (hash & 0x7F);
+    }
+
+    /**
+     * Читает группу управляющих байт, начиная с указанной ячейки; байт ячейки position + i
+     * оказывается в i-м младшем байте слова.
+     *
+     * @param control  управляющие байты
+     * @param position первая ячейка группы
+     * @return группа
+     */
+    static long group(byte[] control, int position) {
+        return (long) WORDS.get(control, position);
+    }
+
+    /**
+     * Возвращает маску байт группы, равных h2: старший бит каждого совпавшего байта.
+     * Совпадение может оказаться ложным только в байте, следующем за настоящим совпадением,
+     * поэтому ключ найденной ячейки все равно сравнивается.
+     *
+     * @param group группа
+     * @param h2    управляющий байт искомого ключа
+     * @return маска совпадений
+     */
+    static long match(long group, byte h2) {
+        final long x = group ^ (LSBS * h2);
+        return (x - LSBS) & ~x & MSBS;
+    }
+
+    /**
+     * Возвращает маску пустых ячеек группы. У EMPTY второй бит равен нулю, у DELETED - единице.
+     *
+     * @param group группа
+     * @return маска пустых ячеек
+     */
+    static long matchEmpty(long group) {
+        return group & ~(group << 6) & MSBS;
+    }
+
+    /**
+     * Возвращает маску пустых и удаленных ячеек группы.
+     *
+     * @param group группа
+     * @return маска свободных ячеек
+     */
+    static long matchFree(long group) {
+        return group & ~(group << 7) & MSBS;
+    }
+
+    /**
+     * Возвращает маску занятых ячеек группы: у них старший бит управляющего байта равен нулю.
+     *
+     * @param group группа
+     * @return маска занятых ячеек
+     */
+    static long matchFull(long group) {
+        return ~group & MSBS;
+    }
+
+    /**
+     * Возвращает смещение первой ячейки маски от начала группы.
+     *
+     * @param matches непустая маска
+     * @return смещение ячейки
+     */
+    static int lowest(long matches) {
+        return Long.numberOfTrailingZeros(matches) >>> 3;
+    }
+
+    /**
+     * Записывает управляющий байт ячейки и его копию за концом таблицы.
+     *
+     * @param control управляющие байты
+     * @param index   индекс ячейки
+     * @param mask    маска емкости
+     * @param value   новый управляющий байт
+     */
+    static void set(byte[] control, int index, int mask, byte value) {
+        control[index] = value;
+        if (index < GROUP) {
+            control[index + mask + 1] = value;
+        }
+    }
+
+    /**
+     * Находит первую пустую или удаленную ячейку на последовательности проб ключа.
+     *
+     * @param control управляющие байты
+     * @param hash    перемешанный хеш
+     * @param mask    маска емкости
+     * @return индекс ячейки
+     */
+    static int findFree(byte[] control, int hash, int mask) {
+        int position = h1(hash, mask);
+        for (int stride = GROUP; ; stride += GROUP) {
+            final long free = matchFree(group(control, position));
+            if (free != 0) {
+                return (position + lowest(free)) & mask;
+            }
+            position = (position + stride) & mask;
+        }
+    }
+
+    /**
+     * Проверяет, можно ли сделать удаляемую ячейку пустой, а не удаленной: это допустимо,
+     * если любая группа, содержащая ячейку, содержит и пустую ячейку. Тогда ни одна проба
+     * не проходила через ячейку дальше, и пометка удаленной не нужна.
+     *
+     * @param control управляющие байты
+     * @param index   индекс удаляемой ячейки
+     * @param mask    маска емкости
+     * @return true, если ячейку можно пометить пустой
+     */
+    static boolean canEmpty(byte[] control, int index, int mask) {
+        final long before = matchEmpty(group(control, (index - GROUP) & mask));
+        final long after = matchEmpty(group(control, index));
+        return (Long.numberOfLeadingZeros(before) >>> 3) + (Long.numberOfTrailingZeros(after) >>> 3) < GROUP;
+    }
+
+    /**
+     * Возвращает наибольшее число занятых и удаленных ячеек, при котором таблица еще не растет (7/8 емкости).
+     *
+     * @param capacity емкость
+     * @return предел заполнения
+     */
+    static int growthLimit(int capacity) {
+        return capacity - (capacity >>> 3);
+    }
+}
@@ -0,0 +1,268 @@
+package com.github.gzgef.doublehashing;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * Реализация хеш-таблицы в стиле SwissTable: рядом с плоскими массивами ключей и значений хранится
+ * массив управляющих байт (7 бит хеша или пометка пустой/удаленной ячейки), и проба проверяет сразу
+ * группу из {@value SwissControl#GROUP} ячеек по одному слову long (см. {@link SwissControl}).
+ * Ключ сравнивается через equals только в ячейках, управляющий байт которых совпал с 7 битами его хеша,
+ * а неуспешный поиск обычно заканчивается на первой группе, не прочитав ни одного ключа.
+ * <p>
+ * Таблица растет, когда занятые и удаленные ячейки составляют 7/8 емкости. Удаленная ячейка становится
+ * пустой, если через нее не могла пройти ни одна проба, иначе помечается удаленной.
+ *
+ * @param <K> тип ключей, поддерживаемых этой хеш-таблицей
+ * @param <V> тип отображаемых значений
+ */
+public class SwissHashMap<K, V> extends Map<K, V> {
+
+    private static final int START_CAPACITY = 16;
+
+    private final HashStrategy strategy;
+    private int capacity;
+    private int mask;
+    private int growthLeft;
+    private byte[] control;
+    private Object[] keys;
+    private Object[] values;
+
+    /**
+     * Счетчик структурных изменений (вставок, удалений и перехеширований) для курсоров.
+     */
+    private int modCount;
+
+    /**
+     * Создает пустой SwissHashMap с начальной емкостью по умолчанию (16)
+     * и стратегией хеширования murmur3.
+     */
+    public SwissHashMap() {
+        this(HashStrategy.murmur3());
+    }
+
+    /**
+     * Создает пустой SwissHashMap с начальной емкостью по умолчанию (16)
+     * и указанной стратегией хеширования.
+     *
+     * @param strategy стратегия перемешивания хеш-кодов ключей
+     */
+    public SwissHashMap(HashStrategy strategy) {
+        this.strategy = strategy;
+        allocate(START_CAPACITY);
+        growthLeft = SwissControl.growthLimit(START_CAPACITY);
+        size = 0;
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        control = SwissControl.allocate(newCapacity);
+        keys = new Object[newCapacity];
+        values = new Object[newCapacity];
+    }
+
+    private int hash(K key) {
+        return SwissControl.mix(strategy.hashObject(key));
+    }
+
+    /**
+     * Ищет ячейку с указанным ключом.
+     *
+     * @param key  ключ для поиска
+     * @param hash перемешанный хеш ключа
+     * @return индекс ячейки, или -1, если ключ не найден
+     */
+    private int indexOf(K key, int hash) {
+        final byte h2 = SwissControl.h2(hash);
+        int position = SwissControl.h1(hash, mask);
+        for (int stride = SwissControl.GROUP; ; stride += SwissControl.GROUP) {
+            final long group = SwissControl.group(control, position);
+            for (long matches = SwissControl.match(group, h2); matches != 0; matches &= matches - 1) {
+                final int index = (position + SwissControl.lowest(matches)) & mask;
+                if (key.equals(keys[index])) {
+                    return index;
+                }
+            }
+            if (SwissControl.matchEmpty(group) != 0) {
+                return -1;
+            }
+            position = (position + stride) & mask;
+        }
+    }
+
+    /**
+     * Вставляет ключ-значение в хеш-таблицу.
+     * Если ключ уже существует, значение обновляется. Когда свободных пустых ячеек не остается,
+     * таблица перехешируется: без изменения емкости, если живые записи занимают меньше половины
+     * предела заполнения, иначе с удвоением емкости.
+     *
+     * @param key   ключ для вставки
+     * @param value значение для ассоциации с ключом
+     */
+    @Override
+    public void put(K key, V value) {
+        final int hash = hash(key);
+        final int found = indexOf(key, hash);
+        if (found >= 0) {
+            values[found] = value;
+            return;
+        }
+
+        int index = SwissControl.findFree(control, hash, mask);
+        if (growthLeft == 0 && control[index] == SwissControl.EMPTY) {
+            rehash(size * 2 < SwissControl.growthLimit(capacity) ? capacity : capacity * 2);
+            index = SwissControl.findFree(control, hash, mask);
+        }
+        if (control[index] == SwissControl.EMPTY) {
+            --growthLeft;
+        }
+        SwissControl.set(control, index, mask, SwissControl.h2(hash));
+        keys[index] = key;
+        values[index] = value;
+        ++size;
+        ++modCount;
+    }
+
+    /**
+     * Перехеширует хеш-таблицу в таблицу указанной емкости, отбрасывая удаленные ячейки.
+     *
+     * @param newCapacity новая емкость (степень двойки)
+     */
+    @SuppressWarnings("unchecked")
+    private void rehash(int newCapacity) {
+        final byte[] oldControl = control;
+        final Object[] oldKeys = keys;
+        final Object[] oldValues = values;
+        final int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int i = 0; i < oldCapacity; ++i) {
+            if (oldControl[i] >= 0) {
+                final int hash = hash((K) oldKeys[i]);
+                final int index = SwissControl.findFree(control, hash, mask);
+                SwissControl.set(control, index, mask, SwissControl.h2(hash));
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+        growthLeft = SwissControl.growthLimit(newCapacity) - size;
+        ++modCount;
+    }
+
+    /**
+     * Удаляет запись с указанным ключом из хеш-таблицы.
+     *
+     * @param key ключ для удаления
+     */
+    @Override
+    public void remove(K key) {
+        final int index = indexOf(key, hash(key));
+        if (index < 0) {
+            return;
+        }
+        if (SwissControl.canEmpty(control, index, mask)) {
+            SwissControl.set(control, index, mask, SwissControl.EMPTY);
+            ++growthLeft;
+        } else {
+            SwissControl.set(control, index, mask, SwissControl.DELETED);
+        }
+        keys[index] = null;
+        values[index] = null;
+        --size;
+        ++modCount;
+    }
+
+    /**
+     * Возвращает значение, связанное с указанным ключом.
+     *
+     * @param key ключ, для которого нужно вернуть связанное значение
+     * @return значение, связанное с ключом, или null, если ключ не найден
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        final int index = indexOf(key, hash(key));
+        return index < 0 ? null : (V) values[index];
+    }
+
+    /**
+     * Возвращает строковое представление хеш-таблицы.
+     *
+     * @return строковое представление хеш-таблицы
+     */
+    @Override
+    public String toString() {
+        final StringBuilder description = new StringBuilder("Hash table: [ ");
+        for (int i = 0; i < capacity; i++) {
+            if (control[i] >= 0) {
+                description.append(values[i])
+                           .append(" ");
+            }
+        }
+        return description.append(']').toString();
+    }
+
+    /**
+     * Возвращает курсор по записям хеш-таблицы.
+     * Вставка нового ключа, удаление или перехеширование во время обхода приводят
+     * к {@link ConcurrentModificationException}; обновление значения существующего ключа допускается.
+     *
+     * @return курсор
+     */
+    @Override
+    public EntryCursor<K, V> cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Курсор по ячейкам текущей таблицы: занятые ячейки находятся по маске группы управляющих байт.
+     */
+    private final class Cursor implements EntryCursor<K, V> {
+        private final byte[] cursorControl = control;
+        private final Object[] cursorKeys = keys;
+        private final Object[] cursorValues = values;
+        private final int expectedModCount = modCount;
+        private int base = -SwissControl.GROUP;
+        private long full;
+        private int index = -1;
+        private boolean positioned;
+
+        @Override
+        public boolean advance() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            while (full == 0) {
+                if (base + SwissControl.GROUP >= cursorKeys.length) {
+                    base = cursorKeys.length;
+                    positioned = false;
+                    return false;
+                }
+                base += SwissControl.GROUP;
+                full = SwissControl.matchFull(SwissControl.group(cursorControl, base));
+            }
+            index = base + SwissControl.lowest(full);
+            full &= full - 1;
+            positioned = true;
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public K key() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+            return (K) cursorKeys[index];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V value() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+            return (V) cursorValues[index];
+        }
+    }
+}
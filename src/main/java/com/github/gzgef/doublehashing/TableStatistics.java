@@ -0,0 +1,241 @@
+package com.github.gzgef.doublehashing;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * Статистика хеш-таблицы: гистограммы длин проб, число и время перехеширований.
+ * Статистика включается для отдельной таблицы и рассчитана на постоянную работу под нагрузкой:
+ * счетчики распределены по потокам ({@link LongAdder}), а поиски учитываются по выборке.
+ * Максимальная длина пробы и доля удаленных ячеек вычисляются самой таблицей только при чтении.
+ * Экземпляр может быть зарегистрирован как MBean методом {@link #register(String)}.
+ */
+public class TableStatistics implements TableStatisticsMXBean {
+    /**
+     * Частота выборки по умолчанию.
+     */
+    public static final int DEFAULT_SAMPLE_RATE = 16;
+
+    private static final int HISTOGRAM_BUCKETS = 16;
+    private static final String DOMAIN = "com.github.gzgef.doublehashing";
+
+    private final int sampleMask;
+    private final IntSupplier maxProbeLength;
+    private final DoubleSupplier tombstoneRatio;
+    private final LongAdder[] hitHistogram = newHistogram();
+    private final LongAdder[] missHistogram = newHistogram();
+    private final LongAdder hitProbes = new LongAdder();
+    private final LongAdder missProbes = new LongAdder();
+    private final LongAdder rehashCount = new LongAdder();
+    private final LongAdder rehashTime = new LongAdder();
+    private final LongAdder longProbes = new LongAdder();
+    private final LongAdder reseeds = new LongAdder();
+    private ObjectName objectName;
+
+    /**
+     * Создает статистику таблицы.
+     *
+     * @param sampleRate     частота выборки: учитывается одна операция поиска из sampleRate
+     * @param maxProbeLength функция, вычисляющая максимальную длину цепочки или пробы
+     * @param tombstoneRatio функция, вычисляющая долю удаленных ячеек
+     * @throws IllegalArgumentException если частота выборки не является положительной степенью двойки
+     */
+    TableStatistics(int sampleRate, IntSupplier maxProbeLength, DoubleSupplier tombstoneRatio) {
+        if (sampleRate <= 0 || Integer.bitCount(sampleRate) != 1) {
+            throw new IllegalArgumentException("Частота выборки должна быть степенью двойки: " + sampleRate);
+        }
+        this.sampleMask = sampleRate - 1;
+        this.maxProbeLength = maxProbeLength;
+        this.tombstoneRatio = tombstoneRatio;
+    }
+
+    private static LongAdder[] newHistogram() {
+        final LongAdder[] histogram = new LongAdder[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; ++i) {
+            histogram[i] = new LongAdder();
+        }
+        return histogram;
+    }
+
+    /**
+     * Определяет, попадает ли очередная операция поиска в выборку. Таблица вычисляет длину пробы
+     * только для операций из выборки, поэтому операции вне выборки не замедляются.
+     *
+     * @return true, если операцию нужно учесть
+     */
+    boolean sample() {
+        return sampleMask == 0 || (ThreadLocalRandom.current().nextInt() & sampleMask) == 0;
+    }
+
+    /**
+     * Учитывает операцию поиска из выборки.
+     *
+     * @param probes число просмотренных ячеек или узлов цепочки
+     * @param found  true, если ключ найден
+     */
+    void recordLookup(int probes, boolean found) {
+        final int bucket = Math.min(HISTOGRAM_BUCKETS - 1, 32 - Integer.numberOfLeadingZeros(probes));
+        if (found) {
+            hitHistogram[bucket].increment();
+            hitProbes.add(probes);
+        } else {
+            missHistogram[bucket].increment();
+            missProbes.add(probes);
+        }
+    }
+
+    /**
+     * Учитывает перехеширование.
+     *
+     * @param nanos длительность перехеширования в наносекундах
+     */
+    void recordRehash(long nanos) {
+        rehashCount.increment();
+        rehashTime.add(nanos);
+    }
+
+    /**
+     * Добавляет время к суммарному времени перехеширований, не увеличивая их число.
+     * Используется для шагов инкрементального переноса.
+     *
+     * @param nanos длительность шага в наносекундах
+     */
+    void recordRehashTime(long nanos) {
+        rehashTime.add(nanos);
+    }
+
+    /**
+     * Учитывает вставку с аномально длинной пробой.
+     */
+    void recordLongProbe() {
+        longProbes.increment();
+    }
+
+    /**
+     * Учитывает смену зерна хеширования.
+     */
+    void recordReseed() {
+        reseeds.increment();
+    }
+
+    /**
+     * Регистрирует статистику в платформенном MBeanServer с именем
+     * {@code com.github.gzgef.doublehashing:type=TableStatistics,name=<name>}.
+     *
+     * @param name имя таблицы
+     * @return имя зарегистрированного MBean
+     * @throws JMException если имя некорректно или уже занято
+     */
+    public synchronized ObjectName register(String name) throws JMException {
+        final ObjectName newName = new ObjectName(DOMAIN + ":type=TableStatistics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+        objectName = newName;
+        return newName;
+    }
+
+    /**
+     * Удаляет статистику из платформенного MBeanServer, если она была зарегистрирована.
+     *
+     * @throws JMException если MBean не удалось удалить
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName != null) {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            objectName = null;
+        }
+    }
+
+    private static long[] snapshot(LongAdder[] histogram) {
+        final long[] counts = new long[histogram.length];
+        for (int i = 0; i < histogram.length; ++i) {
+            counts[i] = histogram[i].sum();
+        }
+        return counts;
+    }
+
+    private static double mean(LongAdder probes, LongAdder[] histogram) {
+        long count = 0;
+        for (LongAdder bucket : histogram) {
+            count += bucket.sum();
+        }
+        return count == 0 ? 0 : probes.sum() * 1.0 / count;
+    }
+
+    @Override
+    public long[] getHitProbeHistogram() {
+        return snapshot(hitHistogram);
+    }
+
+    @Override
+    public long[] getMissProbeHistogram() {
+        return snapshot(missHistogram);
+    }
+
+    @Override
+    public double getMeanHitProbeLength() {
+        return mean(hitProbes, hitHistogram);
+    }
+
+    @Override
+    public double getMeanMissProbeLength() {
+        return mean(missProbes, missHistogram);
+    }
+
+    @Override
+    public int getMaxProbeLength() {
+        return maxProbeLength.getAsInt();
+    }
+
+    @Override
+    public double getTombstoneRatio() {
+        return tombstoneRatio.getAsDouble();
+    }
+
+    @Override
+    public long getRehashCount() {
+        return rehashCount.sum();
+    }
+
+    @Override
+    public long getRehashTimeNanos() {
+        return rehashTime.sum();
+    }
+
+    @Override
+    public long getLongProbeCount() {
+        return longProbes.sum();
+    }
+
+    @Override
+    public long getReseedCount() {
+        return reseeds.sum();
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleMask + 1;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < HISTOGRAM_BUCKETS; ++i) {
+            hitHistogram[i].reset();
+            missHistogram[i].reset();
+        }
+        hitProbes.reset();
+        missProbes.reset();
+        rehashCount.reset();
+        rehashTime.reset();
+        longProbes.reset();
+        reseeds.reset();
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.gzgef.doublehashing;
+
+/**
+ * Интерфейс управления статистикой хеш-таблицы через JMX.
+ * Гистограммы длин проб строятся по выборке операций поиска: учитывается в среднем одна операция
+ * из {@link #getSampleRate()}. Элемент гистограммы с индексом 0 содержит число поисков без проб
+ * (пустая цепочка), элемент с индексом i &gt; 0 - число поисков с длиной пробы от 2^(i-1) до 2^i - 1;
+ * последний элемент учитывает и все более длинные пробы.
+ */
+public interface TableStatisticsMXBean {
+    /**
+     * Возвращает гистограмму длин проб успешных поисков.
+     *
+     * @return число поисков по интервалам длин проб
+     */
+    long[] getHitProbeHistogram();
+
+    /**
+     * Возвращает гистограмму длин проб неуспешных поисков.
+     *
+     * @return число поисков по интервалам длин проб
+     */
+    long[] getMissProbeHistogram();
+
+    /**
+     * Возвращает среднюю длину пробы успешного поиска по выборке.
+     *
+     * @return средняя длина пробы, или 0, если выборка пуста
+     */
+    double getMeanHitProbeLength();
+
+    /**
+     * Возвращает среднюю длину пробы неуспешного поиска по выборке.
+     *
+     * @return средняя длина пробы, или 0, если выборка пуста
+     */
+    double getMeanMissProbeLength();
+
+    /**
+     * Возвращает длину самой длинной цепочки или последовательности проб в таблице.
+     * Вычисляется просмотром таблицы при каждом чтении атрибута.
+     *
+     * @return максимальная длина цепочки или пробы
+     */
+    int getMaxProbeLength();
+
+    /**
+     * Возвращает долю ячеек таблицы, помеченных как удаленные.
+     *
+     * @return отношение числа удаленных ячеек к емкости
+     */
+    double getTombstoneRatio();
+
+    /**
+     * Возвращает число перехеширований с момента включения статистики.
+     *
+     * @return число перехеширований
+     */
+    long getRehashCount();
+
+    /**
+     * Возвращает суммарное время перехеширований в наносекундах.
+     *
+     * @return суммарное время перехеширований
+     */
+    long getRehashTimeNanos();
+
+    /**
+     * Возвращает число вставок, проба которых оказалась аномально длинной, - признак
+     * подбора ключей с коллизиями. Учитывается каждая такая вставка, без выборки.
+     *
+     * @return число длинных проб
+     */
+    long getLongProbeCount();
+
+    /**
+     * Возвращает число смен зерна хеширования, выполненных таблицей при защите от подбора коллизий.
+     *
+     * @return число смен зерна
+     */
+    long getReseedCount();
+
+    /**
+     * Возвращает частоту выборки: учитывается одна операция поиска из указанного числа.
+     *
+     * @return частота выборки (степень двойки)
+     */
+    int getSampleRate();
+
+    /**
+     * Обнуляет гистограммы и счетчики перехеширований, длинных проб и смен зерна.
+     */
+    void reset();
+}
@@ -0,0 +1,338 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал упреждающей записи операций put и remove над хеш-таблицей.
+ * <p>
+ * Файл журнала начинается с сигнатуры "DHWL" и версии формата, за которыми идут записи:
+ * длина тела (int), CRC32 тела (int) и тело - тип операции, ключ и для put значение,
+ * записанные кодеками {@link SnapshotCodec}. Числа заголовков записаны в порядке little-endian.
+ * <p>
+ * Записи сначала накапливаются в буфере и сбрасываются на диск группами (group commit): вызовом
+ * {@code force} после каждых groupSize записей, а если задано окно groupWindowMillis, то и фоновым
+ * потоком не позже чем через это время после первой несохраненной записи. При сбое теряются
+ * только записи последней незавершенной группы; {@link #sync()} сохраняет их немедленно.
+ * При восстановлении журнал читается до первой оборванной или поврежденной записи,
+ * а хвост после нее отрезается.
+ *
+ * @param <K> тип ключей
+ * @param <V> тип значений
+ */
+public final class WriteAheadLog<K, V> implements Closeable {
+    private static final int MAGIC = 0x4C574844;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private final FileChannel channel;
+    private final SnapshotCodec<K> keyCodec;
+    private final SnapshotCodec<V> valueCodec;
+    private final int groupSize;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final RecordBuffer record = new RecordBuffer();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+    private final Thread syncThread;
+    private long size;
+    private int pending;
+    private boolean closed;
+
+    /**
+     * Открывает журнал, создавая файл, если его нет.
+     *
+     * @param file              файл журнала
+     * @param keyCodec          кодек ключей
+     * @param valueCodec        кодек значений
+     * @param groupSize         число записей, после которого журнал сбрасывается на диск
+     * @param groupWindowMillis наибольшее время в миллисекундах, которое запись ждет сброса на диск,
+     *                          или 0, чтобы сбрасывать только по числу записей и вызовам {@link #sync()}
+     * @throws IOException              если файл не удалось открыть или он не является журналом
+     * @throws IllegalArgumentException если groupSize меньше 1 или groupWindowMillis отрицательно
+     */
+    public WriteAheadLog(Path file, SnapshotCodec<K> keyCodec, SnapshotCodec<V> valueCodec,
+                         int groupSize, long groupWindowMillis) throws IOException {
+        if (groupSize < 1 || groupWindowMillis < 0) {
+            throw new IllegalArgumentException("Неверные параметры группового сброса");
+        }
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.groupSize = groupSize;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            size = channel.size();
+            if (size < HEADER_BYTES) {
+                reset();
+            } else {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(header, 0);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                    throw new IOException("Файл не является журналом хеш-таблицы: " + file);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        if (groupWindowMillis > 0) {
+            syncThread = new Thread(() -> syncPeriodically(groupWindowMillis), "wal-sync-" + file.getFileName());
+            syncThread.setDaemon(true);
+            syncThread.start();
+        } else {
+            syncThread = null;
+        }
+    }
+
+    /**
+     * Добавляет в журнал запись put.
+     *
+     * @param key   ключ
+     * @param value значение
+     * @throws IOException при ошибке записи
+     */
+    public synchronized void appendPut(K key, V value) throws IOException {
+        ensureOpen();
+        record.reset();
+        recordOut.writeByte(PUT);
+        keyCodec.write(recordOut, key);
+        valueCodec.write(recordOut, value);
+        append();
+    }
+
+    /**
+     * Добавляет в журнал запись remove.
+     *
+     * @param key ключ
+     * @throws IOException при ошибке записи
+     */
+    public synchronized void appendRemove(K key) throws IOException {
+        ensureOpen();
+        record.reset();
+        recordOut.writeByte(REMOVE);
+        keyCodec.write(recordOut, key);
+        append();
+    }
+
+    /**
+     * Немедленно сбрасывает на диск все добавленные записи.
+     *
+     * @throws IOException при ошибке записи
+     */
+    public synchronized void sync() throws IOException {
+        ensureOpen();
+        flush();
+        if (pending > 0) {
+            channel.force(false);
+            pending = 0;
+        }
+    }
+
+    /**
+     * Возвращает размер журнала в байтах вместе с еще не записанными в файл записями.
+     *
+     * @return размер журнала
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Применяет все записи журнала к хеш-таблице по порядку. Оборванная или поврежденная запись
+     * и все, что за ней следует, отрезаются от файла.
+     *
+     * @param target хеш-таблица
+     * @return число примененных записей
+     * @throws IOException при ошибке чтения
+     */
+    public synchronized int replay(IHashTable<K, V> target) throws IOException {
+        ensureOpen();
+        flush();
+        final long length = channel.size();
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        final CRC32 check = new CRC32();
+        long position = HEADER_BYTES;
+        int records = 0;
+        while (position + RECORD_HEADER_BYTES <= length) {
+            header.clear();
+            readFully(header, position);
+            final int bodyLength = header.getInt(0);
+            if (bodyLength <= 0 || bodyLength > length - position - RECORD_HEADER_BYTES) {
+                break;
+            }
+            final byte[] body = new byte[bodyLength];
+            readFully(ByteBuffer.wrap(body), position + RECORD_HEADER_BYTES);
+            check.reset();
+            check.update(body);
+            if ((int) check.getValue() != header.getInt(4)) {
+                break;
+            }
+
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            final byte type = in.readByte();
+            if (type == PUT) {
+                target.put(keyCodec.read(in), valueCodec.read(in));
+            } else if (type == REMOVE) {
+                target.remove(keyCodec.read(in));
+            } else {
+                break;
+            }
+            position += RECORD_HEADER_BYTES + bodyLength;
+            ++records;
+        }
+        if (position < length) {
+            channel.truncate(position);
+            channel.force(false);
+        }
+        size = position;
+        return records;
+    }
+
+    /**
+     * Очищает журнал, оставляя только заголовок, и сбрасывает его на диск.
+     * Вызывается после сохранения снимка, который уже содержит все записи журнала.
+     *
+     * @throws IOException при ошибке записи
+     */
+    public synchronized void reset() throws IOException {
+        buffer.clear();
+        channel.truncate(0);
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(false);
+        size = HEADER_BYTES;
+        pending = 0;
+    }
+
+    /**
+     * Сохраняет на диск все записи, останавливает фоновый поток и закрывает файл.
+     *
+     * @throws IOException при ошибке записи
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                sync();
+            } finally {
+                closed = true;
+                channel.close();
+            }
+        }
+        if (syncThread != null) {
+            syncThread.interrupt();
+        }
+    }
+
+    /**
+     * Дописывает подготовленное тело записи в буфер и при накоплении группы сбрасывает журнал.
+     */
+    private void append() throws IOException {
+        crc.reset();
+        crc.update(record.bytes(), 0, record.size());
+        recordHeader.clear();
+        recordHeader.putInt(record.size()).putInt((int) crc.getValue()).flip();
+        if (buffer.remaining() < RECORD_HEADER_BYTES + record.size()) {
+            flush();
+        }
+        if (buffer.remaining() < RECORD_HEADER_BYTES + record.size()) {
+            write(recordHeader);
+            write(ByteBuffer.wrap(record.bytes(), 0, record.size()));
+        } else {
+            buffer.put(recordHeader);
+            buffer.put(record.bytes(), 0, record.size());
+        }
+        size += RECORD_HEADER_BYTES + record.size();
+        if (++pending >= groupSize) {
+            flush();
+            channel.force(false);
+            pending = 0;
+        }
+    }
+
+    /**
+     * Записывает буфер в конец файла.
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source, channel.size());
+        }
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Журнал закрыт");
+        }
+    }
+
+    /**
+     * Цикл фонового потока: раз в окно группового сброса сохраняет накопленные записи.
+     */
+    private void syncPeriodically(long windowMillis) {
+        while (true) {
+            try {
+                Thread.sleep(windowMillis);
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    if (pending > 0) {
+                        sync();
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                // Ошибка повторится и будет передана вызывающему при следующей записи или sync()
+                if (closed) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Буфер тела записи, дающий доступ к своему массиву без копирования.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
@@ -1,42 +1,130 @@
 package com.github.gzgef.doublehashing;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Реализация хеш-таблицы с использованием цепочек (chaining) для разрешения коллизий.
+ * Узлы всех цепочек лежат в общем пуле параллельных массивов int (ключ, значение, следующий узел),
+ * а корзина хранит только индекс первого узла и длину цепочки, поэтому пустая корзина стоит два int,
+ * а запись - четыре. Цепочка длиннее {@value #TREEIFY_THRESHOLD} узлов превращается в декартово дерево
+ * (treap) на тех же узлах и обратно в список, когда в ней остается {@value #UNTREEIFY_THRESHOLD} узлов.
+ * Поэтому даже ключи, кратные емкости, которые попадают в одну корзину, ищутся за O(log n).
+ * Минимальный и максимальный ключи запоминаются при вставке (см. {@link IntExtremes}), поэтому
+ * {@link #min()} и {@link #max()} выполняются за O(1); если такой ключ удален, он находится заново
+ * по упорядоченному индексу, а без индекса - одним проходом курсора.
  * Этот класс используется для тестирования и реализует интерфейс HashTable.
  */
 public class ChainHashTable implements HashTable {
     private static final int START_CAPACITY = 8;
     private static final double REHASH_THRESHOLD = 0.75;
+    private static final int TREEIFY_THRESHOLD = 8;
+    private static final int UNTREEIFY_THRESHOLD = 6;
+    private static final int NIL = -1;
+
+    /**
+     * Зерно приоритетов узлов дерева: приоритет вычисляется из ключа, и без зерна
+     * подобранные ключи могли бы выстроить дерево в список.
+     */
+    private final int seed = ThreadLocalRandom.current().nextInt();
     private int size;
     private int capacity;
-    private List<List<Node>> table;
+    private int mask;
+    private TableStatistics statistics;
+    private int modCount;
 
     /**
-     * Класс узла для хеш-таблицы с цепочками.
+     * Первый узел корзины: NIL для пустой корзины, индекс узла для списка
+     * и -2 - корень для дерева.
      */
-    private static class Node {
-        int key;
-        int value;
+    private int[] heads;
+    private int[] counts;
 
-        Node(int key, int value) {
-            this.key = key;
-            this.value = value;
-        }
-    }
+    /**
+     * Пул узлов. В списке next - следующий узел; в дереве left и next - левый и правый потомки.
+     * Свободные узлы связаны через next.
+     */
+    private int[] keys;
+    private int[] values;
+    private int[] next;
+    private int[] left;
+    private int allocated;
+    private int free = NIL;
+
+    private IntSortedIndex orderedIndex;
+
+    /**
+     * Минимальный и максимальный ключи; находятся заново, только если такой ключ удален.
+     */
+    private final IntExtremes extremes = new IntExtremes();
 
     /**
      * Создает пустую хеш-таблицу с цепочками.
      */
     public ChainHashTable() {
         capacity = START_CAPACITY;
-        table = new ArrayList<>(capacity);
+        mask = capacity - 1;
+        heads = newHeads(capacity);
+        counts = new int[capacity];
+        keys = new int[START_CAPACITY];
+        values = new int[START_CAPACITY];
+        next = new int[START_CAPACITY];
+        left = new int[START_CAPACITY];
         size = 0;
-        for (int i = 0; i < capacity; i++) {
-            table.add(new ArrayList<>());
+    }
+
+    private static int[] newHeads(int capacity) {
+        final int[] heads = new int[capacity];
+        Arrays.fill(heads, NIL);
+        return heads;
+    }
+
+    private static boolean isTree(int head) {
+        return head < NIL;
+    }
+
+    private static int root(int head) {
+        return -2 - head;
+    }
+
+    private static int treeHead(int root) {
+        return -2 - root;
+    }
+
+    /**
+     * Возвращает приоритет узла дерева.
+     *
+     * @param node узел
+     * @return приоритет
+     */
+    private int priority(int node) {
+        return HashStrategy.murmur3().hash(keys[node] ^ seed);
+    }
+
+    /**
+     * Ищет узел с указанным ключом.
+     *
+     * @param key ключ для поиска
+     * @return узел, или NIL, если ключ не найден
+     */
+    private int find(int key) {
+        final int head = heads[key & mask];
+        if (!isTree(head)) {
+            for (int node = head; node != NIL; node = next[node]) {
+                if (keys[node] == key) {
+                    return node;
+                }
+            }
+            return NIL;
         }
+        int node = root(head);
+        while (node != NIL && keys[node] != key) {
+            node = key < keys[node] ? left[node] : next[node];
+        }
+        return node;
     }
 
     /**
@@ -47,14 +135,11 @@ public class ChainHashTable implements HashTable {
      */
     @Override
     public Integer search(int key) {
-        int hash = key % capacity;
-        List<Node> bucket = table.get(hash);
-        for (Node node : bucket) {
-            if (node.key == key) {
-                return node.value;
-            }
+        if (statistics != null && statistics.sample()) {
+            recordLookup(key);
         }
-        return null;
+        final int node = find(key);
+        return node == NIL ? null : values[node];
     }
 
     /**
@@ -65,59 +150,351 @@ public class ChainHashTable implements HashTable {
      */
     @Override
     public void add(int key, int value) {
+        final int existing = find(key);
+        if (existing != NIL) {
+            values[existing] = value;
+            return;
+        }
         if (REHASH_THRESHOLD <= (size * 1.0 / capacity)) {
             rehash();
         }
-        int hash = key % capacity;
-        List<Node> bucket = table.get(hash);
-        for (Node node : bucket) {
-            if (node.key == key) {
-                node.value = value;
-                return;
+        final int node = newNode(key, value);
+        link(node);
+        ++size;
+        extremes.added(key, size);
+        ++modCount;
+        if (orderedIndex != null) {
+            orderedIndex.add(key);
+        }
+    }
+
+    /**
+     * Берет узел из списка свободных или из конца пула, увеличивая пул при необходимости.
+     *
+     * @param key   ключ
+     * @param value значение
+     * @return новый узел
+     */
+    private int newNode(int key, int value) {
+        int node = free;
+        if (node != NIL) {
+            free = next[node];
+        } else {
+            if (allocated == keys.length) {
+                final int grown = keys.length * 2;
+                keys = Arrays.copyOf(keys, grown);
+                values = Arrays.copyOf(values, grown);
+                next = Arrays.copyOf(next, grown);
+                left = Arrays.copyOf(left, grown);
             }
+            node = allocated++;
         }
-        bucket.add(new Node(key, value));
-        ++size;
+        keys[node] = key;
+        values[node] = value;
+        next[node] = NIL;
+        left[node] = NIL;
+        return node;
     }
 
     /**
-     * Перехеширует хеш-таблицу, удваивая ее емкость и повторно вставляя все записи.
+     * Добавляет узел в его корзину: в конец списка, чтобы записи корзины шли в порядке вставки,
+     * или в дерево. Список не длиннее {@value #TREEIFY_THRESHOLD} узлов, поэтому конец
+     * находится проходом по нему; список, ставший длиннее, превращается в дерево.
+     *
+     * @param node узел с ключом, которого нет в таблице
+     */
+    private void link(int node) {
+        final int bucket = keys[node] & mask;
+        final int head = heads[bucket];
+        next[node] = NIL;
+        left[node] = NIL;
+        if (isTree(head)) {
+            heads[bucket] = treeHead(insert(root(head), node));
+        } else {
+            if (head == NIL) {
+                heads[bucket] = node;
+            } else {
+                int tail = head;
+                while (next[tail] != NIL) {
+                    tail = next[tail];
+                }
+                next[tail] = node;
+            }
+            if (counts[bucket] == TREEIFY_THRESHOLD) {
+                treeify(bucket);
+            }
+        }
+        ++counts[bucket];
+    }
+
+    /**
+     * Превращает список корзины в дерево.
+     *
+     * @param bucket корзина
+     */
+    private void treeify(int bucket) {
+        int root = NIL;
+        int node = heads[bucket];
+        while (node != NIL) {
+            final int following = next[node];
+            next[node] = NIL;
+            left[node] = NIL;
+            root = insert(root, node);
+            node = following;
+        }
+        heads[bucket] = treeHead(root);
+    }
+
+    /**
+     * Вставляет узел в поддерево, сохраняя порядок ключей и свойство кучи по приоритетам.
+     *
+     * @param root     корень поддерева
+     * @param inserted узел без потомков
+     * @return новый корень поддерева
+     */
+    private int insert(int root, int inserted) {
+        if (root == NIL) {
+            return inserted;
+        }
+        if (keys[inserted] < keys[root]) {
+            left[root] = insert(left[root], inserted);
+            if (priority(left[root]) > priority(root)) {
+                final int pivot = left[root];
+                left[root] = next[pivot];
+                next[pivot] = root;
+                return pivot;
+            }
+        } else {
+            next[root] = insert(next[root], inserted);
+            if (priority(next[root]) > priority(root)) {
+                final int pivot = next[root];
+                next[root] = left[pivot];
+                left[pivot] = root;
+                return pivot;
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Удаляет ключ из поддерева.
+     *
+     * @param root корень поддерева
+     * @param key  ключ, который есть в поддереве
+     * @return новый корень поддерева
+     */
+    private int remove(int root, int key) {
+        if (keys[root] == key) {
+            return merge(left[root], next[root]);
+        }
+        if (key < keys[root]) {
+            left[root] = remove(left[root], key);
+        } else {
+            next[root] = remove(next[root], key);
+        }
+        return root;
+    }
+
+    /**
+     * Сливает два поддерева, все ключи первого из которых меньше ключей второго.
+     */
+    private int merge(int a, int b) {
+        if (a == NIL) {
+            return b;
+        }
+        if (b == NIL) {
+            return a;
+        }
+        if (priority(a) > priority(b)) {
+            next[a] = merge(next[a], b);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        return b;
+    }
+
+    /**
+     * Связывает узлы поддерева в список в порядке возрастания ключей.
+     *
+     * @param root корень поддерева
+     * @param tail список, который следует за узлами поддерева
+     * @return первый узел списка
+     */
+    private int flatten(int root, int tail) {
+        if (root == NIL) {
+            return tail;
+        }
+        final int smaller = left[root];
+        next[root] = flatten(next[root], tail);
+        left[root] = NIL;
+        return flatten(smaller, root);
+    }
+
+    /**
+     * Перехеширует хеш-таблицу, удваивая ее емкость. Узлы остаются на своих местах в пуле
+     * и только перевязываются по новым корзинам; узлы списка добавляются в конец, поэтому
+     * порядок записей в корзине сохраняется.
      */
     private void rehash() {
-        final int newCapacity = capacity * 2;
-        final List<List<Node>> newTable = new ArrayList<>(newCapacity);
-        for (int i = 0; i < newCapacity; i++) {
-            newTable.add(new ArrayList<>());
+        final long start = System.nanoTime();
+        final int[] oldHeads = heads;
+        capacity *= 2;
+        mask = capacity - 1;
+        heads = newHeads(capacity);
+        counts = new int[capacity];
+        for (int head : oldHeads) {
+            int node = isTree(head) ? flatten(root(head), NIL) : head;
+            while (node != NIL) {
+                final int following = next[node];
+                link(node);
+                node = following;
+            }
         }
-        for (int i = 0; i < capacity; i++) {
-            List<Node> bucket = table.get(i);
-            for (Node node : bucket) {
-                int hash = node.key % newCapacity;
-                newTable.get(hash).add(node);
+        ++modCount;
+        if (statistics != null) {
+            statistics.recordRehash(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Включает сбор статистики с частотой выборки {@value TableStatistics#DEFAULT_SAMPLE_RATE}.
+     *
+     * @return статистика хеш-таблицы
+     */
+    public TableStatistics enableStatistics() {
+        return enableStatistics(TableStatistics.DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Включает сбор статистики с указанной частотой выборки. Повторный вызов заменяет статистику новой.
+     * Длиной пробы считается число просмотренных узлов цепочки или дерева; удаленных ячеек в цепочках не бывает.
+     *
+     * @param sampleRate частота выборки поисков (степень двойки)
+     * @return статистика хеш-таблицы
+     */
+    public TableStatistics enableStatistics(int sampleRate) {
+        statistics = new TableStatistics(sampleRate, this::maxChainLength, () -> 0);
+        return statistics;
+    }
+
+    /**
+     * Возвращает статистику хеш-таблицы.
+     *
+     * @return статистика, или null, если сбор статистики не включен
+     */
+    public TableStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Учитывает в статистике длину пробы поиска указанного ключа.
+     *
+     * @param key ключ для поиска
+     */
+    private void recordLookup(int key) {
+        final int head = heads[key & mask];
+        int probes = 0;
+        if (isTree(head)) {
+            for (int node = root(head); node != NIL; node = key < keys[node] ? left[node] : next[node]) {
+                ++probes;
+                if (keys[node] == key) {
+                    statistics.recordLookup(probes, true);
+                    return;
+                }
             }
+        } else {
+            for (int node = head; node != NIL; node = next[node]) {
+                ++probes;
+                if (keys[node] == key) {
+                    statistics.recordLookup(probes, true);
+                    return;
+                }
+            }
+        }
+        statistics.recordLookup(probes, false);
+    }
+
+    /**
+     * Вычисляет длину самой длинной пробы: длину списка или высоту дерева корзины.
+     *
+     * @return максимальная длина цепочки
+     */
+    private int maxChainLength() {
+        int max = 0;
+        for (int bucket = 0; bucket < capacity; ++bucket) {
+            max = Math.max(max, isTree(heads[bucket]) ? height(root(heads[bucket])) : counts[bucket]);
         }
-        capacity = newCapacity;
-        table = newTable;
+        return max;
+    }
+
+    private int height(int root) {
+        return root == NIL ? 0 : 1 + Math.max(height(left[root]), height(next[root]));
     }
 
     /**
-     * Удаляет запись с указанным ключом из хеш-таблицы.
+     * Удаляет запись с указанным ключом из хеш-таблицы. Дерево, в котором остается
+     * {@value #UNTREEIFY_THRESHOLD} узлов, снова становится списком.
      *
      * @param key ключ для удаления
      */
     @Override
     public void delete(int key) {
-        int hash = key % capacity;
-        List<Node> bucket = table.get(hash);
-        for (int i = 0; i < bucket.size(); i++) {
-            if (bucket.get(i).key == key) {
-                bucket.remove(i);
-                --size;
-                return;
+        final int removed = find(key);
+        if (removed == NIL) {
+            return;
+        }
+        final int bucket = key & mask;
+        final int head = heads[bucket];
+        if (isTree(head)) {
+            final int root = remove(root(head), key);
+            heads[bucket] = counts[bucket] - 1 == UNTREEIFY_THRESHOLD ? flatten(root, NIL) : treeHead(root);
+        } else if (head == removed) {
+            heads[bucket] = next[removed];
+        } else {
+            int previous = head;
+            while (next[previous] != removed) {
+                previous = next[previous];
             }
+            next[previous] = next[removed];
+        }
+        --counts[bucket];
+        next[removed] = free;
+        free = removed;
+        --size;
+        extremes.removed(key);
+        ++modCount;
+        if (orderedIndex != null) {
+            orderedIndex.remove(key);
         }
     }
 
+    /**
+     * Включает упорядоченный индекс ключей, заполняя его текущими ключами таблицы.
+     * После этого индекс поддерживается при каждом добавлении и удалении ключа.
+     * Повторный вызов возвращает уже существующий индекс.
+     *
+     * @return упорядоченный индекс ключей
+     */
+    public IntSortedIndex enableOrderedIndex() {
+        if (orderedIndex == null) {
+            orderedIndex = new IntSortedIndex(this);
+            final IntCursor cursor = cursor();
+            while (cursor.advance()) {
+                orderedIndex.add(cursor.key());
+            }
+        }
+        return orderedIndex;
+    }
+
+    /**
+     * Возвращает упорядоченный индекс ключей.
+     *
+     * @return индекс, или null, если он не включен
+     */
+    public IntSortedIndex getOrderedIndex() {
+        return orderedIndex;
+    }
+
     /**
      * Проверяет, пуста ли хеш-таблица.
      *
@@ -128,51 +505,146 @@ public class ChainHashTable implements HashTable {
     }
 
     /**
-     * Возвращает минимальный ключ в хеш-таблице.
+     * Возвращает значение записи с минимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален: по упорядоченному индексу, если он включен.
      *
-     * @return минимальный ключ, или null, если хеш-таблица пуста
+     * @return значение записи с минимальным ключом, или null, если хеш-таблица пуста
      */
     @Override
     public Integer min() {
-        if (isEmpty()) {
-            return null;
-        }
-        int min = Integer.MAX_VALUE;
-        int result = 0;
-        for (int i = 0; i < capacity; i++) {
-            List<Node> bucket = table.get(i);
-            for (Node node : bucket) {
-                if (node.key <= min) {
-                    min = node.key;
-                    result = node.value;
-                }
-            }
-        }
-        return result;
+        return isEmpty() ? null : extremes.min(this, orderedIndex);
     }
 
     /**
-     * Возвращает максимальный ключ в хеш-таблице.
+     * Возвращает значение записи с максимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален: по упорядоченному индексу, если он включен.
      *
-     * @return максимальный ключ, или null, если хеш-таблица пуста
+     * @return значение записи с максимальным ключом, или null, если хеш-таблица пуста
      */
     @Override
     public Integer max() {
-        if (isEmpty()) {
-            return null;
+        return isEmpty() ? null : extremes.max(this, orderedIndex);
+    }
+
+    /**
+     * Возвращает количество записей в хеш-таблице.
+     *
+     * @return количество записей
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает количество корзин хеш-таблицы.
+     *
+     * @return количество корзин
+     */
+    @Override
+    public int slotCount() {
+        return capacity;
+    }
+
+    /**
+     * Возвращает курсор по записям корзин [fromSlot, toSlot): цепочки проходятся в порядке индексов корзин.
+     * Добавление нового ключа, удаление или перехеширование во время обхода приводят
+     * к {@link ConcurrentModificationException}.
+     *
+     * @param fromSlot первая корзина (включительно)
+     * @param toSlot   последняя корзина (не включительно)
+     * @return курсор
+     */
+    @Override
+    public IntCursor cursor(int fromSlot, int toSlot) {
+        Objects.checkFromToIndex(fromSlot, toSlot, capacity);
+        return new Cursor(fromSlot, toSlot);
+    }
+
+    /**
+     * Курсор по диапазону корзин таблицы, актуальной на момент его создания.
+     * Узлы дерева обходятся в порядке возрастания ключей, как в {@link #print()}, с явным стеком
+     * левой ветви, который создается при первой встрече с деревом.
+     */
+    private final class Cursor implements IntCursor {
+        private final int[] cursorHeads = heads;
+        private final int[] cursorCounts = counts;
+        private final int[] cursorKeys = keys;
+        private final int[] cursorValues = values;
+        private final int[] cursorNext = next;
+        private final int[] cursorLeft = left;
+        private final int expectedModCount = modCount;
+        private final int to;
+        private int bucket;
+        private int node = NIL;
+        private int[] stack;
+        private int depth;
+        private int current = NIL;
+
+        Cursor(int from, int to) {
+            this.bucket = from;
+            this.to = to;
         }
-        int max = Integer.MIN_VALUE;
-        int result = 0;
-        for (int i = 0; i < capacity; i++) {
-            List<Node> bucket = table.get(i);
-            for (Node node : bucket) {
-                if (node.key >= max) {
-                    max = node.key;
-                    result = node.value;
+
+        @Override
+        public boolean advance() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            while (true) {
+                if (depth > 0) {
+                    current = stack[--depth];
+                    pushLeft(cursorNext[current]);
+                    return true;
+                }
+                if (node != NIL) {
+                    current = node;
+                    node = cursorNext[node];
+                    return true;
                 }
+                if (bucket >= to) {
+                    current = NIL;
+                    return false;
+                }
+                final int head = cursorHeads[bucket];
+                if (isTree(head)) {
+                    if (stack == null || stack.length < cursorCounts[bucket]) {
+                        stack = new int[cursorCounts[bucket]];
+                    }
+                    pushLeft(root(head));
+                } else {
+                    node = head;
+                }
+                ++bucket;
             }
         }
-        return result;
+
+        /**
+         * Кладет в стек узел и всех его левых потомков.
+         *
+         * @param root корень поддерева или NIL
+         */
+        private void pushLeft(int root) {
+            for (int node = root; node != NIL; node = cursorLeft[node]) {
+                stack[depth++] = node;
+            }
+        }
+
+        @Override
+        public int key() {
+            if (current == NIL) {
+                throw new NoSuchElementException();
+            }
+            return cursorKeys[current];
+        }
+
+        @Override
+        public int value() {
+            if (current == NIL) {
+                throw new NoSuchElementException();
+            }
+            return cursorValues[current];
+        }
     }
 
     /**
@@ -184,16 +656,26 @@ public class ChainHashTable implements HashTable {
     public String print() {
         final StringBuilder description = new StringBuilder("Hash table: [ ");
         for (int i = 0; i < capacity; i++) {
-            List<Node> bucket = table.get(i);
-            if (bucket.isEmpty()) {
+            final int head = heads[i];
+            if (head == NIL) {
                 description.append("__  ");
+            } else if (isTree(head)) {
+                appendTree(description, root(head));
             } else {
-                for (Node node : bucket) {
-                    description.append(String.format("%d  ", node.value));
+                for (int node = head; node != NIL; node = next[node]) {
+                    description.append(values[node]).append("  ");
                 }
             }
         }
         description.append(']');
         return description.toString();
     }
+
+    private void appendTree(StringBuilder description, int root) {
+        if (root != NIL) {
+            appendTree(description, left[root]);
+            description.append(values[root]).append("  ");
+            appendTree(description, next[root]);
+        }
+    }
 }
@@ -0,0 +1,200 @@
+package com.github.gzgef.doublehashing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченная очередь разобранных команд для одного производителя и одного потребителя.
+ * Команды передаются пачками: производитель заполняет пачку в своем слоте кольца и публикует ее
+ * одной записью счетчика, потребитель читает пачку целиком и освобождает слот так же одной записью.
+ * Слоты и массивы внутри них создаются один раз, поэтому передача команд не создает объектов.
+ * <p>
+ * Методы {@link #put} и {@link #close} вызываются только потоком-производителем,
+ * {@link #take}, {@link #command}, {@link #key} и {@link #value} - только потоком-потребителем.
+ */
+public final class CommandQueue {
+    private static final int BATCH_SIZE = 1024;
+    private static final int SPINS_BEFORE_YIELD = 100;
+
+    private final CommandReader.Command[][] commands;
+    private final int[][] keys;
+    private final int[][] values;
+    private final int[] counts;
+    private final int mask;
+
+    /**
+     * Число опубликованных пачек. Пишет только производитель.
+     */
+    private final AtomicLong published = new AtomicLong();
+    /**
+     * Число прочитанных пачек. Пишет только потребитель.
+     */
+    private final AtomicLong consumed = new AtomicLong();
+    private volatile boolean closed;
+    private volatile boolean aborted;
+
+    /* Состояние производителя */
+    private long producerBatch;
+    private int producerCount;
+    private long consumedCache;
+
+    /* Состояние потребителя */
+    private long consumerBatch = -1;
+    private int consumerIndex;
+    private int consumerCount;
+    private long publishedCache;
+
+    /**
+     * Создает очередь.
+     *
+     * @param batches число пачек в кольце (степень двойки)
+     * @throws IllegalArgumentException если число пачек не является степенью двойки
+     */
+    public CommandQueue(int batches) {
+        if (batches <= 0 || Integer.bitCount(batches) != 1) {
+            throw new IllegalArgumentException("Число пачек должно быть степенью двойки");
+        }
+        commands = new CommandReader.Command[batches][BATCH_SIZE];
+        keys = new int[batches][BATCH_SIZE];
+        values = new int[batches][BATCH_SIZE];
+        counts = new int[batches];
+        mask = batches - 1;
+    }
+
+    /**
+     * Добавляет команду в очередь. Если все слоты заняты, ждет, пока потребитель освободит слот.
+     *
+     * @param command команда
+     * @param key     ключ
+     * @param value   значение
+     * @return false, если потребитель прервал очередь
+     */
+    public boolean put(CommandReader.Command command, int key, int value) {
+        if (producerCount == 0 && !awaitFreeSlot()) {
+            return false;
+        }
+        final int slot = (int) producerBatch & mask;
+        commands[slot][producerCount] = command;
+        keys[slot][producerCount] = key;
+        values[slot][producerCount] = value;
+        if (++producerCount == BATCH_SIZE) {
+            publish();
+        }
+        return true;
+    }
+
+    /**
+     * Публикует неполную пачку и сообщает потребителю, что команд больше не будет.
+     *
+     * @return false, если потребитель прервал очередь
+     */
+    public boolean close() {
+        if (producerCount > 0) {
+            publish();
+        }
+        closed = true;
+        return !aborted;
+    }
+
+    /**
+     * Прерывает очередь: ожидающие методы обеих сторон возвращают false.
+     */
+    public void abort() {
+        aborted = true;
+    }
+
+    /**
+     * Переходит к следующей команде, при необходимости ожидая производителя.
+     *
+     * @return false, если очередь закрыта и все команды прочитаны, или если очередь прервана
+     */
+    public boolean take() {
+        if (++consumerIndex < consumerCount) {
+            return true;
+        }
+        if (consumerBatch >= 0) {
+            consumed.lazySet(consumerBatch + 1);
+        }
+        final long next = consumerBatch + 1;
+        int spins = 0;
+        while (publishedCache <= next) {
+            publishedCache = published.get();
+            if (publishedCache > next) {
+                break;
+            }
+            if (aborted || (closed && published.get() <= next)) {
+                return false;
+            }
+            spins = idle(spins);
+        }
+        consumerBatch = next;
+        consumerIndex = 0;
+        consumerCount = counts[(int) next & mask];
+        return true;
+    }
+
+    /**
+     * Возвращает текущую команду.
+     *
+     * @return команда
+     */
+    public CommandReader.Command command() {
+        return commands[(int) consumerBatch & mask][consumerIndex];
+    }
+
+    /**
+     * Возвращает ключ текущей команды.
+     *
+     * @return ключ
+     */
+    public int key() {
+        return keys[(int) consumerBatch & mask][consumerIndex];
+    }
+
+    /**
+     * Возвращает значение текущей команды.
+     *
+     * @return значение
+     */
+    public int value() {
+        return values[(int) consumerBatch & mask][consumerIndex];
+    }
+
+    /**
+     * Ждет, пока слот для следующей пачки освободится.
+     *
+     * @return false, если очередь прервана
+     */
+    private boolean awaitFreeSlot() {
+        int spins = 0;
+        while (producerBatch - consumedCache > mask) {
+            consumedCache = consumed.get();
+            if (producerBatch - consumedCache <= mask) {
+                break;
+            }
+            if (aborted) {
+                return false;
+            }
+            spins = idle(spins);
+        }
+        return !aborted;
+    }
+
+    private void publish() {
+        counts[(int) producerBatch & mask] = producerCount;
+        published.lazySet(++producerBatch);
+        producerCount = 0;
+    }
+
+    /**
+     * Ожидание без блокировки: сначала активное, затем с уступкой процессора,
+     * чтобы не занимать ядро, нужное другой стороне очереди.
+     */
+    private static int idle(int spins) {
+        if (spins < SPINS_BEFORE_YIELD) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+        return spins + 1;
+    }
+}
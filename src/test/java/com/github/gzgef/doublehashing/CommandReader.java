@@ -0,0 +1,398 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Потоковый разборщик файла команд. Байты читаются через буфер фиксированного размера
+ * и разбираются без создания строк, поэтому расход памяти не зависит от размера файла
+ * и длины строк.
+ * <p>
+ * Разбор совпадает с разбором строк в прежней версии тестового Main: команда - текст
+ * до первого пробела; у add ключ - текст между первым и последним пробелом, значение -
+ * текст после последнего пробела; у delete и search ключ - весь текст после первого пробела;
+ * у min, max и print текст после команды игнорируется. Строки с неизвестной командой или
+ * неверным числом пропускаются. Файл читается в кодировке UTF-8; цифрами, как и в
+ * Integer.parseInt, считаются все десятичные цифры Unicode. Строки разделяются символами
+ * \n, \r или \r\n.
+ * <p>
+ * Повторяемые строки, как и System.out.println в прежнем Main, записываются в кодировке
+ * стандартного вывода. Если это UTF-8, байты строки копируются без перекодирования.
+ */
+public final class CommandReader implements Closeable {
+    /**
+     * Команды файла.
+     */
+    public enum Command {
+        ADD, DELETE, SEARCH, MIN, MAX, PRINT
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_COMMAND_LENGTH = 6;
+    private static final long ADD = pack("add");
+    private static final long DELETE = pack("delete");
+    private static final long SEARCH = pack("search");
+    private static final long MIN = pack("min");
+    private static final long MAX = pack("max");
+    private static final long PRINT = pack("print");
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final InputStream in;
+    private final OutputStream echo;
+    private final boolean transcode;
+
+    /**
+     * Кодировщик повторяемых строк. Он один на весь поток, как у System.out, поэтому
+     * метка порядка байтов UTF-16 выводится один раз; строка копится в echoBytes.
+     */
+    private final ByteArrayOutputStream echoBytes = new ByteArrayOutputStream();
+    private final Writer echoWriter;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /**
+     * Начало текущей строки, ушедшее из буфера; копится только при перекодировании echo.
+     */
+    private byte[] pending = new byte[0];
+    private int pendingLength;
+    private int position;
+    private int limit;
+    private int lineStart;
+    private boolean inLine;
+    private boolean sawSpace;
+    private boolean skipLineFeed;
+    private int number;
+    private boolean numberValid;
+    private int key;
+    private int value;
+
+    /**
+     * Создает разборщик без вывода строк.
+     *
+     * @param in поток команд
+     */
+    public CommandReader(InputStream in) {
+        this(in, null);
+    }
+
+    /**
+     * Создает разборщик, который повторяет каждую прочитанную строку в поток echo
+     * так же, как это делал прежний Main: к строке без пробела добавляется пробел,
+     * а строка записывается в кодировке стандартного вывода.
+     *
+     * @param in   поток команд
+     * @param echo поток для повтора строк или null
+     */
+    public CommandReader(InputStream in, OutputStream echo) {
+        this.in = in;
+        this.echo = echo;
+        final Charset charset = stdoutCharset();
+        this.transcode = echo != null && !StandardCharsets.UTF_8.equals(charset);
+        this.echoWriter = transcode ? new OutputStreamWriter(echoBytes, charset) : null;
+    }
+
+    /**
+     * Возвращает кодировку, в которой System.out записывает символы: stdout.encoding
+     * (Java 18+), sun.stdout.encoding (консоль Windows в прежних версиях) или кодировку
+     * по умолчанию.
+     */
+    private static Charset stdoutCharset() {
+        final String name = System.getProperty("stdout.encoding", System.getProperty("sun.stdout.encoding"));
+        try {
+            if (name != null && Charset.isSupported(name)) {
+                return Charset.forName(name);
+            }
+        } catch (IllegalArgumentException e) {
+            // неверное имя кодировки - как и PrintStream, используем кодировку по умолчанию
+        }
+        return Charset.defaultCharset();
+    }
+
+    /**
+     * Читает следующую корректную команду, пропуская неверные строки.
+     *
+     * @return команда, или null, если файл закончился
+     * @throws IOException при ошибке чтения
+     */
+    public Command next() throws IOException {
+        while (startLine()) {
+            final Command command = parseLine();
+            if (command != null) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает ключ последней команды add, delete или search.
+     *
+     * @return ключ
+     */
+    public int key() {
+        return key;
+    }
+
+    /**
+     * Возвращает значение последней команды add.
+     *
+     * @return значение
+     */
+    public int value() {
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Переходит к началу следующей строки.
+     *
+     * @return false, если строк больше нет
+     */
+    private boolean startLine() throws IOException {
+        if (skipLineFeed) {
+            skipLineFeed = false;
+            if (read() == '\n') {
+                ++position;
+            }
+        }
+        if (read() == -1) {
+            return false;
+        }
+        lineStart = position;
+        inLine = true;
+        sawSpace = false;
+        return true;
+    }
+
+    /**
+     * Разбирает строку до конца.
+     *
+     * @return команда, или null, если строка неверна
+     */
+    private Command parseLine() throws IOException {
+        long token = 1;
+        int length = 0;
+        int b = take();
+        while (b != ' ' && !isEndOfLine(b)) {
+            if (++length <= MAX_COMMAND_LENGTH) {
+                token = (token << 8) | b;
+            }
+            b = take();
+        }
+        final long command = length <= MAX_COMMAND_LENGTH ? token : 0;
+        if (b == ' ') {
+            sawSpace = true;
+        }
+
+        if (command == MIN || command == MAX || command == PRINT) {
+            endLine(skipLine(b));
+            return command == MIN ? Command.MIN : command == MAX ? Command.MAX : Command.PRINT;
+        }
+        if (b != ' ' || (command != ADD && command != DELETE && command != SEARCH)) {
+            endLine(skipLine(b));
+            return null;
+        }
+
+        b = parseNumber();
+        if (command == ADD) {
+            if (b != ' ' || !numberValid) {
+                endLine(skipLine(b));
+                return null;
+            }
+            key = number;
+            b = parseNumber();
+            value = number;
+        } else {
+            key = number;
+        }
+        if (b == ' ' || !numberValid) {
+            endLine(skipLine(b));
+            return null;
+        }
+        endLine(b);
+        return command == ADD ? Command.ADD : command == DELETE ? Command.DELETE : Command.SEARCH;
+    }
+
+    /**
+     * Разбирает число до пробела или конца строки так же, как Integer.parseInt.
+     * Результат записывается в number, корректность - в numberValid.
+     *
+     * @return байт, на котором закончилось число
+     */
+    private int parseNumber() throws IOException {
+        int b = take();
+        boolean negative = false;
+        if (b == '-') {
+            negative = true;
+            b = take();
+        } else if (b == '+') {
+            b = take();
+        }
+        final int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        final int multiplyLimit = limit / 10;
+        boolean valid = b != ' ' && !isEndOfLine(b);
+        int result = 0;
+        while (b != ' ' && !isEndOfLine(b)) {
+            if (valid) {
+                final int digit = b < 0x80 ? Character.digit(b, 10) : Character.digit(decode(b), 10);
+                if (digit < 0 || result < multiplyLimit || result * 10 < limit + digit) {
+                    valid = false;
+                } else {
+                    result = result * 10 - digit;
+                }
+            }
+            b = take();
+        }
+        numberValid = valid;
+        number = negative ? result : -result;
+        return b;
+    }
+
+    /**
+     * Декодирует символ UTF-8 из двух или трех байтов, как это сделало бы чтение строки.
+     * Символы вне основной плоскости в строке Java - суррогатные пары, а Integer.parseInt
+     * не считает их цифрами, поэтому для них возвращается -1.
+     *
+     * @param b первый байт символа
+     * @return код символа, или -1
+     */
+    private int decode(int b) throws IOException {
+        final int continuation = b >= 0xE0 ? 2 : 1;
+        int character = b & (b >= 0xE0 ? 0x0F : 0x1F);
+        for (int i = 0; i < continuation; ++i) {
+            final int next = read();
+            if ((next & 0xC0) != 0x80) {
+                return -1;
+            }
+            ++position;
+            character = (character << 6) | (next & 0x3F);
+        }
+        return b >= 0xC0 && b < 0xF0 ? character : -1;
+    }
+
+    /**
+     * Пропускает остаток строки.
+     *
+     * @param b последний прочитанный байт
+     * @return байт, которым закончилась строка
+     */
+    private int skipLine(int b) throws IOException {
+        while (!isEndOfLine(b)) {
+            b = take();
+        }
+        return b;
+    }
+
+    /**
+     * Завершает строку: запоминает, что за \r может следовать \n, и повторяет строку в echo.
+     *
+     * @param terminator байт, которым закончилась строка
+     */
+    private void endLine(int terminator) throws IOException {
+        if (terminator == '\r') {
+            skipLineFeed = true;
+        }
+        if (echo != null) {
+            final int end = terminator == -1 ? position : position - 1;
+            if (transcode) {
+                keep(end);
+                echoWriter.write(new String(pending, 0, pendingLength, StandardCharsets.UTF_8));
+                if (!sawSpace) {
+                    echoWriter.write(' ');
+                }
+                echoWriter.write(System.lineSeparator());
+                echoWriter.flush();
+                echoBytes.writeTo(echo);
+                echoBytes.reset();
+                pendingLength = 0;
+            } else {
+                echo.write(buffer, lineStart, end - lineStart);
+                if (!sawSpace) {
+                    echo.write(' ');
+                }
+                echo.write(LINE_SEPARATOR);
+            }
+        }
+        inLine = false;
+    }
+
+    /**
+     * Возвращает следующий байт и продвигает позицию.
+     *
+     * @return байт, или -1 в конце файла
+     */
+    private int take() throws IOException {
+        final int b = read();
+        if (b != -1) {
+            ++position;
+        }
+        return b;
+    }
+
+    /**
+     * Возвращает следующий байт, не продвигая позицию; при необходимости заполняет буфер.
+     * Часть текущей строки, которая уходит из буфера, сначала повторяется в echo.
+     *
+     * @return байт, или -1 в конце файла
+     */
+    private int read() throws IOException {
+        if (position == limit) {
+            if (inLine && echo != null) {
+                if (transcode) {
+                    keep(limit);
+                } else {
+                    echo.write(buffer, lineStart, limit - lineStart);
+                }
+            }
+            lineStart = 0;
+            position = 0;
+            limit = Math.max(0, in.read(buffer, 0, buffer.length));
+            if (limit == 0) {
+                return -1;
+            }
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    /**
+     * Дописывает в pending байты текущей строки из буфера до end. Символ UTF-8 может
+     * оказаться разрезан границей буфера, поэтому строка декодируется только целиком.
+     *
+     * @param end конец части строки в буфере
+     */
+    private void keep(int end) {
+        final int length = end - lineStart;
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pendingLength + length, pending.length << 1));
+        }
+        System.arraycopy(buffer, lineStart, pending, pendingLength, length);
+        pendingLength += length;
+    }
+
+    private static boolean isEndOfLine(int b) {
+        return b == '\n' || b == '\r' || b == -1;
+    }
+
+    /**
+     * Упаковывает имя команды в long по одному байту на символ после единичного бита,
+     * который отличает имена разной длины.
+     */
+    private static long pack(String command) {
+        long token = 1;
+        for (int i = 0; i < command.length(); ++i) {
+            token = (token << 8) | command.charAt(i);
+        }
+        return token;
+    }
+}
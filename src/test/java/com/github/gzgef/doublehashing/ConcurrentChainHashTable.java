@@ -0,0 +1,522 @@
+package com.github.gzgef.doublehashing;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Потокобезопасная реализация хеш-таблицы с цепочками и разделением блокировок.
+ * Корзины распределены между полосами (stripes), каждая из которых защищена своей блокировкой.
+ * Узлы цепочек неизменяемы и публикуются через атомарный массив корзин, поэтому поиск
+ * не захватывает блокировок. При изменении размера корзины переносятся по одной полосе за раз:
+ * перенесенная корзина заменяется узлом-переадресацией на новую таблицу.
+ * Этот класс используется для тестирования и реализует интерфейс HashTable.
+ */
+public class ConcurrentChainHashTable implements HashTable {
+    private static final int START_CAPACITY = 8;
+    private static final double REHASH_THRESHOLD = 0.75;
+    private static final int DEFAULT_STRIPES = 16;
+    private static final int CONCURRENT_CHARACTERISTICS =
+            Spliterator.CONCURRENT | Spliterator.DISTINCT | Spliterator.NONNULL;
+
+    private final HashStrategy strategy;
+    private final ReentrantLock[] locks;
+    private final int stripeMask;
+    private final LongAdder size = new LongAdder();
+    private final AtomicBoolean resizing = new AtomicBoolean();
+    private volatile AtomicReferenceArray<Node> table;
+
+    /**
+     * Неизменяемый узел цепочки.
+     */
+    private static class Node {
+        final int key;
+        final int value;
+        final Node next;
+
+        Node(int key, int value, Node next) {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Узел, которым помечается перенесенная корзина. Записи корзины i старой таблицы емкости n
+     * находятся в корзинах i и i + n новой таблицы.
+     */
+    private static final class ForwardingNode extends Node {
+        final AtomicReferenceArray<Node> nextTable;
+
+        ForwardingNode(AtomicReferenceArray<Node> nextTable) {
+            super(0, 0, null);
+            this.nextTable = nextTable;
+        }
+    }
+
+    /**
+     * Создает пустую хеш-таблицу с {@value #DEFAULT_STRIPES} полосами блокировок.
+     */
+    public ConcurrentChainHashTable() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Создает пустую хеш-таблицу с указанным числом полос блокировок.
+     *
+     * @param stripes число полос (округляется вверх до степени двойки)
+     */
+    public ConcurrentChainHashTable(int stripes) {
+        this(HashStrategy.identity(), stripes);
+    }
+
+    /**
+     * Создает пустую хеш-таблицу с указанной стратегией хеширования и числом полос блокировок.
+     *
+     * @param strategy стратегия перемешивания ключей
+     * @param stripes  число полос (округляется вверх до степени двойки)
+     * @throws IllegalArgumentException если число полос не положительно
+     */
+    public ConcurrentChainHashTable(HashStrategy strategy, int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Число полос должно быть положительным: " + stripes);
+        }
+        int stripeCount = 1;
+        while (stripeCount < stripes) {
+            stripeCount <<= 1;
+        }
+        this.strategy = strategy;
+        this.stripeMask = stripeCount - 1;
+        this.locks = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.table = new AtomicReferenceArray<>(Math.max(START_CAPACITY, stripeCount));
+    }
+
+    /**
+     * Возвращает актуальную таблицу, содержащую корзину с указанным хешем, следуя переадресациям.
+     * Вызывается под блокировкой полосы корзины, поэтому корзина не может быть перенесена до ее освобождения.
+     * Поскольку емкость не меньше числа полос, полоса корзины не зависит от емкости таблицы.
+     *
+     * @param hash перемешанный хеш ключа
+     * @return таблица, содержащая корзину
+     */
+    private AtomicReferenceArray<Node> tableFor(int hash) {
+        AtomicReferenceArray<Node> current = table;
+        Node head = current.get(hash & (current.length() - 1));
+        while (head instanceof ForwardingNode) {
+            current = ((ForwardingNode) head).nextTable;
+            head = current.get(hash & (current.length() - 1));
+        }
+        return current;
+    }
+
+    /**
+     * Возвращает голову корзины с указанным хешем в актуальной таблице, следуя переадресациям.
+     * Голова читается один раз на каждом шаге, поэтому результат никогда не является переадресацией,
+     * даже если корзина переносится одновременно с чтением.
+     *
+     * @param hash перемешанный хеш ключа
+     * @return голова цепочки или null, если корзина пуста
+     */
+    private Node headFor(int hash) {
+        AtomicReferenceArray<Node> current = table;
+        Node head = current.get(hash & (current.length() - 1));
+        while (head instanceof ForwardingNode) {
+            current = ((ForwardingNode) head).nextTable;
+            head = current.get(hash & (current.length() - 1));
+        }
+        return head;
+    }
+
+    /**
+     * Ищет значение, связанное с указанным ключом. Не захватывает блокировок.
+     *
+     * @param key ключ для поиска
+     * @return значение, связанное с ключом, или null, если не найдено
+     */
+    @Override
+    public Integer search(int key) {
+        for (Node node = headFor(strategy.hash(key)); node != null; node = node.next) {
+            if (node.key == key) {
+                return node.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Добавляет ключ-значение в хеш-таблицу.
+     *
+     * @param key   ключ
+     * @param value значение
+     */
+    @Override
+    public void add(int key, int value) {
+        final int hash = strategy.hash(key);
+        final ReentrantLock lock = locks[hash & stripeMask];
+        boolean added = true;
+        lock.lock();
+        try {
+            final AtomicReferenceArray<Node> current = tableFor(hash);
+            final int index = hash & (current.length() - 1);
+            final Node head = current.get(index);
+            for (Node node = head; node != null; node = node.next) {
+                if (node.key == key) {
+                    current.set(index, replace(head, node, new Node(key, value, node.next)));
+                    added = false;
+                    break;
+                }
+            }
+            if (added) {
+                current.set(index, new Node(key, value, head));
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (added) {
+            size.increment();
+            if (REHASH_THRESHOLD <= (size.sum() * 1.0 / table.length())) {
+                rehash();
+            }
+        }
+    }
+
+    /**
+     * Удаляет запись с указанным ключом из хеш-таблицы.
+     *
+     * @param key ключ для удаления
+     */
+    @Override
+    public void delete(int key) {
+        final int hash = strategy.hash(key);
+        final ReentrantLock lock = locks[hash & stripeMask];
+        lock.lock();
+        try {
+            final AtomicReferenceArray<Node> current = tableFor(hash);
+            final int index = hash & (current.length() - 1);
+            final Node head = current.get(index);
+            for (Node node = head; node != null; node = node.next) {
+                if (node.key == key) {
+                    current.set(index, replace(head, node, node.next));
+                    size.decrement();
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Строит новую цепочку, в которой узел target заменен цепочкой replacement.
+     * Узлы до target копируются, узлы после него используются повторно.
+     *
+     * @param head        голова исходной цепочки
+     * @param target      заменяемый узел
+     * @param replacement цепочка, которая встанет на место target
+     * @return голова новой цепочки
+     */
+    private static Node replace(Node head, Node target, Node replacement) {
+        if (head == target) {
+            return replacement;
+        }
+        return new Node(head.key, head.value, replace(head.next, target, replacement));
+    }
+
+    /**
+     * Перехеширует хеш-таблицу, удваивая ее емкость. Одновременно выполняется не более одного переноса;
+     * корзины каждой полосы переносятся под блокировкой только этой полосы.
+     */
+    private void rehash() {
+        if (!resizing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final AtomicReferenceArray<Node> oldTable = table;
+            final int capacity = oldTable.length();
+            if (REHASH_THRESHOLD > (size.sum() * 1.0 / capacity)) {
+                return;
+            }
+            final AtomicReferenceArray<Node> newTable = new AtomicReferenceArray<>(capacity * 2);
+            final ForwardingNode forward = new ForwardingNode(newTable);
+            for (int stripe = 0; stripe <= stripeMask; stripe++) {
+                locks[stripe].lock();
+                try {
+                    for (int i = stripe; i < capacity; i += stripeMask + 1) {
+                        Node low = null;
+                        Node high = null;
+                        for (Node node = oldTable.get(i); node != null; node = node.next) {
+                            if ((strategy.hash(node.key) & capacity) == 0) {
+                                low = new Node(node.key, node.value, low);
+                            } else {
+                                high = new Node(node.key, node.value, high);
+                            }
+                        }
+                        newTable.set(i, low);
+                        newTable.set(i + capacity, high);
+                        oldTable.set(i, forward);
+                    }
+                } finally {
+                    locks[stripe].unlock();
+                }
+            }
+            table = newTable;
+        } finally {
+            resizing.set(false);
+        }
+    }
+
+    /**
+     * Проверяет, пуста ли хеш-таблица.
+     *
+     * @return true, если хеш-таблица пуста, иначе false
+     */
+    public boolean isEmpty() {
+        return size.sum() == 0;
+    }
+
+    /**
+     * Возвращает минимальный ключ в хеш-таблице.
+     * При одновременных изменениях результат отражает одно из промежуточных состояний таблицы.
+     *
+     * @return минимальный ключ, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer min() {
+        final Node min = extreme(table, 0, 1, null, true);
+        return min == null ? null : min.value;
+    }
+
+    /**
+     * Возвращает максимальный ключ в хеш-таблице.
+     * При одновременных изменениях результат отражает одно из промежуточных состояний таблицы.
+     *
+     * @return максимальный ключ, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer max() {
+        final Node max = extreme(table, 0, 1, null, false);
+        return max == null ? null : max.value;
+    }
+
+    /**
+     * Ищет узел с минимальным или максимальным ключом среди корзин from, from + step, ...
+     * таблицы, следуя переадресациям перенесенных корзин.
+     *
+     * @param current таблица для просмотра
+     * @param from    первая корзина
+     * @param step    шаг между корзинами
+     * @param best    лучший найденный узел или null
+     * @param min     true для поиска минимума, false для максимума
+     * @return лучший найденный узел или null
+     */
+    private static Node extreme(AtomicReferenceArray<Node> current, int from, int step, Node best, boolean min) {
+        for (int i = from; i < current.length(); i += step) {
+            final Node head = current.get(i);
+            if (head instanceof ForwardingNode) {
+                best = extreme(((ForwardingNode) head).nextTable, i, current.length() * 2, best, min);
+                best = extreme(((ForwardingNode) head).nextTable, i + current.length(), current.length() * 2, best, min);
+                continue;
+            }
+            for (Node node = head; node != null; node = node.next) {
+                if (best == null || (min ? node.key <= best.key : node.key >= best.key)) {
+                    best = node;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Возвращает количество записей в хеш-таблице.
+     * При одновременных изменениях результат отражает одно из промежуточных состояний таблицы.
+     *
+     * @return количество записей
+     */
+    @Override
+    public int size() {
+        return size.intValue();
+    }
+
+    /**
+     * Возвращает количество корзин актуальной таблицы.
+     *
+     * @return количество корзин
+     */
+    @Override
+    public int slotCount() {
+        return table.length();
+    }
+
+    /**
+     * Возвращает слабо согласованный курсор по записям корзин [fromSlot, toSlot). Курсор не захватывает
+     * блокировок и не бросает {@link java.util.ConcurrentModificationException}: он проходит корзины таблицы,
+     * актуальной на момент его создания, и по переадресациям переходит в корзины новой таблицы.
+     * Цепочки неизменяемы, поэтому каждая корзина видна целиком в состоянии на момент ее чтения,
+     * а изменения, сделанные во время обхода, могут быть видны или не видны.
+     *
+     * @param fromSlot первая корзина (включительно)
+     * @param toSlot   последняя корзина (не включительно)
+     * @return курсор
+     */
+    @Override
+    public IntCursor cursor(int fromSlot, int toSlot) {
+        final AtomicReferenceArray<Node> current = table;
+        Objects.checkFromToIndex(fromSlot, toSlot, current.length());
+        return new Cursor(current, fromSlot, toSlot);
+    }
+
+    /**
+     * Возвращает слабо согласованный делимый итератор по ключам. Все части итератора проходят
+     * корзины одной и той же таблицы, актуальной на момент его создания, с переходом по переадресациям.
+     *
+     * @return итератор по ключам
+     */
+    @Override
+    public Spliterator.OfInt keySpliterator() {
+        final AtomicReferenceArray<Node> current = table;
+        return new SlotSpliterator.Keys((from, to) -> new Cursor(current, from, to),
+                0, current.length(), size.sum(), CONCURRENT_CHARACTERISTICS);
+    }
+
+    /**
+     * Возвращает слабо согласованный делимый итератор по копиям записей.
+     *
+     * @return итератор по записям
+     * @see #keySpliterator()
+     */
+    @Override
+    public Spliterator<HashTableNode<Integer, Integer>> entrySpliterator() {
+        final AtomicReferenceArray<Node> current = table;
+        return new SlotSpliterator.Entries((from, to) -> new Cursor(current, from, to),
+                0, current.length(), size.sum(), CONCURRENT_CHARACTERISTICS);
+    }
+
+    /**
+     * Курсор по корзинам таблицы. Корзины, на которые указывают переадресации, откладываются
+     * в стек и проходятся до следующей корзины исходной таблицы.
+     */
+    private static final class Cursor implements IntCursor {
+        private final AtomicReferenceArray<Node> root;
+        private final int to;
+        private int bucket;
+        private Node node;
+        private AtomicReferenceArray<Node>[] pendingTables = newTables(8);
+        private int[] pendingIndexes = new int[8];
+        private int depth;
+
+        Cursor(AtomicReferenceArray<Node> root, int from, int to) {
+            this.root = root;
+            this.bucket = from - 1;
+            this.to = to;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static AtomicReferenceArray<Node>[] newTables(int length) {
+            return (AtomicReferenceArray<Node>[]) new AtomicReferenceArray<?>[length];
+        }
+
+        private void push(AtomicReferenceArray<Node> source, int index) {
+            if (depth == pendingIndexes.length) {
+                pendingTables = Arrays.copyOf(pendingTables, depth * 2);
+                pendingIndexes = Arrays.copyOf(pendingIndexes, depth * 2);
+            }
+            pendingTables[depth] = source;
+            pendingIndexes[depth++] = index;
+        }
+
+        @Override
+        public boolean advance() {
+            if (node != null && node.next != null) {
+                node = node.next;
+                return true;
+            }
+            while (true) {
+                final AtomicReferenceArray<Node> source;
+                final int index;
+                if (depth > 0) {
+                    source = pendingTables[--depth];
+                    index = pendingIndexes[depth];
+                    pendingTables[depth] = null;
+                } else if (++bucket < to) {
+                    source = root;
+                    index = bucket;
+                } else {
+                    bucket = to;
+                    node = null;
+                    return false;
+                }
+                final Node head = source.get(index);
+                if (head instanceof ForwardingNode) {
+                    final AtomicReferenceArray<Node> next = ((ForwardingNode) head).nextTable;
+                    push(next, index + source.length());
+                    push(next, index);
+                } else if (head != null) {
+                    node = head;
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public int key() {
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            return node.key;
+        }
+
+        @Override
+        public int value() {
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            return node.value;
+        }
+    }
+
+    /**
+     * Возвращает строковое представление хеш-таблицы.
+     * Перенесенные корзины выводятся содержимым соответствующих корзин новой таблицы.
+     *
+     * @return строковое представление хеш-таблицы
+     */
+    @Override
+    public String print() {
+        final StringBuilder description = new StringBuilder("Hash table: [ ");
+        print(description, table, 0, 1);
+        description.append(']');
+        return description.toString();
+    }
+
+    /**
+     * Добавляет в описание корзины from, from + step, ... таблицы.
+     *
+     * @param description строящееся описание
+     * @param current     таблица для просмотра
+     * @param from        первая корзина
+     * @param step        шаг между корзинами
+     */
+    private static void print(StringBuilder description, AtomicReferenceArray<Node> current, int from, int step) {
+        for (int i = from; i < current.length(); i += step) {
+            final Node head = current.get(i);
+            if (head instanceof ForwardingNode) {
+                print(description, ((ForwardingNode) head).nextTable, i, current.length() * 2);
+                print(description, ((ForwardingNode) head).nextTable, i + current.length(), current.length() * 2);
+            } else if (head == null) {
+                description.append("__  ");
+            } else {
+                for (Node node = head; node != null; node = node.next) {
+                    description.append(node.value).append("  ");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,568 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Реализация хеш-таблицы с кукушкиным хешированием на корзинах по {@value #BUCKET_SIZE} ячейки.
+ * Ключ может лежать только в одной из двух корзин, номера которых дают две хеш-функции, или в небольшом
+ * запасе (stash) из {@value #STASH_SIZE} ячеек. Ключ и значение упакованы в один long, поэтому корзина
+ * занимает 32 байта, и поиск читает не более двух корзин, их счетчики заполнения и, только если запас
+ * не пуст, запас - ограниченное число строк кеша при любой длине таблицы и любом наборе ключей.
+ * <p>
+ * Если обе корзины нового ключа заполнены, он вытесняет случайную запись одной из них в ее другую корзину,
+ * та - следующую и так далее. Путь вытеснений ограничен {@value #MAX_EVICTIONS} шагами; запись,
+ * оставшаяся без места, помещается в запас, а если заполнен и он, таблица перехешируется с новым зерном
+ * хеш-функций (и с удвоенной емкостью, если она заполнена хотя бы наполовину). Корзины поддерживают
+ * коэффициент загрузки до {@value #MAX_LOAD}. Записи корзины лежат в ее первых ячейках подряд,
+ * а их число хранится в отдельном массиве байт.
+ * Этот класс используется для тестирования и реализует интерфейс HashTable.
+ */
+public class CuckooHashTable implements HashTable {
+    private static final int BUCKET_SIZE = 4;
+    private static final int BUCKET_SHIFT = 2;
+    private static final int START_BUCKETS = 4;
+    private static final int MAX_BUCKETS = 1 << 28;
+    private static final double MAX_LOAD = 0.9;
+    private static final double GROW_LOAD = 0.5;
+    private static final int MAX_EVICTIONS = 128;
+    private static final int STASH_SIZE = 8;
+    private static final int MAX_REHASH_ATTEMPTS = 32;
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    private final HashStrategy strategy;
+    private final long[] stash = new long[STASH_SIZE];
+    private long seed;
+    private int size;
+    private int capacity;
+    private int bucketMask;
+    private long[] slots;
+    private byte[] fill;
+    private int stashSize;
+    private long random = SEED_STEP;
+    private long homeless;
+    private int modCount;
+
+    /**
+     * Минимальный и максимальный ключи; находятся заново, только если такой ключ удален.
+     */
+    private final IntExtremes extremes = new IntExtremes();
+
+    /**
+     * Создает пустую хеш-таблицу с тождественной стратегией хеширования.
+     * Номера корзин все равно перемешиваются с зерном, поэтому тождественная стратегия
+     * не делает последовательные ключи соседями по корзинам.
+     */
+    public CuckooHashTable() {
+        this(HashStrategy.identity());
+    }
+
+    /**
+     * Создает пустую хеш-таблицу с указанной стратегией хеширования.
+     *
+     * @param strategy стратегия перемешивания ключей
+     */
+    public CuckooHashTable(HashStrategy strategy) {
+        this.strategy = strategy;
+        allocate(START_BUCKETS);
+    }
+
+    private void allocate(int buckets) {
+        capacity = buckets << BUCKET_SHIFT;
+        bucketMask = buckets - 1;
+        slots = new long[capacity];
+        fill = new byte[buckets];
+    }
+
+    private static long pack(int key, int value) {
+        return ((long) key << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    private static int keyOf(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    /**
+     * Вычисляет 64-битный хеш ключа: младшие 32 бита дают первую корзину, старшие - вторую.
+     *
+     * @param key ключ
+     * @return хеш
+     */
+    private long hash(int key) {
+        long x = (strategy.hash(key) & 0xFFFFFFFFL) ^ seed;
+        x = (x ^ (x >>> 33)) * 0xFF51AFD7ED558CCDL;
+        x = (x ^ (x >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return x ^ (x >>> 33);
+    }
+
+    private int bucket1(long hash) {
+        return (int) hash & bucketMask;
+    }
+
+    /**
+     * Возвращает вторую корзину ключа; она всегда отличается от первой.
+     */
+    private int bucket2(long hash, int bucket1) {
+        final int bucket = (int) (hash >>> 32) & bucketMask;
+        return bucket == bucket1 ? bucket1 ^ 1 : bucket;
+    }
+
+    /**
+     * Возвращает индекс ячейки с ключом в корзине, или -1, если его там нет.
+     */
+    private int find(int bucket, int key) {
+        final int base = bucket << BUCKET_SHIFT;
+        final int end = base + fill[bucket];
+        for (int i = base; i < end; ++i) {
+            if (keyOf(slots[i]) == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Возвращает индекс ячейки с ключом: индексы [0, capacity) относятся к корзинам,
+     * [capacity, capacity + {@value #STASH_SIZE}) - к запасу.
+     *
+     * @param key ключ для поиска
+     * @return индекс ячейки, или -1, если ключ не найден
+     */
+    private int indexOf(int key) {
+        final long hash = hash(key);
+        final int bucket1 = bucket1(hash);
+        int index = find(bucket1, key);
+        if (index < 0) {
+            index = find(bucket2(hash, bucket1), key);
+        }
+        if (index < 0) {
+            for (int i = 0; i < stashSize; ++i) {
+                if (keyOf(stash[i]) == key) {
+                    return capacity + i;
+                }
+            }
+        }
+        return index;
+    }
+
+    private long entryAt(int index) {
+        return index < capacity ? slots[index] : stash[index - capacity];
+    }
+
+    /**
+     * Ищет значение, связанное с указанным ключом. Просматривает не более двух корзин и запас.
+     *
+     * @param key ключ для поиска
+     * @return значение, связанное с ключом, или null, если не найдено
+     */
+    @Override
+    public Integer search(int key) {
+        final int index = indexOf(key);
+        return index < 0 ? null : (int) entryAt(index);
+    }
+
+    /**
+     * Возвращает значение ключа без создания объектов.
+     *
+     * @param key          ключ для поиска
+     * @param defaultValue значение, возвращаемое при отсутствии ключа
+     * @return значение, связанное с ключом, или defaultValue
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        final int index = indexOf(key);
+        return index < 0 ? defaultValue : (int) entryAt(index);
+    }
+
+    /**
+     * Проверяет наличие ключа без создания объектов.
+     *
+     * @param key ключ для поиска
+     * @return true, если ключ есть в хеш-таблице
+     */
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Добавляет ключ-значение в хеш-таблицу.
+     * Если ключ уже существует, значение обновляется.
+     * Емкость удваивается, когда коэффициент загрузки достигает {@value #MAX_LOAD}.
+     *
+     * @param key   ключ
+     * @param value значение
+     */
+    @Override
+    public void add(int key, int value) {
+        final int index = indexOf(key);
+        if (index >= 0) {
+            if (index < capacity) {
+                slots[index] = pack(key, value);
+            } else {
+                stash[index - capacity] = pack(key, value);
+            }
+            return;
+        }
+        if (MAX_LOAD * capacity <= size + 1) {
+            rehash(grownBuckets());
+        }
+        if (!place(pack(key, value))) {
+            rehash(GROW_LOAD * capacity <= size + 1 ? grownBuckets() : bucketMask + 1, homeless);
+        }
+        ++size;
+        extremes.added(key, size);
+        ++modCount;
+    }
+
+    private int grownBuckets() {
+        if (bucketMask + 1 == MAX_BUCKETS) {
+            throw new IllegalStateException("Достигнута максимальная емкость хеш-таблицы");
+        }
+        return (bucketMask + 1) * 2;
+    }
+
+    /**
+     * Размещает запись, которой заведомо нет в таблице: в менее заполненную из двух корзин,
+     * иначе вытесняя записи по случайному пути не длиннее {@value #MAX_EVICTIONS} шагов, иначе в запас.
+     * Если места не нашлось, запись, оставшаяся без места (не обязательно исходная),
+     * сохраняется в поле homeless.
+     *
+     * @param entry упакованная запись
+     * @return true, если все записи размещены
+     */
+    private boolean place(long entry) {
+        final long hash = hash(keyOf(entry));
+        final int first = bucket1(hash);
+        final int second = bucket2(hash, first);
+        int bucket = fill[first] <= fill[second] ? first : second;
+        for (int evictions = 0; fill[bucket] == BUCKET_SIZE; ++evictions) {
+            if (evictions == MAX_EVICTIONS) {
+                if (stashSize < STASH_SIZE) {
+                    stash[stashSize++] = entry;
+                    return true;
+                }
+                homeless = entry;
+                return false;
+            }
+            final int victim = (bucket << BUCKET_SHIFT) + (nextRandom() & (BUCKET_SIZE - 1));
+            final long displaced = slots[victim];
+            slots[victim] = entry;
+            entry = displaced;
+            final long displacedHash = hash(keyOf(entry));
+            final int displacedFirst = bucket1(displacedHash);
+            bucket = bucket == displacedFirst ? bucket2(displacedHash, displacedFirst) : displacedFirst;
+        }
+        slots[(bucket << BUCKET_SHIFT) + fill[bucket]++] = entry;
+        return true;
+    }
+
+    private int nextRandom() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) random;
+    }
+
+    /**
+     * Перехеширует хеш-таблицу в указанное число корзин с новым зерном хеш-функций.
+     * Если какая-то запись снова не находит места, зерно меняется еще раз, а при заполнении
+     * хотя бы наполовину емкость удваивается. Неудача {@value #MAX_REHASH_ATTEMPTS} попыток подряд означает,
+     * что стратегия хеширования дает одинаковый хеш слишком многим ключам.
+     *
+     * @param buckets число корзин (степень двойки)
+     * @param pending записи, которых еще нет в таблице
+     * @throws IllegalStateException если записи не удалось разместить
+     */
+    private void rehash(int buckets, long... pending) {
+        final long[] entries = new long[size + pending.length];
+        int count = 0;
+        for (int bucket = 0; bucket <= bucketMask; ++bucket) {
+            final int base = bucket << BUCKET_SHIFT;
+            for (int i = 0; i < fill[bucket]; ++i) {
+                entries[count++] = slots[base + i];
+            }
+        }
+        for (int i = 0; i < stashSize; ++i) {
+            entries[count++] = stash[i];
+        }
+        for (long entry : pending) {
+            entries[count++] = entry;
+        }
+
+        boolean placed = false;
+        for (int attempt = 0; !placed; ++attempt) {
+            if (attempt == MAX_REHASH_ATTEMPTS) {
+                throw new IllegalStateException("Не удалось разместить записи: слишком много ключей с одинаковым хешем");
+            }
+            seed += SEED_STEP;
+            allocate(buckets);
+            stashSize = 0;
+            placed = true;
+            for (int i = 0; i < count && placed; ++i) {
+                placed = place(entries[i]);
+            }
+            if (!placed && GROW_LOAD * capacity <= count) {
+                buckets = grownBuckets();
+            }
+        }
+        ++modCount;
+    }
+
+    /**
+     * Сохраняет снимок хеш-таблицы: заголовок с числом ячеек корзин и числом записей, затем зерно
+     * хеш-функций и число записей запаса, запас, счетчики заполнения корзин и ячейки корзин
+     * как есть и CRC32.
+     *
+     * @param path файл снимка
+     * @throws IOException              при ошибке записи
+     * @throws IllegalArgumentException если стратегию хеширования нельзя сохранить в снимке
+     */
+    public void save(Path path) throws IOException {
+        try (SnapshotWriter writer = new SnapshotWriter(path, Snapshot.TYPE_CUCKOO, 0,
+                strategy, 0, capacity, size, 0)) {
+            writer.writeLongs(new long[]{seed, stashSize});
+            writer.writeLongs(stash);
+            writer.writeBytes(ByteBuffer.wrap(fill));
+            writer.writeLongs(slots);
+            writer.finish();
+        }
+    }
+
+    /**
+     * Загружает хеш-таблицу из снимка, сохраненного методом {@link #save}. Массивы читаются
+     * из отображенного в память файла целиком, без перехеширования; зерно хеш-функций
+     * восстанавливается, поэтому записи остаются в своих корзинах. Счетчики заполнения корзин
+     * и размер запаса сверяются с их пределами и с числом записей из заголовка.
+     *
+     * @param path файл снимка
+     * @return загруженная хеш-таблица
+     * @throws IOException при ошибке чтения, неверной контрольной сумме или неподходящем снимке
+     */
+    public static CuckooHashTable load(Path path) throws IOException {
+        try (SnapshotReader reader = new SnapshotReader(path, Snapshot.TYPE_CUCKOO, 0)) {
+            final int buckets = reader.capacity >>> BUCKET_SHIFT;
+            if (buckets < START_BUCKETS || buckets > MAX_BUCKETS || reader.deleted != 0) {
+                throw new IOException("Неверный заголовок снимка");
+            }
+            final long[] state = new long[2];
+            final long[] loadedStash = new long[STASH_SIZE];
+            final byte[] loadedFill = new byte[buckets];
+            final long[] loadedSlots = new long[reader.capacity];
+            reader.readLongs(state);
+            reader.readLongs(loadedStash);
+            reader.readBytes(ByteBuffer.wrap(loadedFill));
+            reader.readLongs(loadedSlots);
+            reader.finish();
+
+            final long loadedStashSize = state[1];
+            if (loadedStashSize < 0 || loadedStashSize > STASH_SIZE) {
+                throw new IOException("Неверный размер запаса в снимке: " + loadedStashSize);
+            }
+            long full = loadedStashSize;
+            for (byte count : loadedFill) {
+                if (count < 0 || count > BUCKET_SIZE) {
+                    throw new IOException("Неверное заполнение корзины в снимке: " + count);
+                }
+                full += count;
+            }
+            if (full != reader.size) {
+                throw new IOException("Заголовок снимка не соответствует ячейкам");
+            }
+
+            final CuckooHashTable table = new CuckooHashTable(reader.strategy);
+            table.capacity = reader.capacity;
+            table.bucketMask = buckets - 1;
+            table.seed = state[0];
+            table.stashSize = (int) loadedStashSize;
+            System.arraycopy(loadedStash, 0, table.stash, 0, STASH_SIZE);
+            table.fill = loadedFill;
+            table.slots = loadedSlots;
+            table.size = reader.size;
+            return table;
+        }
+    }
+
+    /**
+     * Удаляет запись с указанным ключом из хеш-таблицы. На место удаленной записи корзины переносится
+     * последняя запись той же корзины; после удаления записи из запаса, которые теперь помещаются
+     * в свои корзины, переносятся туда.
+     *
+     * @param key ключ для удаления
+     */
+    @Override
+    public void delete(int key) {
+        final int index = indexOf(key);
+        if (index < 0) {
+            return;
+        }
+        if (index < capacity) {
+            final int bucket = index >>> BUCKET_SHIFT;
+            slots[index] = slots[(bucket << BUCKET_SHIFT) + --fill[bucket]];
+        } else {
+            stash[index - capacity] = stash[--stashSize];
+        }
+        --size;
+        extremes.removed(key);
+        ++modCount;
+        for (int i = stashSize - 1; i >= 0; --i) {
+            final long hash = hash(keyOf(stash[i]));
+            final int first = bucket1(hash);
+            final int second = bucket2(hash, first);
+            final int bucket = fill[first] <= fill[second] ? first : second;
+            if (fill[bucket] < BUCKET_SIZE) {
+                slots[(bucket << BUCKET_SHIFT) + fill[bucket]++] = stash[i];
+                stash[i] = stash[--stashSize];
+            }
+        }
+    }
+
+    /**
+     * Проверяет, пуста ли хеш-таблица.
+     *
+     * @return true, если хеш-таблица пуста, иначе false
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Возвращает значение записи с минимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален.
+     *
+     * @return значение записи с минимальным ключом, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer min() {
+        return isEmpty() ? null : extremes.min(this, null);
+    }
+
+    /**
+     * Возвращает значение записи с максимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален.
+     *
+     * @return значение записи с максимальным ключом, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer max() {
+        return isEmpty() ? null : extremes.max(this, null);
+    }
+
+    /**
+     * Возвращает количество записей в хеш-таблице.
+     *
+     * @return количество записей
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает число ячеек корзин вместе с ячейками запаса, которые следуют за ними.
+     *
+     * @return количество ячеек
+     */
+    @Override
+    public int slotCount() {
+        return capacity + STASH_SIZE;
+    }
+
+    /**
+     * Возвращает курсор по записям ячеек [fromSlot, toSlot); ячейки запаса следуют за ячейками корзин.
+     * Добавление нового ключа, удаление или перехеширование во время обхода приводят
+     * к {@link ConcurrentModificationException}.
+     *
+     * @param fromSlot первая ячейка (включительно)
+     * @param toSlot   последняя ячейка (не включительно)
+     * @return курсор
+     */
+    @Override
+    public IntCursor cursor(int fromSlot, int toSlot) {
+        Objects.checkFromToIndex(fromSlot, toSlot, slotCount());
+        return new Cursor(fromSlot, toSlot);
+    }
+
+    /**
+     * Курсор по диапазону ячеек таблицы, актуальной на момент его создания.
+     */
+    private final class Cursor implements IntCursor {
+        private final long[] cursorSlots = slots;
+        private final byte[] cursorFill = fill;
+        private final int expectedModCount = modCount;
+        private final int to;
+        private int index;
+        private long current;
+        private boolean positioned;
+
+        Cursor(int from, int to) {
+            this.index = from - 1;
+            this.to = to;
+        }
+
+        @Override
+        public boolean advance() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            while (++index < to) {
+                if (index < cursorSlots.length) {
+                    if ((index & (BUCKET_SIZE - 1)) < cursorFill[index >>> BUCKET_SHIFT]) {
+                        current = cursorSlots[index];
+                        positioned = true;
+                        return true;
+                    }
+                } else if (index - cursorSlots.length < stashSize) {
+                    current = stash[index - cursorSlots.length];
+                    positioned = true;
+                    return true;
+                } else {
+                    break;
+                }
+            }
+            index = to;
+            positioned = false;
+            return false;
+        }
+
+        @Override
+        public int key() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+            return keyOf(current);
+        }
+
+        @Override
+        public int value() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+            return (int) current;
+        }
+    }
+
+    /**
+     * Возвращает строковое представление хеш-таблицы: ячейки корзин, затем записи запаса.
+     *
+     * @return строковое представление хеш-таблицы
+     */
+    @Override
+    public String print() {
+        final StringBuilder description = new StringBuilder("Hash table: [ ");
+        for (int i = 0; i < capacity; i++) {
+            if ((i & (BUCKET_SIZE - 1)) < fill[i >>> BUCKET_SHIFT]) {
+                description.append((int) slots[i]).append("  ");
+            } else {
+                description.append("__  ");
+            }
+        }
+        for (int i = 0; i < stashSize; i++) {
+            description.append((int) stash[i]).append("  ");
+        }
+        description.append(']');
+        return description.toString();
+    }
+}
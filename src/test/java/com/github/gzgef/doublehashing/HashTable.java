@@ -1,5 +1,10 @@
 package com.github.gzgef.doublehashing;
 
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * Интерфейс, определяющий операции для реализаций хеш-таблиц, используемых в тестах.
  */
@@ -47,4 +52,152 @@ public interface HashTable {
      * @return максимальный ключ, или null, если хеш-таблица пуста
      */
     Integer max();
+
+    /**
+     * Добавляет пары ключ-значение из массивов: ключ keys[i] связывается со значением values[i].
+     * Реализация по умолчанию вызывает {@link #add(int, int)} для каждого ключа.
+     *
+     * @param keys   ключи
+     * @param values значения (не короче массива ключей)
+     * @throws IllegalArgumentException если массив значений короче массива ключей
+     */
+    default void addAll(int[] keys, int[] values) {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("Массив значений короче массива ключей");
+        }
+        for (int i = 0; i < keys.length; i++) {
+            add(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * Ищет значения ключей из массива без создания объектов: для каждого i в found[i] записывается,
+     * найден ли ключ keys[i], а в values[i] - его значение, если ключ найден.
+     * Реализация по умолчанию вызывает {@link #search(int)} для каждого ключа.
+     *
+     * @param keys   ключи для поиска
+     * @param values массив для найденных значений (не короче массива ключей)
+     * @param found  массив признаков наличия ключей (не короче массива ключей)
+     * @return количество найденных ключей
+     * @throws IllegalArgumentException если массив значений или признаков короче массива ключей
+     */
+    default int searchAll(int[] keys, int[] values, boolean[] found) {
+        if (values.length < keys.length || found.length < keys.length) {
+            throw new IllegalArgumentException("Массив результатов короче массива ключей");
+        }
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            final Integer value = search(keys[i]);
+            found[i] = value != null;
+            if (value != null) {
+                values[i] = value;
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Удаляет записи с ключами из массива.
+     * Реализация по умолчанию вызывает {@link #delete(int)} для каждого ключа.
+     *
+     * @param keys ключи для удаления
+     */
+    default void deleteAll(int[] keys) {
+        for (int key : keys) {
+            delete(key);
+        }
+    }
+
+    /**
+     * Возвращает количество записей в хеш-таблице.
+     *
+     * @return количество записей
+     */
+    int size();
+
+    /**
+     * Возвращает количество ячеек (для цепочек - корзин) хеш-таблицы, то есть границу диапазонов
+     * для {@link #cursor(int, int)}.
+     *
+     * @return количество ячеек
+     */
+    int slotCount();
+
+    /**
+     * Возвращает курсор по записям, лежащим в ячейках с индексами из [fromSlot, toSlot),
+     * в порядке их расположения в памяти.
+     * Добавление нового ключа или удаление во время обхода приводит
+     * к {@link java.util.ConcurrentModificationException} при следующем вызове {@link IntCursor#advance()}.
+     * Потокобезопасные реализации вместо этого возвращают слабо согласованный курсор.
+     *
+     * @param fromSlot первая ячейка (включительно)
+     * @param toSlot   последняя ячейка (не включительно)
+     * @return курсор
+     * @throws IndexOutOfBoundsException если диапазон выходит за пределы [0, {@link #slotCount()})
+     */
+    IntCursor cursor(int fromSlot, int toSlot);
+
+    /**
+     * Возвращает курсор по всем записям хеш-таблицы.
+     *
+     * @return курсор
+     * @see #cursor(int, int)
+     */
+    default IntCursor cursor() {
+        return cursor(0, slotCount());
+    }
+
+    /**
+     * Выполняет действие для каждой записи хеш-таблицы без создания объектов на запись.
+     * Реализация по умолчанию обходит записи курсором {@link #cursor()}.
+     *
+     * @param action действие, получающее ключ и значение записи
+     */
+    default void forEach(IntIntConsumer action) {
+        final IntCursor cursor = cursor();
+        while (cursor.advance()) {
+            action.accept(cursor.key(), cursor.value());
+        }
+    }
+
+    /**
+     * Возвращает делимый итератор по ключам хеш-таблицы. Итератор делит диапазон ячеек пополам,
+     * поэтому параллельный поток распределяет таблицу между потоками пула fork-join равными долями.
+     *
+     * @return итератор по ключам
+     */
+    default Spliterator.OfInt keySpliterator() {
+        return SlotSpliterator.keys(this);
+    }
+
+    /**
+     * Возвращает делимый итератор по записям хеш-таблицы. Для каждой записи создается
+     * ее копия {@link HashTableNode}; изменение копии не влияет на таблицу.
+     *
+     * @return итератор по записям
+     */
+    default Spliterator<HashTableNode<Integer, Integer>> entrySpliterator() {
+        return SlotSpliterator.entries(this);
+    }
+
+    /**
+     * Возвращает поток ключей хеш-таблицы. Последовательный обход не создает объектов на запись,
+     * а {@code keyStream().parallel()} делит таблицу между ядрами.
+     *
+     * @return поток ключей
+     */
+    default IntStream keyStream() {
+        return StreamSupport.intStream(keySpliterator(), false);
+    }
+
+    /**
+     * Возвращает поток копий записей хеш-таблицы.
+     *
+     * @return поток записей
+     * @see #entrySpliterator()
+     */
+    default Stream<HashTableNode<Integer, Integer>> entryStream() {
+        return StreamSupport.stream(entrySpliterator(), false);
+    }
 }
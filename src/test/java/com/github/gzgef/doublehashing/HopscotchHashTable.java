@@ -0,0 +1,522 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Реализация хеш-таблицы с hopscotch-хешированием. Каждый ключ лежит не дальше {@value #HOP_RANGE} - 1
+ * ячеек от своей домашней ячейки, а домашняя ячейка хранит битовую карту окрестности: бит i установлен,
+ * если ячейка home + i занята ключом с этой домашней ячейкой. Поиск читает слово карты и проверяет
+ * только отмеченные ячейки; ключ и значение лежат рядом в одном массиве int, поэтому поиск обычно
+ * затрагивает две строки кеша - слово карты и соседние записи.
+ * <p>
+ * Вставка ищет свободную ячейку линейно (по битовой карте занятости, не дальше {@value #ADD_RANGE} ячеек),
+ * а затем, пока она дальше окрестности, переносит в нее более раннюю запись, для которой новая ячейка
+ * остается в окрестности, приближая свободную ячейку к домашней. Таблица растет, только если такой перенос
+ * невозможен или загрузка достигает {@value #MAX_LOAD}. Удаление не оставляет пометок удаленных ячеек.
+ * Этот класс используется для тестирования и реализует интерфейс HashTable.
+ */
+public class HopscotchHashTable implements HashTable {
+    private static final int HOP_RANGE = 64;
+    private static final int ADD_RANGE = 512;
+    private static final int START_CAPACITY = 64;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final double MAX_LOAD = 0.9;
+
+    /**
+     * Загрузка, ниже которой неудача вставки означает, что стратегия хеширования дает одинаковый хеш
+     * слишком многим ключам, и рост таблицы не поможет.
+     */
+    private static final double MIN_FAILURE_LOAD = 0.125;
+    private static final HashStrategy SPREAD = HashStrategy.murmur3();
+
+    private final HashStrategy strategy;
+    private int size;
+    private int capacity;
+    private int mask;
+    private long[] hops;
+    private int[] entries;
+    private long[] used;
+    private int modCount;
+
+    /**
+     * Минимальный и максимальный ключи; находятся заново, только если такой ключ удален.
+     */
+    private final IntExtremes extremes = new IntExtremes();
+
+    /**
+     * Создает пустую хеш-таблицу с тождественной стратегией хеширования.
+     * Хеш ключа все равно перемешивается: ключи с общими младшими битами иначе попали бы
+     * в одну окрестность, и таблица росла бы без необходимости.
+     */
+    public HopscotchHashTable() {
+        this(HashStrategy.identity());
+    }
+
+    /**
+     * Создает пустую хеш-таблицу с указанной стратегией хеширования.
+     *
+     * @param strategy стратегия перемешивания ключей
+     */
+    public HopscotchHashTable(HashStrategy strategy) {
+        this.strategy = strategy;
+        allocate(START_CAPACITY);
+        size = 0;
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        hops = new long[newCapacity];
+        entries = new int[newCapacity << 1];
+        used = new long[newCapacity >>> 6];
+    }
+
+    private int home(int key) {
+        return SPREAD.hash(strategy.hash(key)) & mask;
+    }
+
+    private boolean isUsed(int index) {
+        return (used[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Возвращает индекс ячейки с указанным ключом, проверяя только ячейки окрестности,
+     * отмеченные в битовой карте домашней ячейки.
+     *
+     * @param key ключ для поиска
+     * @return индекс ячейки, или -1, если ключ не найден
+     */
+    private int indexOf(int key) {
+        final int home = home(key);
+        for (long hop = hops[home]; hop != 0; hop &= hop - 1) {
+            final int index = (home + Long.numberOfTrailingZeros(hop)) & mask;
+            if (entries[index << 1] == key) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Ищет значение, связанное с указанным ключом.
+     *
+     * @param key ключ для поиска
+     * @return значение, связанное с ключом, или null, если не найдено
+     */
+    @Override
+    public Integer search(int key) {
+        final int index = indexOf(key);
+        return index < 0 ? null : entries[(index << 1) + 1];
+    }
+
+    /**
+     * Возвращает значение, связанное с указанным ключом, без упаковки в Integer.
+     *
+     * @param key          ключ для поиска
+     * @param defaultValue значение, возвращаемое при отсутствии ключа
+     * @return значение, связанное с ключом, или defaultValue, если ключ не найден
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        final int index = indexOf(key);
+        return index < 0 ? defaultValue : entries[(index << 1) + 1];
+    }
+
+    /**
+     * Проверяет, содержится ли ключ в хеш-таблице.
+     *
+     * @param key ключ для проверки
+     * @return true, если ключ найден, иначе false
+     */
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Добавляет ключ-значение в хеш-таблицу.
+     * Если ключ уже существует, значение обновляется. Емкость удваивается, когда загрузка достигает
+     * {@value #MAX_LOAD} или свободную ячейку не удается перенести в окрестность ключа.
+     *
+     * @param key   ключ
+     * @param value значение
+     * @throws IllegalStateException если ключ не удается разместить даже в почти пустой таблице
+     */
+    @Override
+    public void add(int key, int value) {
+        final int found = indexOf(key);
+        if (found >= 0) {
+            entries[(found << 1) + 1] = value;
+            return;
+        }
+        if (MAX_LOAD * capacity <= size + 1) {
+            resize(grownCapacity());
+        }
+        while (!insert(key, value)) {
+            if (size < MIN_FAILURE_LOAD * capacity) {
+                throw new IllegalStateException("Не удалось разместить ключ: слишком много ключей с одинаковым хешем");
+            }
+            resize(grownCapacity());
+        }
+        ++size;
+        extremes.added(key, size);
+        ++modCount;
+    }
+
+    private int grownCapacity() {
+        if (capacity == MAX_CAPACITY) {
+            throw new IllegalStateException("Достигнута максимальная емкость хеш-таблицы");
+        }
+        return capacity * 2;
+    }
+
+    /**
+     * Размещает запись, которой заведомо нет в таблице. Если свободную ячейку не удается перенести
+     * в окрестность ключа, пробуется следующая свободная ячейка.
+     *
+     * @param key   ключ
+     * @param value значение
+     * @return true, если запись размещена; false, если ни одну свободную ячейку не удалось перенести
+     * в окрестность (уже выполненные переносы сохраняются)
+     */
+    private boolean insert(int key, int value) {
+        final int home = home(key);
+        int next = 0;
+        int free;
+        while ((free = findFree(home, next)) >= 0) {
+            next = ((free - home) & mask) + 1;
+            int distance = next - 1;
+            while (distance >= HOP_RANGE && (free = displace(free)) >= 0) {
+                distance = (free - home) & mask;
+            }
+            if (free >= 0) {
+                entries[free << 1] = key;
+                entries[(free << 1) + 1] = value;
+                used[free >>> 6] |= 1L << free;
+                hops[home] |= 1L << distance;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Находит первую свободную ячейку на расстоянии от from до {@value #ADD_RANGE} ячеек от домашней,
+     * пропуская занятые ячейки по 64 за раз.
+     *
+     * @param home домашняя ячейка
+     * @param from наименьшее расстояние от домашней ячейки
+     * @return индекс свободной ячейки, или -1, если ее нет
+     */
+    private int findFree(int home, int from) {
+        final int limit = Math.min(ADD_RANGE, capacity);
+        for (int distance = from; distance < limit; ) {
+            final int index = (home + distance) & mask;
+            final long free = ~used[index >>> 6] >>> index;
+            if (free != 0) {
+                final int step = Long.numberOfTrailingZeros(free);
+                return distance + step < limit ? index + step : -1;
+            }
+            distance += 64 - (index & 63);
+        }
+        return -1;
+    }
+
+    /**
+     * Переносит в свободную ячейку самую раннюю запись, для которой эта ячейка остается
+     * в окрестности ее домашней ячейки.
+     *
+     * @param free свободная ячейка
+     * @return освободившаяся ячейка (ближе к началу), или -1, если перенести нечего
+     */
+    private int displace(int free) {
+        for (int distance = HOP_RANGE - 1; distance > 0; --distance) {
+            final int bucket = (free - distance) & mask;
+            final long before = hops[bucket] & ((1L << distance) - 1);
+            if (before != 0) {
+                final int offset = Long.numberOfTrailingZeros(before);
+                final int from = (bucket + offset) & mask;
+                entries[free << 1] = entries[from << 1];
+                entries[(free << 1) + 1] = entries[(from << 1) + 1];
+                used[free >>> 6] |= 1L << free;
+                used[from >>> 6] &= ~(1L << from);
+                hops[bucket] = (hops[bucket] & ~(1L << offset)) | (1L << distance);
+                return from;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Перехеширует хеш-таблицу в таблицу указанной емкости. Если какую-то запись не удается разместить
+     * и в ней, емкость удваивается еще раз.
+     *
+     * @param newCapacity новая емкость (степень двойки)
+     */
+    private void resize(int newCapacity) {
+        final int[] oldEntries = entries;
+        final long[] oldUsed = used;
+        final int oldCapacity = capacity;
+        boolean placed = false;
+        while (!placed) {
+            allocate(newCapacity);
+            placed = true;
+            for (int i = 0; i < oldCapacity && placed; ++i) {
+                if ((oldUsed[i >>> 6] & (1L << i)) != 0) {
+                    placed = insert(oldEntries[i << 1], oldEntries[(i << 1) + 1]);
+                }
+            }
+            if (!placed) {
+                newCapacity = grownCapacity();
+            }
+        }
+        ++modCount;
+    }
+
+    /**
+     * Сохраняет снимок хеш-таблицы: заголовок с емкостью и числом записей, затем битовые карты
+     * окрестностей, массив записей и битовую карту занятости как есть и CRC32.
+     *
+     * @param path файл снимка
+     * @throws IOException              при ошибке записи
+     * @throws IllegalArgumentException если стратегию хеширования нельзя сохранить в снимке
+     */
+    public void save(Path path) throws IOException {
+        try (SnapshotWriter writer = new SnapshotWriter(path, Snapshot.TYPE_HOPSCOTCH, 0,
+                strategy, 0, capacity, size, 0)) {
+            writer.writeLongs(hops);
+            writer.writeInts(entries);
+            writer.writeLongs(used);
+            writer.finish();
+        }
+    }
+
+    /**
+     * Загружает хеш-таблицу из снимка, сохраненного методом {@link #save}. Массивы читаются
+     * из отображенного в память файла целиком, без перехеширования. Каждый бит карт окрестностей
+     * должен указывать на свою занятую ячейку, а число занятых ячеек - совпадать с заголовком.
+     *
+     * @param path файл снимка
+     * @return загруженная хеш-таблица
+     * @throws IOException при ошибке чтения, неверной контрольной сумме или неподходящем снимке
+     */
+    public static HopscotchHashTable load(Path path) throws IOException {
+        try (SnapshotReader reader = new SnapshotReader(path, Snapshot.TYPE_HOPSCOTCH, 0)) {
+            final int capacity = reader.capacity;
+            if (capacity < START_CAPACITY || capacity > MAX_CAPACITY || reader.deleted != 0) {
+                throw new IOException("Неверный заголовок снимка");
+            }
+            final long[] loadedHops = new long[capacity];
+            final int[] loadedEntries = new int[capacity << 1];
+            final long[] loadedUsed = new long[capacity >>> 6];
+            reader.readLongs(loadedHops);
+            reader.readInts(loadedEntries);
+            reader.readLongs(loadedUsed);
+            reader.finish();
+
+            final long[] referenced = new long[capacity >>> 6];
+            int full = 0;
+            for (int home = 0; home < capacity; ++home) {
+                for (long hop = loadedHops[home]; hop != 0; hop &= hop - 1) {
+                    final int index = (home + Long.numberOfTrailingZeros(hop)) & (capacity - 1);
+                    final long bit = 1L << index;
+                    if ((loadedUsed[index >>> 6] & bit) == 0 || (referenced[index >>> 6] & bit) != 0) {
+                        throw new IOException("Карта окрестности в снимке указывает на неверную ячейку");
+                    }
+                    referenced[index >>> 6] |= bit;
+                    ++full;
+                }
+            }
+            int used = 0;
+            for (long word : loadedUsed) {
+                used += Long.bitCount(word);
+            }
+            if (full != reader.size || used != reader.size) {
+                throw new IOException("Заголовок снимка не соответствует ячейкам");
+            }
+
+            final HopscotchHashTable table = new HopscotchHashTable(reader.strategy);
+            table.capacity = capacity;
+            table.mask = capacity - 1;
+            table.hops = loadedHops;
+            table.entries = loadedEntries;
+            table.used = loadedUsed;
+            table.size = reader.size;
+            return table;
+        }
+    }
+
+    /**
+     * Удаляет запись с указанным ключом из хеш-таблицы: ячейка освобождается,
+     * а бит в карте домашней ячейки сбрасывается.
+     *
+     * @param key ключ для удаления
+     */
+    @Override
+    public void delete(int key) {
+        final int home = home(key);
+        for (long hop = hops[home]; hop != 0; hop &= hop - 1) {
+            final int offset = Long.numberOfTrailingZeros(hop);
+            final int index = (home + offset) & mask;
+            if (entries[index << 1] == key) {
+                hops[home] &= ~(1L << offset);
+                used[index >>> 6] &= ~(1L << index);
+                --size;
+                extremes.removed(key);
+                ++modCount;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Проверяет, пуста ли хеш-таблица.
+     *
+     * @return true, если хеш-таблица пуста, иначе false
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Возвращает значение записи с минимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален.
+     *
+     * @return значение записи с минимальным ключом, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer min() {
+        return isEmpty() ? null : extremes.min(this, null);
+    }
+
+    /**
+     * Возвращает значение записи с максимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален.
+     *
+     * @return значение записи с максимальным ключом, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer max() {
+        return isEmpty() ? null : extremes.max(this, null);
+    }
+
+    /**
+     * Возвращает количество записей в хеш-таблице.
+     *
+     * @return количество записей
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает емкость хеш-таблицы.
+     *
+     * @return количество ячеек
+     */
+    @Override
+    public int slotCount() {
+        return capacity;
+    }
+
+    /**
+     * Возвращает курсор по записям ячеек [fromSlot, toSlot). Курсор читает битовую карту занятости словами
+     * и пропускает свободные ячейки по 64 за раз. Добавление нового ключа, удаление или перехеширование
+     * во время обхода приводят к {@link ConcurrentModificationException}.
+     *
+     * @param fromSlot первая ячейка (включительно)
+     * @param toSlot   последняя ячейка (не включительно)
+     * @return курсор
+     */
+    @Override
+    public IntCursor cursor(int fromSlot, int toSlot) {
+        Objects.checkFromToIndex(fromSlot, toSlot, capacity);
+        return new Cursor(fromSlot, toSlot);
+    }
+
+    /**
+     * Курсор по диапазону ячеек массивов, актуальных на момент его создания.
+     */
+    private final class Cursor implements IntCursor {
+        private final int[] cursorEntries = entries;
+        private final long[] cursorUsed = used;
+        private final int expectedModCount = modCount;
+        private final int to;
+        private final int lastWord;
+        private int word;
+        private long full;
+        private int index = -1;
+
+        Cursor(int from, int to) {
+            this.to = to;
+            word = from >>> 6;
+            if (from < to) {
+                lastWord = (to - 1) >>> 6;
+                full = cursorUsed[word] & (-1L << from);
+            } else {
+                lastWord = word;
+            }
+        }
+
+        @Override
+        public boolean advance() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            while (full == 0) {
+                if (word >= lastWord) {
+                    index = -1;
+                    return false;
+                }
+                full = cursorUsed[++word];
+            }
+            index = (word << 6) | Long.numberOfTrailingZeros(full);
+            full &= full - 1;
+            if (index >= to) {
+                full = 0;
+                word = lastWord;
+                index = -1;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int key() {
+            if (index < 0) {
+                throw new NoSuchElementException();
+            }
+            return cursorEntries[index << 1];
+        }
+
+        @Override
+        public int value() {
+            if (index < 0) {
+                throw new NoSuchElementException();
+            }
+            return cursorEntries[(index << 1) + 1];
+        }
+    }
+
+    /**
+     * Возвращает строковое представление хеш-таблицы.
+     *
+     * @return строковое представление хеш-таблицы
+     */
+    @Override
+    public String print() {
+        final StringBuilder description = new StringBuilder("Hash table: [ ");
+        for (int i = 0; i < capacity; i++) {
+            if (isUsed(i)) {
+                description.append(entries[(i << 1) + 1]).append("  ");
+            } else {
+                description.append("__  ");
+            }
+        }
+        description.append(']');
+        return description.toString();
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.gzgef.doublehashing;
+
+/**
+ * Курсор по записям хеш-таблицы с ключами и значениями int.
+ * Курсор изначально стоит перед первой записью; {@link #advance()} переходит к следующей записи,
+ * после чего ее ключ и значение доступны без упаковки в Integer.
+ */
+public interface IntCursor {
+    /**
+     * Переходит к следующей записи.
+     *
+     * @return true, если запись есть, или false, если записи закончились
+     */
+    boolean advance();
+
+    /**
+     * Возвращает ключ текущей записи.
+     *
+     * @return ключ
+     */
+    int key();
+
+    /**
+     * Возвращает значение текущей записи.
+     *
+     * @return значение
+     */
+    int value();
+}
@@ -0,0 +1,90 @@
+package com.github.gzgef.doublehashing;
+
+/**
+ * Минимальный и максимальный ключи таблицы с ключами int, поддерживаемые при вставке и удалении.
+ * Запоминаются ключи, а не ячейки, поэтому перехеширование и перемещение записей внутри таблицы
+ * их не затрагивают. Вставка нового ключа обновляет известные экстремумы за O(1); удаление
+ * экстремального ключа делает его неизвестным, и он находится заново при следующем запросе:
+ * по упорядоченному индексу за O(log n), если индекс включен, иначе одним проходом курсора.
+ */
+final class IntExtremes {
+    private int minKey;
+    private int maxKey;
+    private boolean minKnown;
+    private boolean maxKnown;
+
+    /**
+     * Учитывает вставку нового ключа.
+     *
+     * @param key  вставленный ключ
+     * @param size количество записей после вставки
+     */
+    void added(int key, int size) {
+        if (size == 1) {
+            minKey = key;
+            maxKey = key;
+            minKnown = true;
+            maxKnown = true;
+            return;
+        }
+        if (minKnown && key < minKey) {
+            minKey = key;
+        }
+        if (maxKnown && key > maxKey) {
+            maxKey = key;
+        }
+    }
+
+    /**
+     * Учитывает удаление ключа.
+     *
+     * @param key удаленный ключ
+     */
+    void removed(int key) {
+        if (key == minKey) {
+            minKnown = false;
+        }
+        if (key == maxKey) {
+            maxKnown = false;
+        }
+    }
+
+    /**
+     * Возвращает значение записи с минимальным ключом.
+     *
+     * @param table        непустая таблица
+     * @param orderedIndex упорядоченный индекс таблицы, или null, если он не включен
+     * @return значение записи с минимальным ключом
+     */
+    Integer min(HashTable table, IntSortedIndex orderedIndex) {
+        if (!minKnown) {
+            minKey = orderedIndex != null ? orderedIndex.ceiling(Integer.MIN_VALUE) : scan(table, true);
+            minKnown = true;
+        }
+        return table.search(minKey);
+    }
+
+    /**
+     * Возвращает значение записи с максимальным ключом.
+     *
+     * @param table        непустая таблица
+     * @param orderedIndex упорядоченный индекс таблицы, или null, если он не включен
+     * @return значение записи с максимальным ключом
+     */
+    Integer max(HashTable table, IntSortedIndex orderedIndex) {
+        if (!maxKnown) {
+            maxKey = orderedIndex != null ? orderedIndex.floor(Integer.MAX_VALUE) : scan(table, false);
+            maxKnown = true;
+        }
+        return table.search(maxKey);
+    }
+
+    private static int scan(HashTable table, boolean min) {
+        final IntCursor cursor = table.cursor();
+        int extreme = min ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+        while (cursor.advance()) {
+            extreme = min ? Math.min(extreme, cursor.key()) : Math.max(extreme, cursor.key());
+        }
+        return extreme;
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.gzgef.doublehashing;
+
+/**
+ * Действие над записью хеш-таблицы с ключом и значением int, принимающее их без упаковки в Integer.
+ */
+@FunctionalInterface
+public interface IntIntConsumer {
+    /**
+     * Выполняет действие над записью.
+     *
+     * @param key   ключ
+     * @param value значение
+     */
+    void accept(int key, int value);
+}
@@ -0,0 +1,643 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Реализация хеш-таблицы с двойным хешированием, специализированная для примитивных ключей и значений int.
+ * В отличие от {@link OpenAddressHashTableDH}, записи хранятся не в объектах {@link HashTableNode},
+ * а в плоских массивах int, а состояние каждой ячейки (пустая, занятая, удаленная) кодируется
+ * двумя битами в битовой карте. Емкость является степенью двойки, индексы вычисляются по маске
+ * после перемешивания ключа стратегией {@link HashStrategy}. Поэтому вставка и поиск через {@link #getOrDefault(int, int)}
+ * и {@link #containsKey(int)} не создают объектов в куче.
+ * Этот класс используется для тестирования и реализует интерфейс HashTable.
+ */
+public class IntOpenAddressHashTableDH implements HashTable {
+    private static final int START_CAPACITY = 8;
+    private static final double REHASH = 0.75;
+    private static final int HASH_PARAM = 47;
+
+    private static final int EMPTY = 0;
+    private static final int FULL = 1;
+    private static final int DELETED = 2;
+    private static final int STATE_MASK = 3;
+
+    /**
+     * Младшие биты состояний всех ячеек слова битовой карты: у занятых ячеек (и только у них) бит равен 1.
+     */
+    private static final long FULL_BITS = 0x5555555555555555L;
+
+    /**
+     * Число ключей, пробы которых чередуются при пакетном поиске.
+     */
+    private static final int BATCH_GROUP = 64;
+
+    private final HashStrategy strategy;
+    private int size;
+    private int deleted;
+    private int capacity;
+    private int mask;
+    private int[] keys;
+    private int[] values;
+    private long[] states;
+    private IntSortedIndex orderedIndex;
+    private int modCount;
+
+    /**
+     * Минимальный и максимальный ключи; находятся заново, только если такой ключ удален.
+     */
+    private final IntExtremes extremes = new IntExtremes();
+
+    /**
+     * Создает пустую хеш-таблицу с двойным хешированием и тождественной стратегией хеширования.
+     */
+    public IntOpenAddressHashTableDH() {
+        this(HashStrategy.identity());
+    }
+
+    /**
+     * Создает пустую хеш-таблицу с двойным хешированием и указанной стратегией хеширования.
+     *
+     * @param strategy стратегия перемешивания ключей
+     */
+    public IntOpenAddressHashTableDH(HashStrategy strategy) {
+        this.strategy = strategy;
+        capacity = START_CAPACITY;
+        mask = capacity - 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        states = newStates(capacity);
+        size = 0;
+        deleted = 0;
+    }
+
+    /**
+     * Создает битовую карту состояний для указанной емкости (по два бита на ячейку).
+     *
+     * @param capacity емкость хеш-таблицы
+     * @return битовая карта, в которой все ячейки пусты
+     */
+    private static long[] newStates(int capacity) {
+        return new long[(capacity + 31) >>> 5];
+    }
+
+    /**
+     * Возвращает состояние ячейки из битовой карты.
+     *
+     * @param states битовая карта состояний
+     * @param index  индекс ячейки
+     * @return EMPTY, FULL или DELETED
+     */
+    private static int state(long[] states, int index) {
+        return (int) (states[index >>> 5] >>> ((index & 31) << 1)) & STATE_MASK;
+    }
+
+    /**
+     * Записывает состояние ячейки в битовую карту.
+     *
+     * @param states битовая карта состояний
+     * @param index  индекс ячейки
+     * @param state  новое состояние ячейки
+     */
+    private static void setState(long[] states, int index, int state) {
+        final int shift = (index & 31) << 1;
+        states[index >>> 5] = (states[index >>> 5] & ~((long) STATE_MASK << shift)) | ((long) state << shift);
+    }
+
+    /**
+     * Возвращает индекс ячейки с указанным ключом.
+     *
+     * @param key ключ для поиска
+     * @return индекс ячейки, или -1, если ключ не найден
+     */
+    private int indexOf(int key) {
+        int hash = hashFunc1(key, mask);
+        final int stepSize = hashFunc2(key, mask);
+        int state;
+        while ((state = state(states, hash)) != EMPTY) {
+            if (state == FULL && keys[hash] == key) {
+                return hash;
+            }
+            hash = (hash + stepSize) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Ищет значение, связанное с указанным ключом.
+     *
+     * @param key ключ для поиска
+     * @return значение, связанное с ключом, или null, если не найдено
+     */
+    @Override
+    public Integer search(int key) {
+        final int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    /**
+     * Возвращает значение, связанное с указанным ключом, без упаковки в Integer.
+     *
+     * @param key          ключ для поиска
+     * @param defaultValue значение, возвращаемое при отсутствии ключа
+     * @return значение, связанное с ключом, или defaultValue, если ключ не найден
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        final int index = indexOf(key);
+        return index < 0 ? defaultValue : values[index];
+    }
+
+    /**
+     * Проверяет, содержится ли ключ в хеш-таблице.
+     *
+     * @param key ключ для проверки
+     * @return true, если ключ найден, иначе false
+     */
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Добавляет ключ-значение в хеш-таблицу.
+     * Порог перехеширования учитывает и удаленные ячейки: если среди занятых ячеек преобладают
+     * удаленные, таблица очищается без изменения емкости, иначе емкость удваивается.
+     *
+     * @param key   ключ
+     * @param value значение
+     */
+    @Override
+    public void add(int key, int value) {
+        if (REHASH <= ((size + deleted) * 1.0 / capacity)) {
+            rehash(REHASH <= (size * 2.0 / capacity) ? capacity * 2 : capacity);
+        }
+        int hash = hashFunc1(key, mask);
+        final int stepSize = hashFunc2(key, mask);
+        int free = -1;
+        int state;
+        while ((state = state(states, hash)) != EMPTY) {
+            if (state == FULL && keys[hash] == key) {
+                values[hash] = value;
+                return;
+            }
+            if (state == DELETED && free < 0) {
+                free = hash;
+            }
+            hash = (hash + stepSize) & mask;
+        }
+        if (free >= 0) {
+            hash = free;
+            --deleted;
+        }
+        keys[hash] = key;
+        values[hash] = value;
+        setState(states, hash, FULL);
+        ++size;
+        extremes.added(key, size);
+        ++modCount;
+        if (orderedIndex != null) {
+            orderedIndex.add(key);
+        }
+    }
+
+    /**
+     * Добавляет пары ключ-значение из массивов. Емкость заранее увеличивается под все ключи,
+     * поэтому таблица перехешируется не более одного раза.
+     *
+     * @param batchKeys   ключи
+     * @param batchValues значения (не короче массива ключей)
+     * @throws IllegalArgumentException если массив значений короче массива ключей
+     */
+    @Override
+    public void addAll(int[] batchKeys, int[] batchValues) {
+        if (batchValues.length < batchKeys.length) {
+            throw new IllegalArgumentException("Массив значений короче массива ключей");
+        }
+        int newCapacity = capacity;
+        while (REHASH <= ((size + batchKeys.length) * 1.0 / newCapacity)) {
+            newCapacity *= 2;
+        }
+        if (newCapacity != capacity) {
+            rehash(newCapacity);
+        }
+        for (int i = 0; i < batchKeys.length; i++) {
+            add(batchKeys[i], batchValues[i]);
+        }
+    }
+
+    /**
+     * Ищет значения ключей из массива группами по {@value #BATCH_GROUP}. Сначала вычисляются
+     * начальные ячейки и шаги всех ключей группы, затем пробы выполняются кругами: на каждом круге
+     * без ветвлений читаются очередные ячейки всех незавершенных ключей, и только после этого
+     * проверяется, какие ключи найдены или отсутствуют. Чтения ячеек разных ключей независимы,
+     * поэтому их промахи кеша перекрываются, а не оплачиваются по одному после каждого
+     * неверно предсказанного перехода, как при поиске ключей по одному.
+     *
+     * @param batchKeys   ключи для поиска
+     * @param batchValues массив для найденных значений (не короче массива ключей)
+     * @param found       массив признаков наличия ключей (не короче массива ключей)
+     * @return количество найденных ключей
+     * @throws IllegalArgumentException если массив значений или признаков короче массива ключей
+     */
+    @Override
+    public int searchAll(int[] batchKeys, int[] batchValues, boolean[] found) {
+        if (batchValues.length < batchKeys.length || found.length < batchKeys.length) {
+            throw new IllegalArgumentException("Массив результатов короче массива ключей");
+        }
+        final int[] slots = new int[BATCH_GROUP];
+        final int[] steps = new int[BATCH_GROUP];
+        final int[] active = new int[BATCH_GROUP];
+        final long[] slotStates = new long[BATCH_GROUP];
+        final int[] slotKeys = new int[BATCH_GROUP];
+        final int[] slotValues = new int[BATCH_GROUP];
+        int count = 0;
+        for (int base = 0; base < batchKeys.length; base += BATCH_GROUP) {
+            int lanes = Math.min(BATCH_GROUP, batchKeys.length - base);
+            for (int j = 0; j < lanes; ++j) {
+                final int hash = strategy.hash(batchKeys[base + j]);
+                slots[j] = hash & mask;
+                steps[j] = (((hash >>> 16) ^ hash) * HASH_PARAM) & mask | 1;
+                active[j] = j;
+            }
+            while (lanes > 0) {
+                for (int t = 0; t < lanes; ++t) {
+                    final int j = active[t];
+                    slotStates[j] = states[slots[j] >>> 5];
+                    slotKeys[j] = keys[slots[j]];
+                    slotValues[j] = values[slots[j]];
+                }
+                int remaining = 0;
+                for (int t = 0; t < lanes; ++t) {
+                    final int j = active[t];
+                    final int state = (int) (slotStates[j] >>> ((slots[j] & 31) << 1)) & STATE_MASK;
+                    if (state == FULL && slotKeys[j] == batchKeys[base + j]) {
+                        batchValues[base + j] = slotValues[j];
+                        found[base + j] = true;
+                        ++count;
+                    } else if (state == EMPTY) {
+                        found[base + j] = false;
+                    } else {
+                        slots[j] = (slots[j] + steps[j]) & mask;
+                        active[remaining++] = j;
+                    }
+                }
+                lanes = remaining;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Удаляет из хеш-таблицы все пометки удаленных записей, перехешируя записи без изменения емкости.
+     * Может вызываться явно, например, в период низкой нагрузки.
+     */
+    public void compact() {
+        rehash(capacity);
+    }
+
+    /**
+     * Перехеширует хеш-таблицу в таблицу указанной емкости, повторно вставляя все записи
+     * и отбрасывая удаленные ячейки.
+     *
+     * @param newCapacity новая емкость (степень двойки)
+     */
+    private void rehash(int newCapacity) {
+        final int newMask = newCapacity - 1;
+        final int[] newKeys = new int[newCapacity];
+        final int[] newValues = new int[newCapacity];
+        final long[] newStates = newStates(newCapacity);
+        for (int i = 0; i < capacity; ++i) {
+            if (state(states, i) == FULL) {
+                int hash = hashFunc1(keys[i], newMask);
+                final int stepSize = hashFunc2(keys[i], newMask);
+                while (state(newStates, hash) != EMPTY) {
+                    hash = (hash + stepSize) & newMask;
+                }
+                newKeys[hash] = keys[i];
+                newValues[hash] = values[i];
+                setState(newStates, hash, FULL);
+            }
+        }
+        capacity = newCapacity;
+        mask = newMask;
+        deleted = 0;
+        keys = newKeys;
+        values = newValues;
+        states = newStates;
+        ++modCount;
+    }
+
+    /**
+     * Сохраняет снимок хеш-таблицы: заголовок с емкостью и параметрами хеширования, затем
+     * битовую карту состояний, массивы ключей и значений как есть и CRC32.
+     * Упорядоченный индекс в снимок не входит.
+     *
+     * @param path файл снимка
+     * @throws IOException              при ошибке записи
+     * @throws IllegalArgumentException если стратегию хеширования нельзя сохранить в снимке
+     */
+    public void save(Path path) throws IOException {
+        try (SnapshotWriter writer = new SnapshotWriter(path, Snapshot.TYPE_INT_DOUBLE_HASHING, 0,
+                strategy, HASH_PARAM, capacity, size, deleted)) {
+            writer.writeLongs(states);
+            writer.writeInts(keys);
+            writer.writeInts(values);
+            writer.finish();
+        }
+    }
+
+    /**
+     * Загружает хеш-таблицу из снимка, сохраненного методом {@link #save}. Массивы читаются
+     * из отображенного в память файла целиком, без перехеширования.
+     *
+     * @param path файл снимка
+     * @return загруженная хеш-таблица
+     * @throws IOException при ошибке чтения, неверной контрольной сумме или неподходящем снимке
+     */
+    public static IntOpenAddressHashTableDH load(Path path) throws IOException {
+        try (SnapshotReader reader = new SnapshotReader(path, Snapshot.TYPE_INT_DOUBLE_HASHING, HASH_PARAM)) {
+            final long[] loadedStates = newStates(reader.capacity);
+            final int[] loadedKeys = new int[reader.capacity];
+            final int[] loadedValues = new int[reader.capacity];
+            reader.readLongs(loadedStates);
+            reader.readInts(loadedKeys);
+            reader.readInts(loadedValues);
+            reader.finish();
+            checkStates(loadedStates, reader.capacity, reader.size, reader.deleted);
+
+            final IntOpenAddressHashTableDH table = new IntOpenAddressHashTableDH(reader.strategy);
+            table.capacity = reader.capacity;
+            table.mask = reader.capacity - 1;
+            table.size = reader.size;
+            table.deleted = reader.deleted;
+            table.states = loadedStates;
+            table.keys = loadedKeys;
+            table.values = loadedValues;
+            return table;
+        }
+    }
+
+    /**
+     * Сверяет заголовок снимка с битовой картой: количества занятых и удаленных ячеек должны
+     * совпасть с заголовком, а ячеек с недопустимым состоянием и ячеек за пределами емкости
+     * в последнем слове быть не должно. Хотя бы одна ячейка должна быть пустой: иначе поиск
+     * отсутствующего ключа не завершился бы. Ячейки считаются по словам карты через bitCount.
+     *
+     * @param states   битовая карта состояний из снимка
+     * @param capacity емкость таблицы
+     * @param size     количество записей из заголовка
+     * @param deleted  количество удаленных ячеек из заголовка
+     * @throws IOException если снимок поврежден
+     */
+    private static void checkStates(long[] states, int capacity, int size, int deleted) throws IOException {
+        int full = 0;
+        int removed = 0;
+
+        for (int word = 0; word < states.length; ++word) {
+            final long low = states[word] & FULL_BITS;
+            final long high = (states[word] >>> 1) & FULL_BITS;
+            final int slots = Math.min(32, capacity - (word << 5));
+            final long outside = slots == 32 ? 0 : -1L << (slots << 1);
+
+            if ((low & high) != 0 || (states[word] & outside) != 0) {
+                throw new IOException("Неверное состояние ячейки в снимке");
+            }
+            full += Long.bitCount(low);
+            removed += Long.bitCount(high);
+        }
+
+        if (full != size || removed != deleted) {
+            throw new IOException("Заголовок снимка не соответствует ячейкам");
+        }
+        if (full + removed == capacity) {
+            throw new IOException("В снимке нет пустых ячеек");
+        }
+    }
+
+    /**
+     * Удаляет запись с указанным ключом из хеш-таблицы.
+     *
+     * @param key ключ для удаления
+     */
+    @Override
+    public void delete(int key) {
+        final int index = indexOf(key);
+        if (index >= 0) {
+            setState(states, index, DELETED);
+            --size;
+            extremes.removed(key);
+            ++deleted;
+            ++modCount;
+            if (orderedIndex != null) {
+                orderedIndex.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Первая хеш-функция для двойного хеширования.
+     *
+     * @param key         ключ для хеширования
+     * @param currentMask маска текущей емкости хеш-таблицы (capacity - 1)
+     * @return хеш-значение
+     */
+    public int hashFunc1(int key, int currentMask) {
+        return strategy.hash(key) & currentMask;
+    }
+
+    /**
+     * Вторая хеш-функция для двойного хеширования.
+     * Обеспечивает нечетный размер шага, взаимно простой с емкостью (степенью двойки).
+     *
+     * @param key         ключ для хеширования
+     * @param currentMask маска текущей емкости хеш-таблицы (capacity - 1)
+     * @return размер шага для пробирования
+     */
+    public int hashFunc2(int key, int currentMask) {
+        final int hash = strategy.hash(key);
+        return (((hash >>> 16) ^ hash) * HASH_PARAM) & currentMask | 1;
+    }
+
+    /**
+     * Включает упорядоченный индекс ключей, заполняя его текущими ключами таблицы.
+     * После этого индекс поддерживается при каждом добавлении и удалении ключа.
+     * Повторный вызов возвращает уже существующий индекс.
+     *
+     * @return упорядоченный индекс ключей
+     */
+    public IntSortedIndex enableOrderedIndex() {
+        if (orderedIndex == null) {
+            orderedIndex = new IntSortedIndex(this);
+            for (int i = 0; i < capacity; ++i) {
+                if (state(states, i) == FULL) {
+                    orderedIndex.add(keys[i]);
+                }
+            }
+        }
+        return orderedIndex;
+    }
+
+    /**
+     * Возвращает упорядоченный индекс ключей.
+     *
+     * @return индекс, или null, если он не включен
+     */
+    public IntSortedIndex getOrderedIndex() {
+        return orderedIndex;
+    }
+
+    /**
+     * Проверяет, пуста ли хеш-таблица.
+     *
+     * @return true, если хеш-таблица пуста, иначе false
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Возвращает значение записи с минимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален.
+     *
+     * @return значение записи с минимальным ключом, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer min() {
+        return isEmpty() ? null : extremes.min(this, orderedIndex);
+    }
+
+    /**
+     * Возвращает значение записи с максимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален.
+     *
+     * @return значение записи с максимальным ключом, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer max() {
+        return isEmpty() ? null : extremes.max(this, orderedIndex);
+    }
+
+    /**
+     * Возвращает количество записей в хеш-таблице.
+     *
+     * @return количество записей
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает емкость хеш-таблицы.
+     *
+     * @return количество ячеек
+     */
+    @Override
+    public int slotCount() {
+        return capacity;
+    }
+
+    /**
+     * Возвращает курсор по записям ячеек [fromSlot, toSlot). Курсор читает битовую карту словами
+     * и пропускает пустые и удаленные ячейки по 32 за раз. Добавление нового ключа, удаление
+     * или перехеширование во время обхода приводят к {@link ConcurrentModificationException}.
+     *
+     * @param fromSlot первая ячейка (включительно)
+     * @param toSlot   последняя ячейка (не включительно)
+     * @return курсор
+     */
+    @Override
+    public IntCursor cursor(int fromSlot, int toSlot) {
+        Objects.checkFromToIndex(fromSlot, toSlot, capacity);
+        return new Cursor(fromSlot, toSlot);
+    }
+
+    /**
+     * Курсор по диапазону ячеек массивов, актуальных на момент его создания.
+     */
+    private final class Cursor implements IntCursor {
+        private final int[] cursorKeys = keys;
+        private final int[] cursorValues = values;
+        private final long[] cursorStates = states;
+        private final int expectedModCount = modCount;
+        private final int to;
+        private final int lastWord;
+        private int word;
+        private long full;
+        private int index = -1;
+
+        Cursor(int from, int to) {
+            this.to = to;
+            word = from >>> 5;
+            if (from < to) {
+                lastWord = (to - 1) >>> 5;
+                full = cursorStates[word] & FULL_BITS & (-1L << ((from & 31) << 1));
+            } else {
+                lastWord = word;
+            }
+        }
+
+        @Override
+        public boolean advance() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            while (full == 0) {
+                if (word >= lastWord) {
+                    index = -1;
+                    return false;
+                }
+                full = cursorStates[++word] & FULL_BITS;
+            }
+            index = (word << 5) | (Long.numberOfTrailingZeros(full) >>> 1);
+            full &= full - 1;
+            if (index >= to) {
+                full = 0;
+                word = lastWord;
+                index = -1;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int key() {
+            if (index < 0) {
+                throw new NoSuchElementException();
+            }
+            return cursorKeys[index];
+        }
+
+        @Override
+        public int value() {
+            if (index < 0) {
+                throw new NoSuchElementException();
+            }
+            return cursorValues[index];
+        }
+    }
+
+    /**
+     * Возвращает строковое представление хеш-таблицы.
+     *
+     * @return строковое представление хеш-таблицы
+     */
+    @Override
+    public String print() {
+        final StringBuilder description = new StringBuilder("Hash table: [ ");
+        for (int i = 0; i < capacity; i++) {
+            final int state = state(states, i);
+            if (state == EMPTY) {
+                description.append("__  ");
+            } else if (state == DELETED) {
+                description.append("D ");
+            } else {
+                description.append(values[i]).append("  ");
+            }
+        }
+        description.append(']');
+        return description.toString();
+    }
+}
@@ -0,0 +1,307 @@
+package com.github.gzgef.doublehashing;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * Упорядоченный индекс ключей хеш-таблицы, поддерживаемый вместе с ней при добавлении и удалении.
+ * Ключи хранятся в декартовом дереве (treap) на параллельных массивах int, поэтому поиск диапазона,
+ * floor и ceiling выполняются в среднем за O(log n) без просмотра всей таблицы. Значения в индексе
+ * не хранятся: курсор получает их из самой хеш-таблицы, и поиск по ключу в таблице не замедляется.
+ */
+public class IntSortedIndex {
+    private static final int NIL = -1;
+    private static final int START_CAPACITY = 8;
+
+    private final HashTable table;
+    private int[] keys;
+    private int[] priorities;
+    private int[] left;
+    private int[] right;
+    private int root = NIL;
+    private int size;
+
+    /**
+     * Первый свободный узел; свободные узлы связаны через массив left.
+     */
+    private int free = NIL;
+    private int allocated;
+    private int nextPriority;
+    private int modCount;
+
+    /**
+     * Создает пустой индекс для указанной хеш-таблицы.
+     *
+     * @param table хеш-таблица, из которой курсоры получают значения
+     */
+    IntSortedIndex(HashTable table) {
+        this.table = table;
+        keys = new int[START_CAPACITY];
+        priorities = new int[START_CAPACITY];
+        left = new int[START_CAPACITY];
+        right = new int[START_CAPACITY];
+    }
+
+    /**
+     * Возвращает количество ключей в индексе.
+     *
+     * @return количество ключей
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Добавляет ключ, заведомо отсутствующий в индексе.
+     *
+     * @param key ключ
+     */
+    void add(int key) {
+        root = insert(root, newNode(key));
+        ++size;
+        ++modCount;
+    }
+
+    /**
+     * Удаляет ключ из индекса, если он там есть.
+     *
+     * @param key ключ
+     */
+    void remove(int key) {
+        root = remove(root, key);
+    }
+
+    private int newNode(int key) {
+        final int node;
+        if (free != NIL) {
+            node = free;
+            free = left[node];
+        } else {
+            if (allocated == keys.length) {
+                final int newCapacity = keys.length * 2;
+                keys = Arrays.copyOf(keys, newCapacity);
+                priorities = Arrays.copyOf(priorities, newCapacity);
+                left = Arrays.copyOf(left, newCapacity);
+                right = Arrays.copyOf(right, newCapacity);
+            }
+            node = allocated++;
+        }
+        keys[node] = key;
+        priorities[node] = StandardHashStrategy.MURMUR3.hash(++nextPriority);
+        left[node] = NIL;
+        right[node] = NIL;
+        return node;
+    }
+
+    private int insert(int node, int inserted) {
+        if (node == NIL) {
+            return inserted;
+        }
+        if (keys[inserted] < keys[node]) {
+            left[node] = insert(left[node], inserted);
+            if (priorities[left[node]] > priorities[node]) {
+                final int child = left[node];
+                left[node] = right[child];
+                right[child] = node;
+                return child;
+            }
+        } else {
+            right[node] = insert(right[node], inserted);
+            if (priorities[right[node]] > priorities[node]) {
+                final int child = right[node];
+                right[node] = left[child];
+                left[child] = node;
+                return child;
+            }
+        }
+        return node;
+    }
+
+    private int remove(int node, int key) {
+        if (node == NIL) {
+            return NIL;
+        }
+        if (key < keys[node]) {
+            left[node] = remove(left[node], key);
+            return node;
+        }
+        if (key > keys[node]) {
+            right[node] = remove(right[node], key);
+            return node;
+        }
+        final int merged = merge(left[node], right[node]);
+        left[node] = free;
+        free = node;
+        --size;
+        ++modCount;
+        return merged;
+    }
+
+    private int merge(int a, int b) {
+        if (a == NIL) {
+            return b;
+        }
+        if (b == NIL) {
+            return a;
+        }
+        if (priorities[a] > priorities[b]) {
+            right[a] = merge(right[a], b);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        return b;
+    }
+
+    /**
+     * Возвращает наибольший ключ, не превосходящий указанный.
+     *
+     * @param key граница
+     * @return наибольший ключ &lt;= key, или null, если такого нет
+     */
+    public Integer floor(int key) {
+        int node = root;
+        Integer result = null;
+        while (node != NIL) {
+            if (keys[node] == key) {
+                return key;
+            }
+            if (keys[node] < key) {
+                result = keys[node];
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает наименьший ключ, не меньший указанного.
+     *
+     * @param key граница
+     * @return наименьший ключ &gt;= key, или null, если такого нет
+     */
+    public Integer ceiling(int key) {
+        int node = root;
+        Integer result = null;
+        while (node != NIL) {
+            if (keys[node] == key) {
+                return key;
+            }
+            if (keys[node] > key) {
+                result = keys[node];
+                node = left[node];
+            } else {
+                node = right[node];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает ключи из отрезка [lo, hi] в порядке возрастания.
+     *
+     * @param lo нижняя граница (включительно)
+     * @param hi верхняя граница (включительно)
+     * @return массив ключей, пустой, если lo &gt; hi или в отрезке нет ключей
+     */
+    public int[] range(int lo, int hi) {
+        int[] result = new int[Math.min(size, 16)];
+        int count = 0;
+        final IntCursor cursor = cursor(lo, hi);
+        while (cursor.advance()) {
+            if (count == result.length) {
+                result = Arrays.copyOf(result, Math.min(size, count * 2));
+            }
+            result[count++] = cursor.key();
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Возвращает курсор по всем записям таблицы в порядке возрастания ключей.
+     *
+     * @return курсор
+     */
+    public IntCursor cursor() {
+        return cursor(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Возвращает курсор по записям таблицы с ключами из отрезка [lo, hi] в порядке возрастания.
+     * Значение записи ищется в хеш-таблице при вызове {@link IntCursor#value()}.
+     * Изменение таблицы во время обхода приводит к {@link ConcurrentModificationException}.
+     *
+     * @param lo нижняя граница (включительно)
+     * @param hi верхняя граница (включительно)
+     * @return курсор
+     */
+    public IntCursor cursor(int lo, int hi) {
+        return new RangeCursor(lo, hi);
+    }
+
+    /**
+     * Курсор симметричного обхода дерева с явным стеком пройденных узлов.
+     */
+    private final class RangeCursor implements IntCursor {
+        private final int hi;
+        private final int expectedModCount = modCount;
+        private int[] stack = new int[16];
+        private int depth;
+        private int current = NIL;
+
+        RangeCursor(int lo, int hi) {
+            this.hi = hi;
+            int node = root;
+            while (node != NIL) {
+                if (keys[node] >= lo) {
+                    push(node);
+                    node = left[node];
+                } else {
+                    node = right[node];
+                }
+            }
+        }
+
+        private void push(int node) {
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+            }
+            stack[depth++] = node;
+        }
+
+        @Override
+        public boolean advance() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (depth == 0 || keys[stack[depth - 1]] > hi) {
+                current = NIL;
+                depth = 0;
+                return false;
+            }
+            current = stack[--depth];
+            for (int node = right[current]; node != NIL; node = left[node]) {
+                push(node);
+            }
+            return true;
+        }
+
+        @Override
+        public int key() {
+            if (current == NIL) {
+                throw new NoSuchElementException();
+            }
+            return keys[current];
+        }
+
+        @Override
+        public int value() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            return table.search(key());
+        }
+    }
+}
@@ -0,0 +1,702 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Реализация хеш-таблицы с двойным хешированием, которая хранит записи вне кучи Java.
+ * Каждая ячейка занимает 12 байт (состояние, ключ и значение int в порядке little-endian) в прямом буфере
+ * {@link ByteBuffer} или в отображенном в память файле. Емкость является степенью двойки
+ * (не более 2^30 ячеек), а ячейки разбиты на буферы по 2^24 ячеек, так что размер таблицы
+ * не ограничен размером одного буфера. Таблица не создает объектов на каждую запись,
+ * поэтому сборщик мусора ее не обходит, а поиск через {@link #getOrDefault(int, int)}
+ * и {@link #containsKey(int)} не создает объектов в куче.
+ * <p>
+ * Память освобождается явно методом {@link #close()}; после закрытия таблица непригодна
+ * для использования. Если таблица создана с файлом, ячейки хранятся в нем, и таблица может
+ * превышать объем оперативной памяти. Файл является рабочей памятью таблицы, а не форматом
+ * хранения: он перезаписывается при создании таблицы и при каждом перехешировании
+ * и не удаляется при закрытии.
+ * Этот класс используется для тестирования и реализует интерфейс HashTable.
+ */
+public class OffHeapHashTableDH implements HashTable, AutoCloseable {
+    private static final int START_CAPACITY = 8;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final double REHASH = 0.75;
+    private static final int HASH_PARAM = 47;
+
+    private static final int EMPTY = 0;
+    private static final int FULL = 1;
+    private static final int DELETED = 2;
+
+    private static final int SLOT_BYTES = 12;
+    private static final int KEY_OFFSET = 4;
+    private static final int VALUE_OFFSET = 8;
+    private static final int CHUNK_SHIFT = 24;
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Память буферов освободит сборщик мусора
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final HashStrategy strategy;
+    private final Path file;
+    private FileChannel channel;
+    private int size;
+    private int deleted;
+    private int capacity;
+    private int mask;
+    private int chunkShift;
+    private int chunkMask;
+    private ByteBuffer[] chunks;
+    private int modCount;
+
+    /**
+     * Минимальный и максимальный ключи; находятся заново, только если такой ключ удален.
+     */
+    private final IntExtremes extremes = new IntExtremes();
+
+    /**
+     * Создает пустую хеш-таблицу в прямой памяти с тождественной стратегией хеширования.
+     */
+    public OffHeapHashTableDH() {
+        this(HashStrategy.identity());
+    }
+
+    /**
+     * Создает пустую хеш-таблицу в прямой памяти с указанной стратегией хеширования.
+     *
+     * @param strategy стратегия перемешивания ключей
+     */
+    public OffHeapHashTableDH(HashStrategy strategy) {
+        this.strategy = strategy;
+        this.file = null;
+        init(START_CAPACITY);
+        chunks = allocate(START_CAPACITY);
+    }
+
+    /**
+     * Создает пустую хеш-таблицу, ячейки которой хранятся в отображенном в память файле.
+     * Существующий файл перезаписывается.
+     *
+     * @param strategy стратегия перемешивания ключей
+     * @param file     файл для хранения ячеек
+     * @throws IOException если файл не удалось открыть или отобразить в память
+     */
+    public OffHeapHashTableDH(HashStrategy strategy, Path file) throws IOException {
+        this.strategy = strategy;
+        this.file = file;
+        init(START_CAPACITY);
+        channel = open(file);
+        try {
+            chunks = map(channel, START_CAPACITY);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Задает емкость и разбиение ячеек на буферы.
+     *
+     * @param newCapacity емкость (степень двойки)
+     */
+    private void init(int newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        chunkShift = Math.min(CHUNK_SHIFT, Integer.numberOfTrailingZeros(newCapacity));
+        chunkMask = (1 << chunkShift) - 1;
+    }
+
+    /**
+     * Создает прямые буферы ячеек для указанной емкости. Прямая память заполнена нулями,
+     * поэтому все ячейки пусты.
+     *
+     * @param newCapacity емкость (степень двойки)
+     * @return буферы ячеек
+     */
+    private static ByteBuffer[] allocate(int newCapacity) {
+        final int chunkSlots = 1 << Math.min(CHUNK_SHIFT, Integer.numberOfTrailingZeros(newCapacity));
+        final ByteBuffer[] buffers = new ByteBuffer[newCapacity / chunkSlots];
+        try {
+            for (int i = 0; i < buffers.length; ++i) {
+                buffers[i] = ByteBuffer.allocateDirect(chunkSlots * SLOT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (OutOfMemoryError e) {
+            free(buffers);
+            throw e;
+        }
+        return buffers;
+    }
+
+    /**
+     * Отображает в память файл с ячейками для указанной емкости. Файл увеличивается
+     * до нужного размера; новые участки файла заполнены нулями, поэтому все ячейки пусты.
+     *
+     * @param target      канал файла
+     * @param newCapacity емкость (степень двойки)
+     * @return буферы ячеек
+     * @throws IOException если файл не удалось отобразить
+     */
+    private static ByteBuffer[] map(FileChannel target, int newCapacity) throws IOException {
+        final int chunkSlots = 1 << Math.min(CHUNK_SHIFT, Integer.numberOfTrailingZeros(newCapacity));
+        final long chunkBytes = (long) chunkSlots * SLOT_BYTES;
+        final ByteBuffer[] buffers = new ByteBuffer[newCapacity / chunkSlots];
+        try {
+            for (int i = 0; i < buffers.length; ++i) {
+                buffers[i] = target.map(FileChannel.MapMode.READ_WRITE, i * chunkBytes, chunkBytes)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException | RuntimeException e) {
+            free(buffers);
+            throw e;
+        }
+        return buffers;
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Освобождает память буферов сразу, не дожидаясь сборщика мусора, если JVM это позволяет.
+     *
+     * @param buffers буферы (элементы могут быть null)
+     */
+    private static void free(ByteBuffer[] buffers) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        for (ByteBuffer buffer : buffers) {
+            if (buffer != null) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                } catch (ReflectiveOperationException e) {
+                    // Память буфера освободит сборщик мусора
+                    return;
+                }
+            }
+        }
+    }
+
+    private ByteBuffer[] chunks() {
+        if (chunks == null) {
+            throw new IllegalStateException("Хеш-таблица закрыта");
+        }
+        return chunks;
+    }
+
+    private int state(ByteBuffer[] buffers, int index) {
+        return buffers[index >>> chunkShift].getInt((index & chunkMask) * SLOT_BYTES);
+    }
+
+    private int key(ByteBuffer[] buffers, int index) {
+        return buffers[index >>> chunkShift].getInt((index & chunkMask) * SLOT_BYTES + KEY_OFFSET);
+    }
+
+    private int value(ByteBuffer[] buffers, int index) {
+        return buffers[index >>> chunkShift].getInt((index & chunkMask) * SLOT_BYTES + VALUE_OFFSET);
+    }
+
+    private void setState(ByteBuffer[] buffers, int index, int state) {
+        buffers[index >>> chunkShift].putInt((index & chunkMask) * SLOT_BYTES, state);
+    }
+
+    /**
+     * Записывает занятую ячейку.
+     *
+     * @param buffers буферы ячеек
+     * @param shift   число ячеек в буфере в виде степени двойки
+     * @param index   индекс ячейки
+     * @param key     ключ
+     * @param value   значение
+     */
+    private static void put(ByteBuffer[] buffers, int shift, int index, int key, int value) {
+        final ByteBuffer buffer = buffers[index >>> shift];
+        final int offset = (index & ((1 << shift) - 1)) * SLOT_BYTES;
+        buffer.putInt(offset, FULL);
+        buffer.putInt(offset + KEY_OFFSET, key);
+        buffer.putInt(offset + VALUE_OFFSET, value);
+    }
+
+    /**
+     * Возвращает индекс ячейки с указанным ключом.
+     *
+     * @param key ключ для поиска
+     * @return индекс ячейки, или -1, если ключ не найден
+     */
+    private int indexOf(int key) {
+        final ByteBuffer[] buffers = chunks();
+        int hash = hashFunc1(key, mask);
+        final int stepSize = hashFunc2(key, mask);
+        int state;
+        while ((state = state(buffers, hash)) != EMPTY) {
+            if (state == FULL && key(buffers, hash) == key) {
+                return hash;
+            }
+            hash = (hash + stepSize) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Ищет значение, связанное с указанным ключом.
+     *
+     * @param key ключ для поиска
+     * @return значение, связанное с ключом, или null, если не найдено
+     */
+    @Override
+    public Integer search(int key) {
+        final int index = indexOf(key);
+        return index < 0 ? null : value(chunks, index);
+    }
+
+    /**
+     * Возвращает значение, связанное с указанным ключом, без упаковки в Integer.
+     *
+     * @param key          ключ для поиска
+     * @param defaultValue значение, возвращаемое при отсутствии ключа
+     * @return значение, связанное с ключом, или defaultValue, если ключ не найден
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        final int index = indexOf(key);
+        return index < 0 ? defaultValue : value(chunks, index);
+    }
+
+    /**
+     * Проверяет, содержится ли ключ в хеш-таблице.
+     *
+     * @param key ключ для проверки
+     * @return true, если ключ найден, иначе false
+     */
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Добавляет ключ-значение в хеш-таблицу.
+     * Порог перехеширования учитывает и удаленные ячейки: если среди занятых ячеек преобладают
+     * удаленные, таблица очищается без изменения емкости, иначе емкость удваивается.
+     *
+     * @param key   ключ
+     * @param value значение
+     * @throws IllegalStateException если таблица закрыта или достигнута максимальная емкость
+     * @throws UncheckedIOException  если не удалось отобразить в память файл новой емкости
+     */
+    @Override
+    public void add(int key, int value) {
+        chunks();
+        if (REHASH <= ((size + deleted) * 1.0 / capacity)) {
+            final boolean grow = REHASH <= (size * 2.0 / capacity);
+            if (grow && capacity == MAX_CAPACITY) {
+                throw new IllegalStateException("Достигнута максимальная емкость хеш-таблицы");
+            }
+            rehash(grow ? capacity * 2 : capacity);
+        }
+        final ByteBuffer[] buffers = chunks;
+        int hash = hashFunc1(key, mask);
+        final int stepSize = hashFunc2(key, mask);
+        int free = -1;
+        int state;
+        while ((state = state(buffers, hash)) != EMPTY) {
+            if (state == FULL && key(buffers, hash) == key) {
+                put(buffers, chunkShift, hash, key, value);
+                return;
+            }
+            if (state == DELETED && free < 0) {
+                free = hash;
+            }
+            hash = (hash + stepSize) & mask;
+        }
+        if (free >= 0) {
+            hash = free;
+            --deleted;
+        }
+        put(buffers, chunkShift, hash, key, value);
+        ++size;
+        extremes.added(key, size);
+        ++modCount;
+    }
+
+    /**
+     * Удаляет из хеш-таблицы все пометки удаленных записей, перехешируя записи без изменения емкости.
+     * Может вызываться явно, например, в период низкой нагрузки.
+     */
+    public void compact() {
+        chunks();
+        rehash(capacity);
+    }
+
+    /**
+     * Перехеширует хеш-таблицу в таблицу указанной емкости, повторно вставляя все записи
+     * и отбрасывая удаленные ячейки. Таблица в файле перехешируется в соседний файл,
+     * который затем заменяет прежний.
+     *
+     * @param newCapacity новая емкость (степень двойки)
+     */
+    private void rehash(int newCapacity) {
+        final Path next = file == null ? null : file.resolveSibling(file.getFileName() + ".rehash");
+        FileChannel nextChannel = null;
+        final ByteBuffer[] newChunks;
+        try {
+            if (next == null) {
+                newChunks = allocate(newCapacity);
+            } else {
+                nextChannel = open(next);
+                newChunks = map(nextChannel, newCapacity);
+            }
+        } catch (IOException e) {
+            closeQuietly(nextChannel);
+            throw new UncheckedIOException(e);
+        }
+
+        final int newMask = newCapacity - 1;
+        final int newShift = Math.min(CHUNK_SHIFT, Integer.numberOfTrailingZeros(newCapacity));
+        final int newChunkMask = (1 << newShift) - 1;
+        for (int i = 0; i < capacity; ++i) {
+            if (state(chunks, i) == FULL) {
+                final int key = key(chunks, i);
+                int hash = hashFunc1(key, newMask);
+                final int stepSize = hashFunc2(key, newMask);
+                while (newChunks[hash >>> newShift].getInt((hash & newChunkMask) * SLOT_BYTES) != EMPTY) {
+                    hash = (hash + stepSize) & newMask;
+                }
+                put(newChunks, newShift, hash, key, value(chunks, i));
+            }
+        }
+
+        free(chunks);
+        chunks = newChunks;
+        init(newCapacity);
+        deleted = 0;
+        ++modCount;
+        if (next != null) {
+            closeQuietly(channel);
+            channel = nextChannel;
+            try {
+                Files.move(next, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static void closeQuietly(FileChannel target) {
+        if (target != null) {
+            try {
+                target.close();
+            } catch (IOException e) {
+                // Канал больше не используется
+            }
+        }
+    }
+
+    /**
+     * Сохраняет снимок хеш-таблицы: заголовок с емкостью и параметрами хеширования, затем
+     * ячейки байт в байт, как они лежат в памяти, и CRC32.
+     *
+     * @param path файл снимка
+     * @throws IOException              при ошибке записи
+     * @throws IllegalArgumentException если стратегию хеширования нельзя сохранить в снимке
+     */
+    public void save(Path path) throws IOException {
+        final ByteBuffer[] buffers = chunks();
+        try (SnapshotWriter writer = new SnapshotWriter(path, Snapshot.TYPE_OFF_HEAP_DOUBLE_HASHING, 0,
+                strategy, HASH_PARAM, capacity, size, deleted)) {
+            for (ByteBuffer buffer : buffers) {
+                writer.writeBytes(buffer);
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * Загружает хеш-таблицу в прямую память из снимка, сохраненного методом {@link #save}.
+     * Ячейки копируются из отображенного в память файла без перехеширования; заголовок
+     * сверяется с количеством занятых и удаленных ячеек. Снимок без пустых ячеек отвергается:
+     * поиск отсутствующего ключа в такой таблице не завершился бы.
+     *
+     * @param path файл снимка
+     * @return загруженная хеш-таблица
+     * @throws IOException при ошибке чтения, неверной контрольной сумме или неподходящем снимке
+     */
+    public static OffHeapHashTableDH load(Path path) throws IOException {
+        try (SnapshotReader reader = new SnapshotReader(path, Snapshot.TYPE_OFF_HEAP_DOUBLE_HASHING, HASH_PARAM)) {
+            final OffHeapHashTableDH table = new OffHeapHashTableDH(reader.strategy);
+            final ByteBuffer[] loaded = allocate(reader.capacity);
+            try {
+                int full = 0;
+                int removed = 0;
+                for (ByteBuffer buffer : loaded) {
+                    reader.readBytes(buffer.duplicate());
+                    for (int offset = 0; offset < buffer.capacity(); offset += SLOT_BYTES) {
+                        final int state = buffer.getInt(offset);
+                        if (state == FULL) {
+                            ++full;
+                        } else if (state == DELETED) {
+                            ++removed;
+                        } else if (state != EMPTY) {
+                            throw new IOException("Неверное состояние ячейки в снимке: " + state);
+                        }
+                    }
+                }
+                reader.finish();
+                if (full != reader.size || removed != reader.deleted) {
+                    throw new IOException("Заголовок снимка не соответствует ячейкам");
+                }
+                if (full + removed == reader.capacity) {
+                    throw new IOException("В снимке нет пустых ячеек");
+                }
+            } catch (IOException | RuntimeException e) {
+                free(loaded);
+                table.close();
+                throw e;
+            }
+            free(table.chunks);
+            table.chunks = loaded;
+            table.init(reader.capacity);
+            table.size = reader.size;
+            table.deleted = reader.deleted;
+            return table;
+        }
+    }
+
+    /**
+     * Удаляет запись с указанным ключом из хеш-таблицы.
+     *
+     * @param key ключ для удаления
+     */
+    @Override
+    public void delete(int key) {
+        final int index = indexOf(key);
+        if (index >= 0) {
+            setState(chunks, index, DELETED);
+            --size;
+            extremes.removed(key);
+            ++deleted;
+            ++modCount;
+        }
+    }
+
+    /**
+     * Освобождает память таблицы и закрывает файл, если он есть. Повторный вызов ничего не делает.
+     *
+     * @throws IOException если не удалось закрыть файл
+     */
+    @Override
+    public void close() throws IOException {
+        if (chunks == null) {
+            return;
+        }
+        free(chunks);
+        chunks = null;
+        size = 0;
+        deleted = 0;
+        ++modCount;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Первая хеш-функция для двойного хеширования.
+     *
+     * @param key         ключ для хеширования
+     * @param currentMask маска текущей емкости хеш-таблицы (capacity - 1)
+     * @return хеш-значение
+     */
+    public int hashFunc1(int key, int currentMask) {
+        return strategy.hash(key) & currentMask;
+    }
+
+    /**
+     * Вторая хеш-функция для двойного хеширования.
+     * Обеспечивает нечетный размер шага, взаимно простой с емкостью (степенью двойки).
+     *
+     * @param key         ключ для хеширования
+     * @param currentMask маска текущей емкости хеш-таблицы (capacity - 1)
+     * @return размер шага для пробирования
+     */
+    public int hashFunc2(int key, int currentMask) {
+        final int hash = strategy.hash(key);
+        return (((hash >>> 16) ^ hash) * HASH_PARAM) & currentMask | 1;
+    }
+
+    /**
+     * Проверяет, пуста ли хеш-таблица.
+     *
+     * @return true, если хеш-таблица пуста, иначе false
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Возвращает значение записи с минимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален.
+     *
+     * @return значение записи с минимальным ключом, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer min() {
+        chunks();
+        return isEmpty() ? null : extremes.min(this, null);
+    }
+
+    /**
+     * Возвращает значение записи с максимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален.
+     *
+     * @return значение записи с максимальным ключом, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer max() {
+        chunks();
+        return isEmpty() ? null : extremes.max(this, null);
+    }
+
+    /**
+     * Возвращает количество записей в хеш-таблице.
+     *
+     * @return количество записей
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает емкость хеш-таблицы.
+     *
+     * @return количество ячеек
+     */
+    @Override
+    public int slotCount() {
+        return capacity;
+    }
+
+    /**
+     * Возвращает курсор по записям ячеек [fromSlot, toSlot). Добавление нового ключа, удаление,
+     * перехеширование или закрытие таблицы во время обхода приводят к {@link ConcurrentModificationException}.
+     * Так как перехеширование и закрытие освобождают память ячеек, изменение проверяется
+     * при каждом обращении к курсору, а не только при переходе к следующей записи.
+     *
+     * @param fromSlot первая ячейка (включительно)
+     * @param toSlot   последняя ячейка (не включительно)
+     * @return курсор
+     * @throws IllegalStateException если хеш-таблица закрыта
+     */
+    @Override
+    public IntCursor cursor(int fromSlot, int toSlot) {
+        chunks();
+        Objects.checkFromToIndex(fromSlot, toSlot, capacity);
+        return new Cursor(fromSlot, toSlot);
+    }
+
+    /**
+     * Курсор по диапазону ячеек таблицы, актуальной на момент его создания.
+     */
+    private final class Cursor implements IntCursor {
+        private final int expectedModCount = modCount;
+        private final int to;
+        private int index;
+        private boolean positioned;
+
+        Cursor(int from, int to) {
+            this.index = from - 1;
+            this.to = to;
+        }
+
+        @Override
+        public boolean advance() {
+            checkForComodification();
+            while (++index < to) {
+                if (state(chunks, index) == FULL) {
+                    positioned = true;
+                    return true;
+                }
+            }
+            index = to;
+            positioned = false;
+            return false;
+        }
+
+        @Override
+        public int key() {
+            checkPosition();
+            return OffHeapHashTableDH.this.key(chunks, index);
+        }
+
+        @Override
+        public int value() {
+            checkPosition();
+            return OffHeapHashTableDH.this.value(chunks, index);
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        private void checkPosition() {
+            checkForComodification();
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+
+    /**
+     * Возвращает строковое представление хеш-таблицы.
+     *
+     * @return строковое представление хеш-таблицы
+     */
+    @Override
+    public String print() {
+        final ByteBuffer[] buffers = chunks();
+        final StringBuilder description = new StringBuilder("Hash table: [ ");
+        for (int i = 0; i < capacity; i++) {
+            final int state = state(buffers, i);
+            if (state == EMPTY) {
+                description.append("__  ");
+            } else if (state == DELETED) {
+                description.append("D ");
+            } else {
+                description.append(value(buffers, i)).append("  ");
+            }
+        }
+        description.append(']');
+        return description.toString();
+    }
+}
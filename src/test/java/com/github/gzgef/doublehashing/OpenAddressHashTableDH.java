@@ -1,7 +1,16 @@
 package com.github.gzgef.doublehashing;
 
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
 /**
  * Реализация хеш-таблицы с использованием двойного хеширования для разрешения коллизий.
+ * Емкость таблицы всегда является степенью двойки, индексы вычисляются по маске
+ * после перемешивания ключа стратегией {@link HashStrategy}.
+ * Минимальный и максимальный ключи запоминаются при вставке (см. {@link IntExtremes}), поэтому
+ * {@link #min()} и {@link #max()} выполняются за O(1); если такой ключ удален, он находится заново
+ * по упорядоченному индексу, а без индекса - одним проходом курсора.
  * Этот класс используется для тестирования и реализует интерфейс HashTable.
  */
 @SuppressWarnings("MissortedModifiers")
@@ -9,17 +18,40 @@ public class OpenAddressHashTableDH implements HashTable {
     private static final int START_CAPACITY = 8;
     private static final double REHASH = 0.75;
     private static final int HASH_PARAM = 47;
+    private final HashStrategy strategy;
     private int size;
+    private int deleted;
     private int capacity;
+    private int mask;
+    private TableStatistics statistics;
+    private int modCount;
     HashTableNode[] table;
+    private IntSortedIndex orderedIndex;
+
+    /**
+     * Минимальный и максимальный ключи; находятся заново, только если такой ключ удален.
+     */
+    private final IntExtremes extremes = new IntExtremes();
 
     /**
-     * Создает пустую хеш-таблицу с двойным хешированием.
+     * Создает пустую хеш-таблицу с двойным хешированием и тождественной стратегией хеширования.
      */
     public OpenAddressHashTableDH() {
+        this(HashStrategy.identity());
+    }
+
+    /**
+     * Создает пустую хеш-таблицу с двойным хешированием и указанной стратегией хеширования.
+     *
+     * @param strategy стратегия перемешивания ключей
+     */
+    public OpenAddressHashTableDH(HashStrategy strategy) {
+        this.strategy = strategy;
         capacity = START_CAPACITY;
+        mask = capacity - 1;
         table = new HashTableNode[capacity];
         size = 0;
+        deleted = 0;
         for (int i = 0; i < capacity; i++)
             table[i] = null;
     }
@@ -32,65 +64,179 @@ public class OpenAddressHashTableDH implements HashTable {
      */
     @Override
     public Integer search(int key) {
-        int hash = hashFunc1(key, capacity);
-        final int stepSize = hashFunc2(key, capacity);
+        if (statistics != null && statistics.sample()) {
+            recordLookup(key);
+        }
+        int hash = hashFunc1(key, mask);
+        final int stepSize = hashFunc2(key, mask);
         while (table[hash] != null) {
-            HashTableNode<Integer, Integer> node = (HashTableNode<Integer, Integer>) table[hash];
-            if (node.getKey() == key) {
-                return node.getValue();
+            if (!table[hash].equals(DeletedNode.getUniqueDeletedNode())) {
+                HashTableNode<Integer, Integer> node = (HashTableNode<Integer, Integer>) table[hash];
+                if (node.getKey() == key) {
+                    return node.getValue();
+                }
             }
-            hash += stepSize;
-            hash %= capacity;
+            hash = (hash + stepSize) & mask;
         }
         return null;
     }
 
     /**
      * Добавляет ключ-значение в хеш-таблицу.
+     * Порог перехеширования учитывает и удаленные ячейки: если среди занятых ячеек преобладают
+     * удаленные, таблица очищается без изменения емкости, иначе емкость удваивается.
      *
      * @param key   ключ
      * @param value значение
      */
     @Override
     public void add(int key, int value) {
-        if (REHASH <= (size * 1.0 / capacity)) {
-            rehash();
-        }
-        int hash = hashFunc1(key, capacity);
-        final int stepSize = hashFunc2(key, capacity);
-        while (table[hash] != null && !table[hash].equals(DeletedNode.getUniqueDeletedNode())) {
-            HashTableNode<Integer, Integer> node = (HashTableNode<Integer, Integer>) table[hash];
-            if (node.getKey() == key) {
-                node.setValue(value);
-                return;
+        if (REHASH <= ((size + deleted) * 1.0 / capacity)) {
+            rehash(REHASH <= (size * 2.0 / capacity) ? capacity * 2 : capacity);
+        }
+        int hash = hashFunc1(key, mask);
+        final int stepSize = hashFunc2(key, mask);
+        int free = -1;
+        while (table[hash] != null) {
+            if (table[hash].equals(DeletedNode.getUniqueDeletedNode())) {
+                if (free < 0) {
+                    free = hash;
+                }
+            } else {
+                HashTableNode<Integer, Integer> node = (HashTableNode<Integer, Integer>) table[hash];
+                if (node.getKey() == key) {
+                    node.setValue(value);
+                    return;
+                }
             }
-            hash += stepSize;
-            hash %= capacity;
+            hash = (hash + stepSize) & mask;
+        }
+        if (free >= 0) {
+            hash = free;
+            --deleted;
         }
         table[hash] = new HashTableNode<>(key, value);
         ++size;
+        extremes.added(key, size);
+        ++modCount;
+        if (orderedIndex != null) {
+            orderedIndex.add(key);
+        }
+    }
+
+    /**
+     * Удаляет из хеш-таблицы все пометки удаленных записей, перехешируя записи без изменения емкости.
+     * Может вызываться явно, например, в период низкой нагрузки.
+     */
+    public void compact() {
+        rehash(capacity);
     }
 
     /**
-     * Перехеширует хеш-таблицу, удваивая ее емкость и повторно вставляя все записи.
+     * Включает сбор статистики с частотой выборки {@value TableStatistics#DEFAULT_SAMPLE_RATE}.
+     *
+     * @return статистика хеш-таблицы
+     */
+    public TableStatistics enableStatistics() {
+        return enableStatistics(TableStatistics.DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Включает сбор статистики с указанной частотой выборки. Повторный вызов заменяет статистику новой.
+     *
+     * @param sampleRate частота выборки поисков (степень двойки)
+     * @return статистика хеш-таблицы
+     */
+    public TableStatistics enableStatistics(int sampleRate) {
+        statistics = new TableStatistics(sampleRate, this::maxProbeLength, () -> deleted * 1.0 / capacity);
+        return statistics;
+    }
+
+    /**
+     * Возвращает статистику хеш-таблицы.
+     *
+     * @return статистика, или null, если сбор статистики не включен
+     */
+    public TableStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Учитывает в статистике длину пробы поиска указанного ключа.
+     *
+     * @param key ключ для поиска
+     */
+    private void recordLookup(int key) {
+        int hash = hashFunc1(key, mask);
+        final int stepSize = hashFunc2(key, mask);
+        int probes = 0;
+        while (table[hash] != null) {
+            ++probes;
+            if (!table[hash].equals(DeletedNode.getUniqueDeletedNode())
+                    && ((HashTableNode<Integer, Integer>) table[hash]).getKey() == key) {
+                statistics.recordLookup(probes, true);
+                return;
+            }
+            hash = (hash + stepSize) & mask;
+        }
+        statistics.recordLookup(probes, false);
+    }
+
+    /**
+     * Вычисляет максимальную длину пробы среди записей таблицы: число ячеек,
+     * которые просматривает поиск ключа до ячейки, где хранится запись.
+     *
+     * @return максимальная длина пробы, или 0, если хеш-таблица пуста
+     */
+    private int maxProbeLength() {
+        final HashTableNode[] current = table;
+        final int currentMask = current.length - 1;
+        int max = 0;
+        for (int i = 0; i < current.length; ++i) {
+            if (current[i] != null && !current[i].equals(DeletedNode.getUniqueDeletedNode())) {
+                final int key = ((HashTableNode<Integer, Integer>) current[i]).getKey();
+                int hash = hashFunc1(key, currentMask);
+                final int stepSize = hashFunc2(key, currentMask);
+                int probes = 1;
+                while (hash != i) {
+                    hash = (hash + stepSize) & currentMask;
+                    ++probes;
+                }
+                max = Math.max(max, probes);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Перехеширует хеш-таблицу в таблицу указанной емкости, повторно вставляя все записи
+     * и отбрасывая удаленные ячейки.
+     *
+     * @param newCapacity новая емкость (степень двойки)
      */
-    private void rehash() {
-        final int newCapacity = capacity * 2;
+    private void rehash(int newCapacity) {
+        final long start = System.nanoTime();
+        final int newMask = newCapacity - 1;
         final HashTableNode[] newTable = new HashTableNode[newCapacity];
         for (int i = 0; i < capacity; ++i) {
             if (table[i] != null && !table[i].equals(DeletedNode.getUniqueDeletedNode())) {
                 HashTableNode<Integer, Integer> node = (HashTableNode<Integer, Integer>) table[i];
-                int hash = hashFunc1(node.getKey(), newCapacity);
-                final int stepSize = hashFunc2(node.getKey(), newCapacity);
+                int hash = hashFunc1(node.getKey(), newMask);
+                final int stepSize = hashFunc2(node.getKey(), newMask);
                 while (newTable[hash] != null) {
-                    hash += stepSize;
-                    hash %= newCapacity;
+                    hash = (hash + stepSize) & newMask;
                 }
-                newTable[hash] = new HashTableNode<>(node.getKey(), node.getValue());
+                newTable[hash] = node;
             }
         }
         capacity = newCapacity;
+        mask = newMask;
+        deleted = 0;
         table = newTable;
+        ++modCount;
+        if (statistics != null) {
+            statistics.recordRehash(System.nanoTime() - start);
+        }
     }
 
     /**
@@ -100,45 +246,77 @@ public class OpenAddressHashTableDH implements HashTable {
      */
     @Override
     public void delete(int key) {
-        int hash = hashFunc1(key, capacity);
-        final int stepSize = hashFunc2(key, capacity);
+        int hash = hashFunc1(key, mask);
+        final int stepSize = hashFunc2(key, mask);
         while (table[hash] != null) {
-            HashTableNode<Integer, Integer> node = (HashTableNode<Integer, Integer>) table[hash];
-            if (node.getKey() == key) {
-                table[hash] = DeletedNode.getUniqueDeletedNode();
-                --size;
-                return;
+            if (!table[hash].equals(DeletedNode.getUniqueDeletedNode())) {
+                HashTableNode<Integer, Integer> node = (HashTableNode<Integer, Integer>) table[hash];
+                if (node.getKey() == key) {
+                    table[hash] = DeletedNode.getUniqueDeletedNode();
+                    --size;
+                    ++deleted;
+                    extremes.removed(key);
+                    ++modCount;
+                    if (orderedIndex != null) {
+                        orderedIndex.remove(key);
+                    }
+                    return;
+                }
             }
-            hash += stepSize;
-            hash %= capacity;
+            hash = (hash + stepSize) & mask;
         }
     }
 
     /**
      * Первая хеш-функция для двойного хеширования.
      *
-     * @param key             ключ для хеширования
-     * @param currentCapacity текущая емкость хеш-таблицы
+     * @param key         ключ для хеширования
+     * @param currentMask маска текущей емкости хеш-таблицы (capacity - 1)
      * @return хеш-значение
      */
-    public int hashFunc1(int key, int currentCapacity) {
-        return key % currentCapacity;
+    public int hashFunc1(int key, int currentMask) {
+        return strategy.hash(key) & currentMask;
     }
 
     /**
      * Вторая хеш-функция для двойного хеширования.
-     * Обеспечивает нечетный размер шага для лучшего распределения.
+     * Обеспечивает нечетный размер шага, взаимно простой с емкостью (степенью двойки).
      *
-     * @param key             ключ для хеширования
-     * @param currentCapacity текущая емкость хеш-таблицы
+     * @param key         ключ для хеширования
+     * @param currentMask маска текущей емкости хеш-таблицы (capacity - 1)
      * @return размер шага для пробирования
      */
-    public int hashFunc2(int key, int currentCapacity) {
-        int hash = (key * HASH_PARAM) % (currentCapacity - 1);
-        if (hash % 2 == 0) {
-            ++hash;
+    public int hashFunc2(int key, int currentMask) {
+        final int hash = strategy.hash(key);
+        return (((hash >>> 16) ^ hash) * HASH_PARAM) & currentMask | 1;
+    }
+
+    /**
+     * Включает упорядоченный индекс ключей, заполняя его текущими ключами таблицы.
+     * После этого индекс поддерживается при каждом добавлении и удалении ключа.
+     * Повторный вызов возвращает уже существующий индекс.
+     *
+     * @return упорядоченный индекс ключей
+     */
+    public IntSortedIndex enableOrderedIndex() {
+        if (orderedIndex == null) {
+            orderedIndex = new IntSortedIndex(this);
+            for (HashTableNode node : table) {
+                if (node != null && !node.equals(DeletedNode.getUniqueDeletedNode())) {
+                    orderedIndex.add(((HashTableNode<Integer, Integer>) node).getKey());
+                }
+            }
         }
-        return hash;
+        return orderedIndex;
+    }
+
+    /**
+     * Возвращает упорядоченный индекс ключей.
+     *
+     * @return индекс, или null, если он не включен
+     */
+    public IntSortedIndex getOrderedIndex() {
+        return orderedIndex;
     }
 
     /**
@@ -151,51 +329,107 @@ public class OpenAddressHashTableDH implements HashTable {
     }
 
     /**
-     * Возвращает минимальный ключ в хеш-таблице.
+     * Возвращает значение записи с минимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален: по упорядоченному индексу, если он включен.
      *
-     * @return минимальный ключ, или null, если хеш-таблица пуста
+     * @return значение записи с минимальным ключом, или null, если хеш-таблица пуста
      */
     @Override
     public Integer min() {
-        if (isEmpty()) {
-            return null;
-        }
-        int min = Integer.MAX_VALUE;
-        int result = 0;
-        for (int i = 0; i < capacity; ++i) {
-            if (table[i] != null && !table[i].equals(DeletedNode.getUniqueDeletedNode())) {
-                HashTableNode<Integer, Integer> node = (HashTableNode<Integer, Integer>) table[i];
-                if (node.getKey() <= min) {
-                    min = node.getKey();
-                    result = node.getValue();
-                }
-            }
-        }
-        return result;
+        return isEmpty() ? null : extremes.min(this, orderedIndex);
     }
 
     /**
-     * Возвращает максимальный ключ в хеш-таблице.
+     * Возвращает значение записи с максимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален: по упорядоченному индексу, если он включен.
      *
-     * @return максимальный ключ, или null, если хеш-таблица пуста
+     * @return значение записи с максимальным ключом, или null, если хеш-таблица пуста
      */
     @Override
     public Integer max() {
-        if (isEmpty()) {
-            return null;
+        return isEmpty() ? null : extremes.max(this, orderedIndex);
+    }
+
+    /**
+     * Возвращает количество записей в хеш-таблице.
+     *
+     * @return количество записей
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает емкость хеш-таблицы.
+     *
+     * @return количество ячеек
+     */
+    @Override
+    public int slotCount() {
+        return capacity;
+    }
+
+    /**
+     * Возвращает курсор по записям ячеек [fromSlot, toSlot). Добавление нового ключа, удаление
+     * или перехеширование во время обхода приводят к {@link ConcurrentModificationException}.
+     *
+     * @param fromSlot первая ячейка (включительно)
+     * @param toSlot   последняя ячейка (не включительно)
+     * @return курсор
+     */
+    @Override
+    public IntCursor cursor(int fromSlot, int toSlot) {
+        Objects.checkFromToIndex(fromSlot, toSlot, capacity);
+        return new Cursor(fromSlot, toSlot);
+    }
+
+    /**
+     * Курсор по диапазону ячеек таблицы, актуальной на момент его создания.
+     */
+    private final class Cursor implements IntCursor {
+        private final HashTableNode[] slots = table;
+        private final int expectedModCount = modCount;
+        private final int to;
+        private int index;
+        private HashTableNode<Integer, Integer> current;
+
+        Cursor(int from, int to) {
+            this.index = from - 1;
+            this.to = to;
         }
-        int max = Integer.MIN_VALUE;
-        int result = 0;
-        for (int i = 0; i < capacity; ++i) {
-            if (table[i] != null && !table[i].equals(DeletedNode.getUniqueDeletedNode())) {
-                HashTableNode<Integer, Integer> node = (HashTableNode<Integer, Integer>) table[i];
-                if (node.getKey() >= max) {
-                    max = node.getKey();
-                    result = node.getValue();
+
+        @Override
+        public boolean advance() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            while (++index < to) {
+                if (slots[index] != null && !slots[index].equals(DeletedNode.getUniqueDeletedNode())) {
+                    current = (HashTableNode<Integer, Integer>) slots[index];
+                    return true;
                 }
             }
+            index = to;
+            current = null;
+            return false;
+        }
+
+        @Override
+        public int key() {
+            if (current == null) {
+                throw new NoSuchElementException();
+            }
+            return current.getKey();
+        }
+
+        @Override
+        public int value() {
+            if (current == null) {
+                throw new NoSuchElementException();
+            }
+            return current.getValue();
         }
-        return result;
     }
 
     /**
@@ -213,7 +447,7 @@ public class OpenAddressHashTableDH implements HashTable {
                 description.append("D ");
             } else {
                 HashTableNode<Integer, Integer> node = (HashTableNode<Integer, Integer>) table[i];
-                description.append(String.format("%d  ", node.getValue()));
+                description.append(node.getValue()).append("  ");
             }
         }
         description.append(']');
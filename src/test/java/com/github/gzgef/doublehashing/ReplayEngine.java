@@ -0,0 +1,239 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковое воспроизведение файла команд на нескольких хеш-таблицах.
+ * Команды читаются {@link CommandReader}, результаты каждой таблицы сразу пишутся в свой поток:
+ * первой таблицы - в выходной файл, остальных - во временные файлы рядом с ним, которые
+ * в конце дописываются в выходной файл через пустую строку. Расход памяти не зависит
+ * от размера файла команд. Таблицы можно обслуживать последовательно в одном потоке
+ * или параллельно, по потоку на таблицу.
+ */
+public final class ReplayEngine {
+    private static final byte[] ERROR = "error".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EMPTY = "empty".getBytes(StandardCharsets.US_ASCII);
+    private static final int QUEUE_BATCHES = 64;
+
+    private final HashTable[] tables;
+
+    /**
+     * Создает воспроизведение на указанных таблицах.
+     *
+     * @param tables таблицы в порядке вывода результатов
+     */
+    public ReplayEngine(HashTable... tables) {
+        if (tables.length == 0) {
+            throw new IllegalArgumentException("Нужна хотя бы одна таблица");
+        }
+        this.tables = tables.clone();
+    }
+
+    /**
+     * Воспроизводит файл команд и записывает результаты всех таблиц в выходной файл.
+     * Команды применяются к таблицам по очереди в текущем потоке.
+     *
+     * @param input  файл команд
+     * @param output выходной файл
+     * @param echo   поток для повтора прочитанных строк или null
+     * @throws IOException при ошибке чтения или записи
+     */
+    public void replay(Path input, Path output, OutputStream echo) throws IOException {
+        replay(input, output, echo, false);
+    }
+
+    /**
+     * Воспроизводит файл команд так же, как {@link #replay(Path, Path, OutputStream)}, но каждая
+     * таблица обслуживается своим потоком. Текущий поток разбирает файл один раз и раздает
+     * разобранные команды потокам таблиц через {@link CommandQueue}; каждый поток пишет результаты
+     * своей таблицы в свой раздел вывода. Выходной файл совпадает с последовательным режимом.
+     *
+     * @param input  файл команд
+     * @param output выходной файл
+     * @param echo   поток для повтора прочитанных строк или null
+     * @throws IOException при ошибке чтения или записи, в том числе в потоке таблицы
+     */
+    public void replayParallel(Path input, Path output, OutputStream echo) throws IOException {
+        replay(input, output, echo, true);
+    }
+
+    private void replay(Path input, Path output, OutputStream echo, boolean parallel) throws IOException {
+        final Path directory = output.toAbsolutePath().getParent();
+        final List<Path> parts = new ArrayList<>();
+        final ResultWriter[] writers = new ResultWriter[tables.length];
+        try {
+            writers[0] = new ResultWriter(Files.newOutputStream(output));
+            for (int i = 1; i < tables.length; ++i) {
+                final Path part = Files.createTempFile(directory, "replay", ".tmp");
+                parts.add(part);
+                writers[i] = new ResultWriter(Files.newOutputStream(part));
+            }
+
+            try (CommandReader reader = new CommandReader(Files.newInputStream(input), echo)) {
+                if (parallel) {
+                    fanOut(reader, writers);
+                } else {
+                    CommandReader.Command command;
+                    while ((command = reader.next()) != null) {
+                        for (int i = 0; i < tables.length; ++i) {
+                            apply(command, reader.key(), reader.value(), tables[i], writers[i]);
+                        }
+                    }
+                }
+            }
+            if (echo != null) {
+                echo.flush();
+            }
+
+            for (int i = 1; i < tables.length; ++i) {
+                writers[i].close();
+                writers[0].newLine();
+                writers[0].append(parts.get(i - 1));
+            }
+        } finally {
+            for (ResultWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    /**
+     * Раздает команды из reader потокам таблиц и ждет их завершения.
+     * Если поток таблицы завершился с ошибкой, чтение прекращается и ошибка пробрасывается.
+     */
+    private void fanOut(CommandReader reader, ResultWriter[] writers) throws IOException {
+        final CommandQueue[] queues = new CommandQueue[tables.length];
+        final Thread[] workers = new Thread[tables.length];
+        final Throwable[] failures = new Throwable[tables.length];
+        for (int i = 0; i < tables.length; ++i) {
+            final int index = i;
+            queues[i] = new CommandQueue(QUEUE_BATCHES);
+            workers[i] = new Thread(() -> {
+                try {
+                    final CommandQueue queue = queues[index];
+                    while (queue.take()) {
+                        apply(queue.command(), queue.key(), queue.value(), tables[index], writers[index]);
+                    }
+                } catch (Throwable e) {
+                    failures[index] = e;
+                    queues[index].abort();
+                }
+            }, "replay-" + i);
+            workers[i].start();
+        }
+
+        boolean completed = false;
+        try {
+            boolean running = true;
+            CommandReader.Command command;
+            while (running && (command = reader.next()) != null) {
+                for (CommandQueue queue : queues) {
+                    running &= queue.put(command, reader.key(), reader.value());
+                }
+            }
+            completed = true;
+        } finally {
+            for (CommandQueue queue : queues) {
+                if (completed) {
+                    queue.close();
+                } else {
+                    queue.abort();
+                }
+            }
+            join(workers, queues);
+        }
+
+        for (Throwable failure : failures) {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new IOException(failure);
+            }
+        }
+    }
+
+    /**
+     * Ждет завершения потоков таблиц. При прерывании текущего потока прерывает очереди.
+     */
+    private static void join(Thread[] workers, CommandQueue[] queues) throws IOException {
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (CommandQueue queue : queues) {
+                    queue.abort();
+                }
+                throw new InterruptedIOException("Воспроизведение прервано");
+            }
+        }
+    }
+
+    /**
+     * Применяет команду к таблице и записывает результат, если команда его дает.
+     *
+     * @param command команда
+     * @param key     ключ команд add, delete и search
+     * @param value   значение команды add
+     * @param table   таблица
+     * @param writer  вывод результатов таблицы
+     * @throws IOException при ошибке записи
+     */
+    static void apply(CommandReader.Command command, int key, int value, HashTable table,
+                      ResultWriter writer) throws IOException {
+        final Integer result;
+        switch (command) {
+            case ADD:
+                table.add(key, value);
+                break;
+            case DELETE:
+                table.delete(key);
+                break;
+            case SEARCH:
+                result = table.search(key);
+                if (result == null) {
+                    writer.writeLine(ERROR);
+                } else {
+                    writer.writeLine(result);
+                }
+                break;
+            case MIN:
+                result = table.min();
+                if (result == null) {
+                    writer.writeLine(EMPTY);
+                } else {
+                    writer.writeLine(result);
+                }
+                break;
+            case MAX:
+                result = table.max();
+                if (result == null) {
+                    writer.writeLine(EMPTY);
+                } else {
+                    writer.writeLine(result);
+                }
+                break;
+            case PRINT:
+                writer.writeLine(table.print());
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Буферизованный построчный вывод результатов команд. Числа записываются цифрами ASCII
+ * прямо в буфер, без создания строк.
+ */
+public final class ResultWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_INT_LENGTH = 11;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private boolean closed;
+
+    /**
+     * Создает вывод в указанный поток.
+     *
+     * @param out поток вывода
+     */
+    public ResultWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Записывает строку с числом.
+     *
+     * @param value число
+     * @throws IOException при ошибке записи
+     */
+    public void writeLine(int value) throws IOException {
+        ensure(MAX_INT_LENGTH + LINE_SEPARATOR.length);
+        if (value < 0) {
+            buffer[position++] = '-';
+        } else {
+            value = -value;
+        }
+        final int start = position;
+        do {
+            buffer[position++] = (byte) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = position - 1; i < j; ++i, --j) {
+            final byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+        newLine();
+    }
+
+    /**
+     * Записывает строку из готовых байтов.
+     *
+     * @param bytes байты строки без разделителя
+     * @throws IOException при ошибке записи
+     */
+    public void writeLine(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - LINE_SEPARATOR.length) {
+            flush();
+            out.write(bytes);
+        } else {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+        newLine();
+    }
+
+    /**
+     * Записывает текстовую строку в кодировке UTF-8.
+     *
+     * @param line строка без разделителя
+     * @throws IOException при ошибке записи
+     */
+    public void writeLine(String line) throws IOException {
+        writeLine(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Записывает разделитель строк.
+     *
+     * @throws IOException при ошибке записи
+     */
+    public void newLine() throws IOException {
+        ensure(LINE_SEPARATOR.length);
+        System.arraycopy(LINE_SEPARATOR, 0, buffer, position, LINE_SEPARATOR.length);
+        position += LINE_SEPARATOR.length;
+    }
+
+    /**
+     * Записывает накопленные байты в поток.
+     *
+     * @throws IOException при ошибке записи
+     */
+    public void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+        out.flush();
+    }
+
+    /**
+     * Дописывает содержимое файла после уже записанных строк.
+     *
+     * @param file файл
+     * @throws IOException при ошибке чтения или записи
+     */
+    public void append(Path file) throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+        Files.copy(file, out);
+    }
+
+    /**
+     * Записывает накопленные байты и закрывает поток. Повторный вызов ничего не делает.
+     *
+     * @throws IOException при ошибке записи
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Освобождает в буфере место под указанное число байтов.
+     */
+    private void ensure(int length) throws IOException {
+        if (buffer.length - position < length) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
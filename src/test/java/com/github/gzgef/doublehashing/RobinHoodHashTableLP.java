@@ -0,0 +1,461 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Реализация хеш-таблицы с линейным пробированием по схеме Robin Hood.
+ * Для каждой ячейки хранится длина пробы ее записи: при вставке запись с меньшей длиной пробы
+ * уступает место записи с большей, поэтому длины проб выравниваются, а неуспешный поиск
+ * останавливается, как только встречает запись ближе к своей начальной ячейке, чем искомый ключ.
+ * Удаление выполняется обратным сдвигом следующих записей, поэтому пометки {@link DeletedNode}
+ * не нужны, и таблица остается эффективной при коэффициенте загрузки 0.9.
+ * Этот класс используется для тестирования и реализует интерфейс HashTable.
+ */
+public class RobinHoodHashTableLP implements HashTable {
+    private static final int START_CAPACITY = 8;
+    private static final double DEFAULT_LOAD_FACTOR = 0.9;
+    private static final int HASH_PARAM = 37;
+
+    private final HashStrategy strategy;
+    private final double loadFactor;
+    private int size;
+    private int capacity;
+    private int mask;
+    private int[] keys;
+    private int[] values;
+
+    /**
+     * Длина пробы записи в каждой ячейке, увеличенная на единицу; 0 означает пустую ячейку.
+     */
+    private int[] distances;
+    private IntSortedIndex orderedIndex;
+    private int modCount;
+
+    /**
+     * Минимальный и максимальный ключи; находятся заново, только если такой ключ удален.
+     */
+    private final IntExtremes extremes = new IntExtremes();
+
+    /**
+     * Создает пустую хеш-таблицу с тождественной стратегией хеширования
+     * и коэффициентом загрузки 0.9.
+     */
+    public RobinHoodHashTableLP() {
+        this(HashStrategy.identity());
+    }
+
+    /**
+     * Создает пустую хеш-таблицу с указанной стратегией хеширования
+     * и коэффициентом загрузки 0.9.
+     *
+     * @param strategy стратегия перемешивания ключей
+     */
+    public RobinHoodHashTableLP(HashStrategy strategy) {
+        this(strategy, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Создает пустую хеш-таблицу с указанной стратегией хеширования и коэффициентом загрузки.
+     *
+     * @param strategy   стратегия перемешивания ключей
+     * @param loadFactor коэффициент загрузки, при превышении которого емкость удваивается
+     * @throws IllegalArgumentException если коэффициент загрузки не лежит в интервале (0, 1)
+     */
+    public RobinHoodHashTableLP(HashStrategy strategy, double loadFactor) {
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("Коэффициент загрузки должен лежать в интервале (0, 1): " + loadFactor);
+        }
+        this.strategy = strategy;
+        this.loadFactor = loadFactor;
+        capacity = START_CAPACITY;
+        mask = capacity - 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        distances = new int[capacity];
+        size = 0;
+    }
+
+    /**
+     * Возвращает индекс ячейки с указанным ключом.
+     * Поиск прекращается на пустой ячейке или на записи с меньшей длиной пробы,
+     * так как по инварианту Robin Hood искомый ключ не может находиться дальше.
+     *
+     * @param key ключ для поиска
+     * @return индекс ячейки, или -1, если ключ не найден
+     */
+    private int indexOf(int key) {
+        int hash = hashFunc(key, mask);
+        int distance = 1;
+        while (distances[hash] >= distance) {
+            if (keys[hash] == key) {
+                return hash;
+            }
+            hash = (hash + 1) & mask;
+            ++distance;
+        }
+        return -1;
+    }
+
+    /**
+     * Ищет значение, связанное с указанным ключом.
+     *
+     * @param key ключ для поиска
+     * @return значение, связанное с ключом, или null, если не найдено
+     */
+    @Override
+    public Integer search(int key) {
+        final int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    /**
+     * Добавляет ключ-значение в хеш-таблицу.
+     *
+     * @param key   ключ
+     * @param value значение
+     */
+    @Override
+    public void add(int key, int value) {
+        final int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+            return;
+        }
+        if (loadFactor <= ((size + 1) * 1.0 / capacity)) {
+            rehash(capacity * 2);
+        }
+        insert(key, value);
+        ++size;
+        extremes.added(key, size);
+        ++modCount;
+        if (orderedIndex != null) {
+            orderedIndex.add(key);
+        }
+    }
+
+    /**
+     * Вставляет ключ, заведомо отсутствующий в таблице, вытесняя записи с меньшей длиной пробы.
+     *
+     * @param key   ключ
+     * @param value значение
+     */
+    private void insert(int key, int value) {
+        int hash = hashFunc(key, mask);
+        int distance = 1;
+        while (distances[hash] != 0) {
+            if (distances[hash] < distance) {
+                final int displacedKey = keys[hash];
+                final int displacedValue = values[hash];
+                final int displacedDistance = distances[hash];
+                keys[hash] = key;
+                values[hash] = value;
+                distances[hash] = distance;
+                key = displacedKey;
+                value = displacedValue;
+                distance = displacedDistance;
+            }
+            hash = (hash + 1) & mask;
+            ++distance;
+        }
+        keys[hash] = key;
+        values[hash] = value;
+        distances[hash] = distance;
+    }
+
+    /**
+     * Перехеширует хеш-таблицу в таблицу указанной емкости, повторно вставляя все записи.
+     *
+     * @param newCapacity новая емкость (степень двойки)
+     */
+    private void rehash(int newCapacity) {
+        final int[] oldKeys = keys;
+        final int[] oldValues = values;
+        final int[] oldDistances = distances;
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        keys = new int[newCapacity];
+        values = new int[newCapacity];
+        distances = new int[newCapacity];
+        ++modCount;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldDistances[i] != 0) {
+                insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Сохраняет снимок хеш-таблицы: заголовок с емкостью и параметрами хеширования, коэффициент
+     * загрузки, массивы ключей, значений и длин проб как есть и CRC32.
+     * Упорядоченный индекс в снимок не входит.
+     *
+     * @param path файл снимка
+     * @throws IOException              при ошибке записи
+     * @throws IllegalArgumentException если стратегию хеширования нельзя сохранить в снимке
+     */
+    public void save(Path path) throws IOException {
+        try (SnapshotWriter writer = new SnapshotWriter(path, Snapshot.TYPE_ROBIN_HOOD, 0,
+                strategy, HASH_PARAM, capacity, size, 0)) {
+            writer.writeLongs(new long[]{Double.doubleToLongBits(loadFactor)});
+            writer.writeInts(keys);
+            writer.writeInts(values);
+            writer.writeInts(distances);
+            writer.finish();
+        }
+    }
+
+    /**
+     * Загружает хеш-таблицу из снимка, сохраненного методом {@link #save}. Массивы читаются
+     * из отображенного в память файла целиком, без перехеширования; заголовок сверяется
+     * с количеством занятых ячеек, а длины проб - с емкостью.
+     *
+     * @param path файл снимка
+     * @return загруженная хеш-таблица
+     * @throws IOException при ошибке чтения, неверной контрольной сумме или неподходящем снимке
+     */
+    public static RobinHoodHashTableLP load(Path path) throws IOException {
+        try (SnapshotReader reader = new SnapshotReader(path, Snapshot.TYPE_ROBIN_HOOD, HASH_PARAM)) {
+            final long[] loadFactorBits = new long[1];
+            final int[] loadedKeys = new int[reader.capacity];
+            final int[] loadedValues = new int[reader.capacity];
+            final int[] loadedDistances = new int[reader.capacity];
+            reader.readLongs(loadFactorBits);
+            reader.readInts(loadedKeys);
+            reader.readInts(loadedValues);
+            reader.readInts(loadedDistances);
+            reader.finish();
+
+            final double loadFactor = Double.longBitsToDouble(loadFactorBits[0]);
+            if (!(loadFactor > 0 && loadFactor < 1) || reader.deleted != 0) {
+                throw new IOException("Неверный заголовок снимка");
+            }
+            int full = 0;
+            for (int distance : loadedDistances) {
+                if (distance < 0 || distance > reader.capacity) {
+                    throw new IOException("Неверная длина пробы в снимке: " + distance);
+                }
+                if (distance != 0) {
+                    ++full;
+                }
+            }
+            if (full != reader.size) {
+                throw new IOException("Заголовок снимка не соответствует ячейкам");
+            }
+
+            final RobinHoodHashTableLP table = new RobinHoodHashTableLP(reader.strategy, loadFactor);
+            table.capacity = reader.capacity;
+            table.mask = reader.capacity - 1;
+            table.size = reader.size;
+            table.keys = loadedKeys;
+            table.values = loadedValues;
+            table.distances = loadedDistances;
+            return table;
+        }
+    }
+
+    /**
+     * Удаляет запись с указанным ключом из хеш-таблицы.
+     * Следующие за ней записи, находящиеся не в своей начальной ячейке, сдвигаются на одну ячейку назад.
+     *
+     * @param key ключ для удаления
+     */
+    @Override
+    public void delete(int key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return;
+        }
+        int next = (index + 1) & mask;
+        while (distances[next] > 1) {
+            keys[index] = keys[next];
+            values[index] = values[next];
+            distances[index] = distances[next] - 1;
+            index = next;
+            next = (next + 1) & mask;
+        }
+        distances[index] = 0;
+        --size;
+        extremes.removed(key);
+        ++modCount;
+        if (orderedIndex != null) {
+            orderedIndex.remove(key);
+        }
+    }
+
+    /**
+     * Хеш-функция для линейного пробирования.
+     *
+     * @param key         ключ для хеширования
+     * @param currentMask маска текущей емкости хеш-таблицы (capacity - 1)
+     * @return хеш-значение
+     */
+    public int hashFunc(int key, int currentMask) {
+        return (strategy.hash(key) * HASH_PARAM) & currentMask;
+    }
+
+    /**
+     * Включает упорядоченный индекс ключей, заполняя его текущими ключами таблицы.
+     * После этого индекс поддерживается при каждом добавлении и удалении ключа.
+     * Повторный вызов возвращает уже существующий индекс.
+     *
+     * @return упорядоченный индекс ключей
+     */
+    public IntSortedIndex enableOrderedIndex() {
+        if (orderedIndex == null) {
+            orderedIndex = new IntSortedIndex(this);
+            for (int i = 0; i < capacity; ++i) {
+                if (distances[i] != 0) {
+                    orderedIndex.add(keys[i]);
+                }
+            }
+        }
+        return orderedIndex;
+    }
+
+    /**
+     * Возвращает упорядоченный индекс ключей.
+     *
+     * @return индекс, или null, если он не включен
+     */
+    public IntSortedIndex getOrderedIndex() {
+        return orderedIndex;
+    }
+
+    /**
+     * Проверяет, пуста ли хеш-таблица.
+     *
+     * @return true, если хеш-таблица пуста, иначе false
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Возвращает значение записи с минимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален.
+     *
+     * @return значение записи с минимальным ключом, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer min() {
+        return isEmpty() ? null : extremes.min(this, orderedIndex);
+    }
+
+    /**
+     * Возвращает значение записи с максимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален.
+     *
+     * @return значение записи с максимальным ключом, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer max() {
+        return isEmpty() ? null : extremes.max(this, orderedIndex);
+    }
+
+    /**
+     * Возвращает количество записей в хеш-таблице.
+     *
+     * @return количество записей
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает емкость хеш-таблицы.
+     *
+     * @return количество ячеек
+     */
+    @Override
+    public int slotCount() {
+        return capacity;
+    }
+
+    /**
+     * Возвращает курсор по записям ячеек [fromSlot, toSlot). Добавление нового ключа или удаление
+     * во время обхода приводит к {@link ConcurrentModificationException}: оба сдвигают записи между ячейками.
+     *
+     * @param fromSlot первая ячейка (включительно)
+     * @param toSlot   последняя ячейка (не включительно)
+     * @return курсор
+     */
+    @Override
+    public IntCursor cursor(int fromSlot, int toSlot) {
+        Objects.checkFromToIndex(fromSlot, toSlot, capacity);
+        return new Cursor(fromSlot, toSlot);
+    }
+
+    /**
+     * Курсор по диапазону ячеек массивов, актуальных на момент его создания.
+     */
+    private final class Cursor implements IntCursor {
+        private final int[] cursorKeys = keys;
+        private final int[] cursorValues = values;
+        private final int[] cursorDistances = distances;
+        private final int expectedModCount = modCount;
+        private final int to;
+        private int index;
+        private boolean positioned;
+
+        Cursor(int from, int to) {
+            this.index = from - 1;
+            this.to = to;
+        }
+
+        @Override
+        public boolean advance() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            while (++index < to) {
+                if (cursorDistances[index] != 0) {
+                    positioned = true;
+                    return true;
+                }
+            }
+            index = to;
+            positioned = false;
+            return false;
+        }
+
+        @Override
+        public int key() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+            return cursorKeys[index];
+        }
+
+        @Override
+        public int value() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+            return cursorValues[index];
+        }
+    }
+
+    /**
+     * Возвращает строковое представление хеш-таблицы.
+     *
+     * @return строковое представление хеш-таблицы
+     */
+    @Override
+    public String print() {
+        final StringBuilder description = new StringBuilder("Hash table: [ ");
+        for (int i = 0; i < capacity; i++) {
+            if (distances[i] == 0) {
+                description.append("__  ");
+            } else {
+                description.append(values[i]).append("  ");
+            }
+        }
+        description.append(']');
+        return description.toString();
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.gzgef.doublehashing;
+
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Основа делимых итераторов по ячейкам хеш-таблицы {@link HashTable}.
+ * Итератор отвечает за диапазон ячеек [origin, fence) и при делении отдает первую половину
+ * диапазона новому итератору. Курсор по своему диапазону итератор получает только при первом обходе,
+ * поэтому части, созданные при делении, не читают таблицу до начала обхода.
+ * <p>
+ * Точное число записей известно только для всей таблицы: корневой итератор сообщает SIZED,
+ * а части - оценку, равную половине оценки делимого итератора, без SIZED и SUBSIZED, так как число
+ * записей в половине ячеек нельзя узнать без ее просмотра.
+ */
+abstract class SlotSpliterator {
+    /**
+     * Источник курсоров по диапазонам ячеек.
+     */
+    interface RangeCursors {
+        /**
+         * Возвращает курсор по записям ячеек [from, to).
+         *
+         * @param from первая ячейка (включительно)
+         * @param to   последняя ячейка (не включительно)
+         * @return курсор
+         */
+        IntCursor cursor(int from, int to);
+    }
+
+    private static final int ROOT_CHARACTERISTICS = Spliterator.SIZED | Spliterator.DISTINCT | Spliterator.NONNULL;
+
+    final RangeCursors cursors;
+    int origin;
+    final int fence;
+    long estimate;
+    int characteristics;
+    IntCursor cursor;
+
+    SlotSpliterator(RangeCursors cursors, int origin, int fence, long estimate, int characteristics) {
+        this.cursors = cursors;
+        this.origin = origin;
+        this.fence = fence;
+        this.estimate = estimate;
+        this.characteristics = characteristics;
+    }
+
+    /**
+     * Возвращает итератор по ключам всей таблицы.
+     *
+     * @param table хеш-таблица
+     * @return итератор
+     */
+    static Spliterator.OfInt keys(HashTable table) {
+        return new Keys(checked(table), 0, table.slotCount(), table.size(), ROOT_CHARACTERISTICS);
+    }
+
+    /**
+     * Возвращает итератор по копиям записей всей таблицы.
+     *
+     * @param table хеш-таблица
+     * @return итератор
+     */
+    static Spliterator<HashTableNode<Integer, Integer>> entries(HashTable table) {
+        return new Entries(checked(table), 0, table.slotCount(), table.size(), ROOT_CHARACTERISTICS);
+    }
+
+    /**
+     * Возвращает источник курсоров таблицы, который бросает {@link ConcurrentModificationException},
+     * если число ячеек изменилось после создания итератора, то есть таблица была перехеширована.
+     *
+     * @param table хеш-таблица
+     * @return источник курсоров
+     */
+    private static RangeCursors checked(HashTable table) {
+        final int slots = table.slotCount();
+        return (from, to) -> {
+            if (table.slotCount() != slots) {
+                throw new ConcurrentModificationException();
+            }
+            return table.cursor(from, to);
+        };
+    }
+
+    /**
+     * Отделяет первую половину диапазона. Обход уже начатого итератора не делится.
+     *
+     * @return середина диапазона, или -1, если итератор делить нельзя
+     */
+    final int split() {
+        final int mid = (origin + fence) >>> 1;
+        if (cursor != null || mid <= origin) {
+            return -1;
+        }
+        estimate >>>= 1;
+        characteristics &= ~Spliterator.SIZED;
+        final int prefixOrigin = origin;
+        origin = mid;
+        return prefixOrigin;
+    }
+
+    /**
+     * Переходит к следующей записи, получая курсор при первом обращении.
+     *
+     * @return true, если запись есть
+     */
+    final boolean advance() {
+        if (cursor == null) {
+            cursor = cursors.cursor(origin, fence);
+        }
+        return cursor.advance();
+    }
+
+    public final long estimateSize() {
+        return estimate;
+    }
+
+    public final int characteristics() {
+        return characteristics;
+    }
+
+    /**
+     * Делимый итератор по ключам.
+     */
+    static final class Keys extends SlotSpliterator implements Spliterator.OfInt {
+        Keys(RangeCursors cursors, int origin, int fence, long estimate, int characteristics) {
+            super(cursors, origin, fence, estimate, characteristics);
+        }
+
+        @Override
+        public Keys trySplit() {
+            final int prefixOrigin = split();
+            return prefixOrigin < 0 ? null : new Keys(cursors, prefixOrigin, origin, estimate, characteristics);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (!advance()) {
+                return false;
+            }
+            action.accept(cursor.key());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            while (advance()) {
+                action.accept(cursor.key());
+            }
+        }
+    }
+
+    /**
+     * Делимый итератор по копиям записей.
+     */
+    static final class Entries extends SlotSpliterator implements Spliterator<HashTableNode<Integer, Integer>> {
+        Entries(RangeCursors cursors, int origin, int fence, long estimate, int characteristics) {
+            super(cursors, origin, fence, estimate, characteristics);
+        }
+
+        @Override
+        public Entries trySplit() {
+            final int prefixOrigin = split();
+            return prefixOrigin < 0 ? null : new Entries(cursors, prefixOrigin, origin, estimate, characteristics);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super HashTableNode<Integer, Integer>> action) {
+            if (!advance()) {
+                return false;
+            }
+            action.accept(new HashTableNode<>(cursor.key(), cursor.value()));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super HashTableNode<Integer, Integer>> action) {
+            while (advance()) {
+                action.accept(new HashTableNode<>(cursor.key(), cursor.value()));
+            }
+        }
+    }
+}
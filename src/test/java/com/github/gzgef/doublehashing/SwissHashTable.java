@@ -0,0 +1,434 @@
+package com.github.gzgef.doublehashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Реализация хеш-таблицы в стиле SwissTable для ключей и значений int. Ключи и значения лежат парами
+ * в плоском массиве int, а рядом хранится массив управляющих байт: 7 бит хеша занятой ячейки или пометка
+ * пустой или удаленной. Проба сравнивает с 7 битами хеша ключа сразу {@value SwissControl#GROUP} управляющих
+ * байт одним словом long (см. {@link SwissControl}) и читает записи только в совпавших ячейках,
+ * поэтому большинство промахов не обращаются к ключам вовсе. Емкость является степенью двойки,
+ * таблица растет при заполнении 7/8 ячеек.
+ * Этот класс используется для тестирования и реализует интерфейс HashTable; обобщенная реализация
+ * интерфейса IHashTable на тех же управляющих байтах - {@link SwissHashMap}.
+ */
+public class SwissHashTable implements HashTable {
+    private static final int START_CAPACITY = 16;
+
+    private final HashStrategy strategy;
+    private int size;
+    private int capacity;
+    private int mask;
+    private int growthLeft;
+    private byte[] control;
+
+    /**
+     * Ключ и значение ячейки i лежат рядом, в элементах 2i и 2i + 1, поэтому найденная запись
+     * читается из одной строки кеша.
+     */
+    private int[] entries;
+    private int modCount;
+
+    /**
+     * Минимальный и максимальный ключи; находятся заново, только если такой ключ удален.
+     */
+    private final IntExtremes extremes = new IntExtremes();
+
+    /**
+     * Создает пустую хеш-таблицу с тождественной стратегией хеширования.
+     * Хеш ключа все равно перемешивается, так как номер группы и 7 бит управляющего байта
+     * берутся из разных частей хеша.
+     */
+    public SwissHashTable() {
+        this(HashStrategy.identity());
+    }
+
+    /**
+     * Создает пустую хеш-таблицу с указанной стратегией хеширования.
+     *
+     * @param strategy стратегия перемешивания ключей
+     */
+    public SwissHashTable(HashStrategy strategy) {
+        this.strategy = strategy;
+        allocate(START_CAPACITY);
+        growthLeft = SwissControl.growthLimit(START_CAPACITY);
+        size = 0;
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        control = SwissControl.allocate(newCapacity);
+        entries = new int[newCapacity << 1];
+    }
+
+    private int hash(int key) {
+        return SwissControl.mix(strategy.hash(key));
+    }
+
+    /**
+     * Возвращает индекс ячейки с указанным ключом.
+     *
+     * @param key  ключ для поиска
+     * @param hash перемешанный хеш ключа
+     * @return индекс ячейки, или -1, если ключ не найден
+     */
+    private int indexOf(int key, int hash) {
+        final byte h2 = SwissControl.h2(hash);
+        int position = SwissControl.h1(hash, mask);
+        for (int stride = SwissControl.GROUP; ; stride += SwissControl.GROUP) {
+            final long group = SwissControl.group(control, position);
+            for (long matches = SwissControl.match(group, h2); matches != 0; matches &= matches - 1) {
+                final int index = (position + SwissControl.lowest(matches)) & mask;
+                if (entries[index << 1] == key) {
+                    return index;
+                }
+            }
+            if (SwissControl.matchEmpty(group) != 0) {
+                return -1;
+            }
+            position = (position + stride) & mask;
+        }
+    }
+
+    /**
+     * Ищет значение, связанное с указанным ключом.
+     *
+     * @param key ключ для поиска
+     * @return значение, связанное с ключом, или null, если не найдено
+     */
+    @Override
+    public Integer search(int key) {
+        final int index = indexOf(key, hash(key));
+        return index < 0 ? null : entries[(index << 1) + 1];
+    }
+
+    /**
+     * Возвращает значение, связанное с указанным ключом, без упаковки в Integer.
+     *
+     * @param key          ключ для поиска
+     * @param defaultValue значение, возвращаемое при отсутствии ключа
+     * @return значение, связанное с ключом, или defaultValue, если ключ не найден
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        final int index = indexOf(key, hash(key));
+        return index < 0 ? defaultValue : entries[(index << 1) + 1];
+    }
+
+    /**
+     * Проверяет, содержится ли ключ в хеш-таблице.
+     *
+     * @param key ключ для проверки
+     * @return true, если ключ найден, иначе false
+     */
+    public boolean containsKey(int key) {
+        return indexOf(key, hash(key)) >= 0;
+    }
+
+    /**
+     * Добавляет ключ-значение в хеш-таблицу.
+     * Если ключ уже существует, значение обновляется. Когда пустых ячеек в пределах 7/8 емкости
+     * не остается, таблица перехешируется: без изменения емкости, если живые записи занимают
+     * меньше половины предела, иначе с удвоением емкости.
+     *
+     * @param key   ключ
+     * @param value значение
+     */
+    @Override
+    public void add(int key, int value) {
+        final int hash = hash(key);
+        final int found = indexOf(key, hash);
+        if (found >= 0) {
+            entries[(found << 1) + 1] = value;
+            return;
+        }
+        int index = SwissControl.findFree(control, hash, mask);
+        if (growthLeft == 0 && control[index] == SwissControl.EMPTY) {
+            rehash(size * 2 < SwissControl.growthLimit(capacity) ? capacity : capacity * 2);
+            index = SwissControl.findFree(control, hash, mask);
+        }
+        if (control[index] == SwissControl.EMPTY) {
+            --growthLeft;
+        }
+        SwissControl.set(control, index, mask, SwissControl.h2(hash));
+        entries[index << 1] = key;
+        entries[(index << 1) + 1] = value;
+        ++size;
+        extremes.added(key, size);
+        ++modCount;
+    }
+
+    /**
+     * Перехеширует хеш-таблицу в таблицу указанной емкости, отбрасывая удаленные ячейки.
+     *
+     * @param newCapacity новая емкость (степень двойки)
+     */
+    private void rehash(int newCapacity) {
+        final byte[] oldControl = control;
+        final int[] oldEntries = entries;
+        final int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int i = 0; i < oldCapacity; ++i) {
+            if (oldControl[i] >= 0) {
+                final int hash = hash(oldEntries[i << 1]);
+                final int index = SwissControl.findFree(control, hash, mask);
+                SwissControl.set(control, index, mask, SwissControl.h2(hash));
+                entries[index << 1] = oldEntries[i << 1];
+                entries[(index << 1) + 1] = oldEntries[(i << 1) + 1];
+            }
+        }
+        growthLeft = SwissControl.growthLimit(newCapacity) - size;
+        ++modCount;
+    }
+
+    /**
+     * Сохраняет снимок хеш-таблицы: заголовок с емкостью, числом записей и удаленных ячеек,
+     * затем управляющие байты и массив записей как есть и CRC32.
+     *
+     * @param path файл снимка
+     * @throws IOException              при ошибке записи
+     * @throws IllegalArgumentException если стратегию хеширования нельзя сохранить в снимке
+     */
+    public void save(Path path) throws IOException {
+        final int deleted = SwissControl.growthLimit(capacity) - growthLeft - size;
+        try (SnapshotWriter writer = new SnapshotWriter(path, Snapshot.TYPE_SWISS, 0,
+                strategy, 0, capacity, size, deleted)) {
+            writer.writeBytes(ByteBuffer.wrap(control));
+            writer.writeInts(entries);
+            writer.finish();
+        }
+    }
+
+    /**
+     * Загружает хеш-таблицу из снимка, сохраненного методом {@link #save}. Массивы читаются
+     * из отображенного в память файла целиком, без перехеширования. Управляющие байты
+     * проверяются: допустимы только пустые, удаленные и занятые ячейки, копия первой группы
+     * должна совпадать с ней, а количества занятых и удаленных ячеек - с заголовком.
+     *
+     * @param path файл снимка
+     * @return загруженная хеш-таблица
+     * @throws IOException при ошибке чтения, неверной контрольной сумме или неподходящем снимке
+     */
+    public static SwissHashTable load(Path path) throws IOException {
+        try (SnapshotReader reader = new SnapshotReader(path, Snapshot.TYPE_SWISS, 0)) {
+            final int capacity = reader.capacity;
+            final int growthLeft = SwissControl.growthLimit(capacity) - reader.size - reader.deleted;
+            if (capacity < START_CAPACITY || growthLeft < 0) {
+                throw new IOException("Неверный заголовок снимка");
+            }
+            final byte[] loadedControl = new byte[capacity + SwissControl.GROUP];
+            final int[] loadedEntries = new int[capacity << 1];
+            reader.readBytes(ByteBuffer.wrap(loadedControl));
+            reader.readInts(loadedEntries);
+            reader.finish();
+
+            int full = 0;
+            int removed = 0;
+            for (int i = 0; i < capacity; ++i) {
+                final byte state = loadedControl[i];
+                if (state >= 0) {
+                    ++full;
+                } else if (state == SwissControl.DELETED) {
+                    ++removed;
+                } else if (state != SwissControl.EMPTY) {
+                    throw new IOException("Неверный управляющий байт в снимке: " + state);
+                }
+                if (i < SwissControl.GROUP && loadedControl[i + capacity] != state) {
+                    throw new IOException("Копия первой группы в снимке не совпадает с ней");
+                }
+            }
+            if (full != reader.size || removed != reader.deleted) {
+                throw new IOException("Заголовок снимка не соответствует ячейкам");
+            }
+
+            final SwissHashTable table = new SwissHashTable(reader.strategy);
+            table.capacity = capacity;
+            table.mask = capacity - 1;
+            table.control = loadedControl;
+            table.entries = loadedEntries;
+            table.size = reader.size;
+            table.growthLeft = growthLeft;
+            return table;
+        }
+    }
+
+    /**
+     * Удаляет запись с указанным ключом из хеш-таблицы. Ячейка становится пустой, если через нее
+     * не могла пройти ни одна проба, иначе помечается удаленной.
+     *
+     * @param key ключ для удаления
+     */
+    @Override
+    public void delete(int key) {
+        final int index = indexOf(key, hash(key));
+        if (index < 0) {
+            return;
+        }
+        if (SwissControl.canEmpty(control, index, mask)) {
+            SwissControl.set(control, index, mask, SwissControl.EMPTY);
+            ++growthLeft;
+        } else {
+            SwissControl.set(control, index, mask, SwissControl.DELETED);
+        }
+        --size;
+        extremes.removed(key);
+        ++modCount;
+    }
+
+    /**
+     * Проверяет, пуста ли хеш-таблица.
+     *
+     * @return true, если хеш-таблица пуста, иначе false
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Возвращает значение записи с минимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален.
+     *
+     * @return значение записи с минимальным ключом, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer min() {
+        return isEmpty() ? null : extremes.min(this, null);
+    }
+
+    /**
+     * Возвращает значение записи с максимальным ключом. Ключ запоминается при вставке и ищется
+     * заново, только если он был удален.
+     *
+     * @return значение записи с максимальным ключом, или null, если хеш-таблица пуста
+     */
+    @Override
+    public Integer max() {
+        return isEmpty() ? null : extremes.max(this, null);
+    }
+
+    /**
+     * Возвращает количество записей в хеш-таблице.
+     *
+     * @return количество записей
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает емкость хеш-таблицы.
+     *
+     * @return количество ячеек
+     */
+    @Override
+    public int slotCount() {
+        return capacity;
+    }
+
+    /**
+     * Возвращает курсор по записям ячеек [fromSlot, toSlot). Курсор читает управляющие байты группами
+     * и пропускает пустые и удаленные ячейки по {@value SwissControl#GROUP} за раз. Добавление нового
+     * ключа, удаление или перехеширование во время обхода приводят к {@link ConcurrentModificationException}.
+     *
+     * @param fromSlot первая ячейка (включительно)
+     * @param toSlot   последняя ячейка (не включительно)
+     * @return курсор
+     */
+    @Override
+    public IntCursor cursor(int fromSlot, int toSlot) {
+        Objects.checkFromToIndex(fromSlot, toSlot, capacity);
+        return new Cursor(fromSlot, toSlot);
+    }
+
+    /**
+     * Курсор по диапазону ячеек массивов, актуальных на момент его создания.
+     */
+    private final class Cursor implements IntCursor {
+        private final byte[] cursorControl = control;
+        private final int[] cursorEntries = entries;
+        private final int expectedModCount = modCount;
+        private final int to;
+        private int base;
+        private long full;
+        private int index = -1;
+
+        Cursor(int from, int to) {
+            this.to = to;
+            base = from & -SwissControl.GROUP;
+            if (from < to) {
+                full = SwissControl.matchFull(SwissControl.group(cursorControl, base))
+                        & (-1L << ((from - base) << 3));
+            } else {
+                base = to;
+            }
+        }
+
+        @Override
+        public boolean advance() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            while (full == 0) {
+                if (base + SwissControl.GROUP >= to) {
+                    base = to;
+                    index = -1;
+                    return false;
+                }
+                base += SwissControl.GROUP;
+                full = SwissControl.matchFull(SwissControl.group(cursorControl, base));
+            }
+            index = base + SwissControl.lowest(full);
+            full &= full - 1;
+            if (index >= to) {
+                full = 0;
+                base = to;
+                index = -1;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int key() {
+            if (index < 0) {
+                throw new NoSuchElementException();
+            }
+            return cursorEntries[index << 1];
+        }
+
+        @Override
+        public int value() {
+            if (index < 0) {
+                throw new NoSuchElementException();
+            }
+            return cursorEntries[(index << 1) + 1];
+        }
+    }
+
+    /**
+     * Возвращает строковое представление хеш-таблицы.
+     *
+     * @return строковое представление хеш-таблицы
+     */
+    @Override
+    public String print() {
+        final StringBuilder description = new StringBuilder("Hash table: [ ");
+        for (int i = 0; i < capacity; i++) {
+            if (control[i] == SwissControl.EMPTY) {
+                description.append("__  ");
+            } else if (control[i] == SwissControl.DELETED) {
+                description.append("D ");
+            } else {
+                description.append(entries[(i << 1) + 1]).append("  ");
+            }
+        }
+        description.append(']');
+        return description.toString();
+    }
+}